@@ -0,0 +1,16 @@
+package in.asvignesh.databasewrapper.benchmark;
+
+import in.asvignesh.databasewrapper.DataModel;
+import in.asvignesh.databasewrapper.annotation.Table;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Table(name = "accounts")
+public class Account extends DataModel {
+
+  private Long id;
+  private Long balance;
+
+}
@@ -0,0 +1,31 @@
+package in.asvignesh.databasewrapper.benchmark;
+
+import in.asvignesh.databasewrapper.DataModel;
+import in.asvignesh.databasewrapper.annotation.Table;
+import java.sql.Timestamp;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Table(name = "customers")
+public class Customer extends DataModel {
+
+  private Long id;
+  private String firstName;
+  private String lastName;
+  private String email;
+  private Integer age;
+  private Timestamp createdAt;
+
+  static Customer of(long n) {
+    Customer customer = new Customer();
+    customer.setFirstName("first" + n);
+    customer.setLastName("last" + n);
+    customer.setEmail("customer" + n + "@example.com");
+    customer.setAge((int) (n % 100));
+    customer.setCreatedAt(new Timestamp(1_600_000_000_000L + n * 1000));
+    return customer;
+  }
+
+}
@@ -0,0 +1,96 @@
+package in.asvignesh.databasewrapper.benchmark;
+
+import in.asvignesh.databasewrapper.core.DatabaseCache;
+import in.asvignesh.databasewrapper.core.SQLParams;
+import in.asvignesh.databasewrapper.dialect.Dialect;
+import in.asvignesh.databasewrapper.dialect.MySQLDialect;
+import in.asvignesh.databasewrapper.page.PageRow;
+import in.asvignesh.databasewrapper.utils.DatabaseUtils;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SQL rendering by the {@link Dialect}, with the parameters built the way {@link
+ * in.asvignesh.databasewrapper.core.Query} builds them.
+ * <p>
+ * Usage: {@code gradle jmh -Pinclude=DialectBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DialectBenchmark {
+
+  private final Dialect dialect = new MySQLDialect();
+  private Customer customer;
+  private List<Object> columnValues;
+
+  @Setup
+  public void setup() {
+    customer = Customer.of(42);
+    customer.setId(42L);
+    columnValues = DatabaseUtils.toColumnValues(customer, true);
+  }
+
+  @Benchmark
+  public String select() {
+    return dialect.select(SQLParams.builder()
+        .modelClass(Customer.class)
+        .tableName(DatabaseCache.getTableName(Customer.class, null))
+        .pkName("id")
+        .conditionSQL(new StringBuilder(" AND age = ? AND last_name = ?"))
+        .excludedColumns(Collections.emptyList())
+        .orderBy(" id DESC")
+        .build());
+  }
+
+  @Benchmark
+  public String page() {
+    return dialect.paginate(SQLParams.builder()
+        .modelClass(Customer.class)
+        .tableName(DatabaseCache.getTableName(Customer.class, null))
+        .pkName("id")
+        .conditionSQL(new StringBuilder(" AND age = ?"))
+        .excludedColumns(Collections.emptyList())
+        .customSQL("SELECT * FROM customers WHERE age = ?")
+        .orderBy(" id DESC")
+        .pageRow(new PageRow(3, 20))
+        .build());
+  }
+
+  @Benchmark
+  public String insert() {
+    return dialect.insert(SQLParams.builder()
+        .model(customer)
+        .columnValues(columnValues)
+        .modelClass(Customer.class)
+        .tableName(DatabaseCache.getTableName(Customer.class, null))
+        .pkName("id")
+        .build());
+  }
+
+  @Benchmark
+  public String update() {
+    return dialect.update(SQLParams.builder()
+        .model(customer)
+        .modelClass(Customer.class)
+        .tableName(DatabaseCache.getTableName(Customer.class, null))
+        .pkName("id")
+        .conditionSQL(new StringBuilder(" AND id = ?"))
+        .build());
+  }
+
+}
@@ -0,0 +1,30 @@
+package in.asvignesh.databasewrapper.benchmark;
+
+import in.asvignesh.databasewrapper.DataModel;
+import in.asvignesh.databasewrapper.annotation.Ignore;
+import in.asvignesh.databasewrapper.annotation.Table;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Table(name = "orders")
+public class Order extends DataModel {
+
+  private Long id;
+  private Long customerId;
+  private Long amount;
+  private String status;
+
+  @Ignore
+  private Customer customer;
+
+  static Order of(long customerId, long n) {
+    Order order = new Order();
+    order.setCustomerId(customerId);
+    order.setAmount(n % 10_000);
+    order.setStatus(n % 4 == 0 ? "NEW" : "SHIPPED");
+    return order;
+  }
+
+}
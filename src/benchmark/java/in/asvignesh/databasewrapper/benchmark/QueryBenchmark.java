@@ -0,0 +1,154 @@
+package in.asvignesh.databasewrapper.benchmark;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.execute;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.select;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * byId, all and save through the wrapper next to the same statements written with plain JDBC,
+ * against in-memory H2 on the same pool, so the difference is the cost of the wrapper on top of
+ * sql2o and the driver.
+ * <p>
+ * Usage: {@code gradle jmh -Pinclude=QueryBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+  private static final int ROWS = 10_000;
+
+  static final String CUSTOMERS = "CREATE TABLE customers ("
+      + "id BIGINT AUTO_INCREMENT PRIMARY KEY, first_name VARCHAR(50), last_name VARCHAR(50), "
+      + "email VARCHAR(100), age INT, created_at TIMESTAMP)";
+
+  private static final String BY_ID = "SELECT * FROM customers WHERE id = ?";
+  private static final String BY_AGE = "SELECT * FROM customers WHERE age = ?";
+  private static final String INSERT = "INSERT INTO customers "
+      + "(first_name, last_name, email, age, created_at) VALUES (?, ?, ?, ?, ?)";
+
+  @Param({"true", "false"})
+  public boolean statistics;
+
+  private JdbcConnectionPool pool;
+  private long next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    pool = JdbcConnectionPool.create("jdbc:h2:mem:jmh;DB_CLOSE_DELAY=-1", "sa", "");
+    DatabaseWrapper.open(pool).enableSQLStatistic(statistics);
+    execute("DROP TABLE IF EXISTS customers");
+    execute(CUSTOMERS);
+    for (long n = 1; n <= ROWS; n++) {
+      Customer.of(n).save();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    pool.dispose();
+  }
+
+  private long nextId() {
+    next = next % ROWS + 1;
+    return next;
+  }
+
+  @Benchmark
+  public Customer byId() {
+    return select().from(Customer.class).byId(nextId());
+  }
+
+  @Benchmark
+  public Customer byIdJdbc() throws SQLException {
+    try (Connection connection = pool.getConnection();
+        PreparedStatement statement = connection.prepareStatement(BY_ID)) {
+      statement.setLong(1, nextId());
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return resultSet.next() ? map(resultSet) : null;
+      }
+    }
+  }
+
+  @Benchmark
+  public List<Customer> all() {
+    return select().from(Customer.class).where(Customer::getAge, (int) (nextId() % 100)).all();
+  }
+
+  @Benchmark
+  public List<Customer> allJdbc() throws SQLException {
+    try (Connection connection = pool.getConnection();
+        PreparedStatement statement = connection.prepareStatement(BY_AGE)) {
+      statement.setInt(1, (int) (nextId() % 100));
+      try (ResultSet resultSet = statement.executeQuery()) {
+        List<Customer> customers = new ArrayList<>();
+        while (resultSet.next()) {
+          customers.add(map(resultSet));
+        }
+        return customers;
+      }
+    }
+  }
+
+  @Benchmark
+  public Object save() {
+    return Customer.of(nextId()).save().asLong();
+  }
+
+  @Benchmark
+  public long saveJdbc() throws SQLException {
+    Customer customer = Customer.of(nextId());
+    try (Connection connection = pool.getConnection();
+        PreparedStatement statement = connection
+            .prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
+      statement.setString(1, customer.getFirstName());
+      statement.setString(2, customer.getLastName());
+      statement.setString(3, customer.getEmail());
+      statement.setInt(4, customer.getAge());
+      statement.setTimestamp(5, customer.getCreatedAt());
+      statement.executeUpdate();
+      try (ResultSet keys = statement.getGeneratedKeys()) {
+        keys.next();
+        return keys.getLong(1);
+      }
+    }
+  }
+
+  private static Customer map(ResultSet resultSet) throws SQLException {
+    Customer customer = new Customer();
+    customer.setId(resultSet.getLong("id"));
+    customer.setFirstName(resultSet.getString("first_name"));
+    customer.setLastName(resultSet.getString("last_name"));
+    customer.setEmail(resultSet.getString("email"));
+    customer.setAge(resultSet.getInt("age"));
+    customer.setCreatedAt(resultSet.getTimestamp("created_at"));
+    return customer;
+  }
+
+}
@@ -0,0 +1,79 @@
+package in.asvignesh.databasewrapper.benchmark;
+
+import in.asvignesh.databasewrapper.core.DatabaseCache;
+import in.asvignesh.databasewrapper.core.functions.TypeFunction;
+import in.asvignesh.databasewrapper.utils.DatabaseUtils;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Model reflection of the wrapper: getter calls, column values, name conversion, lambda column
+ * names and the {@link DatabaseCache} lookups done for every query.
+ * <p>
+ * Usage: {@code gradle jmh -Pinclude=ReflectionBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReflectionBenchmark {
+
+  private static final TypeFunction<Customer, String> LAST_NAME = Customer::getLastName;
+
+  private Customer customer;
+
+  @Setup
+  public void setup() {
+    customer = Customer.of(42);
+    customer.setId(42L);
+  }
+
+  @Benchmark
+  public Object invokeMethod() {
+    return DatabaseUtils.invokeMethod(customer, "getEmail", DatabaseUtils.EMPTY_ARG);
+  }
+
+  @Benchmark
+  public List<Object> toColumnValues() {
+    return DatabaseUtils.toColumnValues(customer, true);
+  }
+
+  @Benchmark
+  public String toUnderline() {
+    return DatabaseUtils.toUnderline("createdAt");
+  }
+
+  @Benchmark
+  public String lambdaColumnName() {
+    return DatabaseUtils.getLambdaColumnName(LAST_NAME);
+  }
+
+  @Benchmark
+  public String tableName() {
+    return DatabaseCache.getTableName(Customer.class, null);
+  }
+
+  @Benchmark
+  public String primaryKeyColumn() {
+    return DatabaseCache.getPKColumn(Customer.class);
+  }
+
+  @Benchmark
+  public Map<String, String> columnMappings() {
+    return DatabaseCache.computeModelColumnMappings(Customer.class);
+  }
+
+}
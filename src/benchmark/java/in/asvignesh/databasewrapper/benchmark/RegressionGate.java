@@ -0,0 +1,266 @@
+package in.asvignesh.databasewrapper.benchmark;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.atomic;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.delete;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.execute;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.saveBatch;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.select;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.update;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import in.asvignesh.databasewrapper.core.Joins;
+import in.asvignesh.databasewrapper.enums.OrderBy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import org.h2.jdbcx.JdbcConnectionPool;
+
+/**
+ * Allocated bytes and median latency of canonical query and model operations on in-memory H2,
+ * compared with a checked-in baseline. Exits with status 1 when an operation allocates or takes
+ * more than the baseline plus the tolerance, so a new per-row allocation or reflective call shows
+ * up at review time. Allocation is measured on the calling thread and is stable across machines
+ * running the same JVM; latency is not, so it has a looser tolerance and the baseline should be
+ * recorded on the machine that runs the gate.
+ * <p>
+ * Usage: {@code gradle regressionGate [-PupdateBaseline] [-PbytesTolerance=0.1]
+ * [-PlatencyTolerance=0.5] [-Piterations=2000]}
+ */
+public class RegressionGate {
+
+  private static final int CUSTOMERS = 1000;
+  private static final long BYTES_SLACK = 64;
+  private static final int ROUNDS = 5;
+
+  private final Map<String, Runnable> operations = new LinkedHashMap<>();
+  private final AtomicLong next = new AtomicLong();
+
+  public static void main(String[] args) throws IOException {
+    Map<String, String> options = new LinkedHashMap<>();
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      options.put(equals < 0 ? arg : arg.substring(0, equals),
+          equals < 0 ? "true" : arg.substring(equals + 1));
+    }
+    Path baseline = Paths.get(options.getOrDefault("baseline",
+        "src/benchmark/resources/regression-baseline.properties"));
+    int iterations = Integer.parseInt(options.getOrDefault("iterations", "2000"));
+
+    JdbcConnectionPool pool = JdbcConnectionPool
+        .create("jdbc:h2:mem:regression;DB_CLOSE_DELAY=-1", "sa", "");
+    DatabaseWrapper.open(pool);
+    RegressionGate gate = new RegressionGate();
+    gate.load();
+    Map<String, long[]> results = gate.measure(iterations);
+
+    boolean passed = true;
+    if (options.containsKey("updateBaseline")) {
+      write(baseline, results);
+      System.out.println("baseline written to " + baseline);
+    } else {
+      passed = gate.compare(read(baseline), results, iterations,
+          Double.parseDouble(options.getOrDefault("bytesTolerance", "0.1")),
+          Double.parseDouble(options.getOrDefault("latencyTolerance", "0.5")));
+    }
+    pool.dispose();
+    if (!passed) {
+      System.exit(1);
+    }
+  }
+
+  private RegressionGate() {
+    operations.put("byId", () -> select().from(Customer.class).byId(nextId()));
+    operations.put("byIdMissing", () -> select().from(Customer.class).byId(-nextId()));
+    operations.put("byIds", () -> select().from(Customer.class)
+        .byIds(nextId(), nextId(), nextId(), nextId(), nextId()));
+    operations.put("whereOne", () -> select().from(Customer.class)
+        .where(Customer::getEmail, "customer" + nextId() + "@example.com").one());
+    operations.put("whereAll", () -> select().from(Customer.class)
+        .where(Customer::getAge, (int) (nextId() % 100)).all());
+    operations.put("inAll", () -> select().from(Customer.class)
+        .in(Customer::getId, nextId(), nextId(), nextId()).all());
+    operations.put("orderAll", () -> select().from(Customer.class)
+        .gt(Customer::getId, nextId()).order(Customer::getId, OrderBy.DESC).limit(10));
+    operations.put("columns", () -> select("id, email").from(Customer.class)
+        .where(Customer::getAge, (int) (nextId() % 100)).all());
+    operations.put("exclude", () -> select().from(Customer.class).exclude(Customer::getEmail)
+        .where(Customer::getAge, (int) (nextId() % 100)).all());
+    operations.put("count", () -> select().from(Customer.class)
+        .where(Customer::getAge, (int) (nextId() % 100)).count());
+    operations.put("page", () -> select().from(Customer.class)
+        .order(Customer::getId, OrderBy.ASC).page((int) (nextId() % 50) + 1, 10));
+    operations.put("pageJoin", () -> select().from(Order.class)
+        .join(Joins.with(Customer.class).as(Order::getCustomer)
+            .on(Order::getCustomerId, Customer::getId))
+        .where(Order::getCustomerId, nextId()).page(1, 10));
+    operations.put("maps", () -> select().from(Customer.class)
+        .where(Customer::getAge, (int) (nextId() % 100)).maps());
+    operations.put("bySQL", () -> select()
+        .bySQL(Customer.class, "SELECT * FROM customers WHERE id = ?", nextId()).one());
+    operations.put("forEachReusing", () -> select().from(Customer.class)
+        .where(Customer::getAge, (int) (nextId() % 100)).forEachReusing(customer -> {
+        }));
+    operations.put("save", () -> this.order().save());
+    operations.put("saveBatch", () -> {
+      List<Order> batch = new ArrayList<>(10);
+      for (int i = 0; i < 10; i++) {
+        batch.add(this.order());
+      }
+      saveBatch(batch);
+    });
+    operations.put("updateSet", () -> update().from(Customer.class)
+        .set(Customer::getAge, (int) (nextId() % 100)).where(Customer::getId, nextId()).execute());
+    operations.put("updateModel", () -> {
+      long id = nextId();
+      Customer customer = Customer.of(id);
+      customer.setId(id);
+      customer.update();
+    });
+    // inserts the row it deletes, so that every run deletes one
+    operations.put("delete", () -> delete().from(Order.class)
+        .where(Order::getId, this.order().save().asLong()).execute());
+    operations.put("atomic", () -> atomic(() -> {
+      Customer customer = select().from(Customer.class).byId(nextId());
+      update().from(Customer.class).set(Customer::getAge, (customer.getAge() + 1) % 100)
+          .where(Customer::getId, customer.getId()).execute();
+    }));
+  }
+
+  private void load() {
+    execute(QueryBenchmark.CUSTOMERS);
+    execute("CREATE TABLE orders (id BIGINT AUTO_INCREMENT PRIMARY KEY, customer_id BIGINT, "
+        + "amount BIGINT, status VARCHAR(20))");
+    execute("CREATE INDEX orders_customer ON orders (customer_id)");
+    List<Customer> customers = new ArrayList<>(CUSTOMERS);
+    List<Order> orders = new ArrayList<>(CUSTOMERS * 3);
+    for (long n = 1; n <= CUSTOMERS; n++) {
+      customers.add(Customer.of(n));
+      for (int i = 0; i < 3; i++) {
+        orders.add(Order.of(n, n * 3 + i));
+      }
+    }
+    saveBatch(customers);
+    saveBatch(orders);
+  }
+
+  private long nextId() {
+    return next.incrementAndGet() % CUSTOMERS + 1;
+  }
+
+  private Order order() {
+    Order order = Order.of(nextId(), next.get());
+    order.setStatus("PENDING");
+    return order;
+  }
+
+  /**
+   * Every operation is warmed up before any is measured, so that the JIT has compiled the shared
+   * query path by then.
+   *
+   * @return bytes per operation and median nanos per operation, by operation name
+   */
+  private Map<String, long[]> measure(int iterations) {
+    for (Runnable operation : operations.values()) {
+      for (int i = 0; i < iterations; i++) {
+        operation.run();
+      }
+    }
+    Map<String, long[]> results = new LinkedHashMap<>();
+    operations.forEach((name, operation) -> results.put(name, measure(operation, iterations)));
+    return results;
+  }
+
+  /**
+   * Latency is the lowest of the medians of a few rounds, which filters out rounds slowed down by
+   * other processes of the machine.
+   */
+  private static long[] measure(Runnable operation, int iterations) {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    long allocated = threads.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < iterations; i++) {
+      operation.run();
+    }
+    long bytes = (threads.getThreadAllocatedBytes(thread) - allocated) / iterations;
+    long[] nanos = new long[Math.max(1, iterations / ROUNDS)];
+    long median = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      for (int i = 0; i < nanos.length; i++) {
+        long start = System.nanoTime();
+        operation.run();
+        nanos[i] = System.nanoTime() - start;
+      }
+      Arrays.sort(nanos);
+      median = Math.min(median, nanos[nanos.length / 2]);
+    }
+    return new long[]{bytes, median};
+  }
+
+  /**
+   * An operation over its latency limit is measured once more before it fails the gate, the
+   * allocation does not depend on the load of the machine and fails at once.
+   */
+  private boolean compare(Properties baseline, Map<String, long[]> results, int iterations,
+      double bytesTolerance, double latencyTolerance) {
+    boolean passed = true;
+    System.out.printf("%-16s %12s %12s %12s %12s  %s%n", "operation", "bytes/op", "baseline",
+        "median ns", "baseline", "");
+    for (Map.Entry<String, long[]> result : results.entrySet()) {
+      String name = result.getKey();
+      long bytes = result.getValue()[0];
+      long nanos = result.getValue()[1];
+      String baseBytes = baseline.getProperty(name + ".bytes");
+      String baseNanos = baseline.getProperty(name + ".medianNanos");
+      String verdict = "ok";
+      if (null == baseBytes || null == baseNanos) {
+        verdict = "no baseline";
+      } else if (bytes > Long.parseLong(baseBytes) * (1 + bytesTolerance) + BYTES_SLACK) {
+        verdict = "ALLOCATION REGRESSION";
+        passed = false;
+      } else if (nanos > Long.parseLong(baseNanos) * (1 + latencyTolerance)) {
+        nanos = Math.min(nanos, measure(operations.get(name), iterations)[1]);
+        if (nanos > Long.parseLong(baseNanos) * (1 + latencyTolerance)) {
+          verdict = "LATENCY REGRESSION";
+          passed = false;
+        }
+      }
+      System.out.printf("%-16s %,12d %12s %,12d %12s  %s%n", name, bytes,
+          null == baseBytes ? "-" : String.format("%,d", Long.parseLong(baseBytes)), nanos,
+          null == baseNanos ? "-" : String.format("%,d", Long.parseLong(baseNanos)), verdict);
+    }
+    System.out.println(passed ? "regression gate passed" : "regression gate FAILED");
+    return passed;
+  }
+
+  private static Properties read(Path baseline) throws IOException {
+    Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(baseline)) {
+      properties.load(in);
+    }
+    return properties;
+  }
+
+  private static void write(Path baseline, Map<String, long[]> results) throws IOException {
+    List<String> lines = new ArrayList<>();
+    lines.add("# RegressionGate baseline, " + System.getProperty("java.vm.name") + " "
+        + System.getProperty("java.version") + ", rewrite with -PupdateBaseline");
+    results.forEach((name, result) -> {
+      lines.add(name + ".bytes=" + result[0]);
+      lines.add(name + ".medianNanos=" + result[1]);
+    });
+    Files.createDirectories(baseline.toAbsolutePath().getParent());
+    Files.write(baseline, lines);
+  }
+
+}
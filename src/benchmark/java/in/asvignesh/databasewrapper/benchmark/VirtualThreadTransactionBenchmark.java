@@ -0,0 +1,133 @@
+package in.asvignesh.databasewrapper.benchmark;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.atomic;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.execute;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.select;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import in.asvignesh.databasewrapper.core.Query;
+import in.asvignesh.databasewrapper.core.Transaction;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import org.h2.jdbcx.JdbcConnectionPool;
+
+/**
+ * Runs N concurrent transactions against in-memory H2, one thread per transaction. Each
+ * transaction reads an account and increments its balance, first through the thread-local
+ * {@code atomic()} adapter and then with an explicit {@link Transaction} whose write hops to
+ * another executor. Uses virtual threads when the JVM has them (Java 21+), platform threads
+ * otherwise.
+ * <p>
+ * Usage: {@code gradle virtualThreadBenchmark -Ptransactions=100000}
+ */
+public class VirtualThreadTransactionBenchmark {
+
+  private static final int ACCOUNTS = 1000;
+  private static final int CONNECTIONS = 64;
+
+  private static final String DEPOSIT = "UPDATE accounts SET balance = balance + 1 WHERE id = ?";
+
+  public static void main(String[] args) throws Exception {
+    int transactions = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+    JdbcConnectionPool pool = JdbcConnectionPool
+        .create("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=60000", "sa", "");
+    pool.setMaxConnections(CONNECTIONS);
+    DatabaseWrapper.open(pool);
+    execute("CREATE TABLE accounts (id BIGINT PRIMARY KEY, balance BIGINT)");
+    for (long id = 1; id <= ACCOUNTS; id++) {
+      execute("INSERT INTO accounts (id, balance) VALUES (?, 0)", id);
+    }
+
+    // the H2 pool waits in a monitor, so the permits keep threads from pinning in there
+    Semaphore permits = new Semaphore(CONNECTIONS);
+    ExecutorService hops = newThreadPerTaskExecutor();
+
+    run("atomic()", transactions, permits, i -> {
+      long id = i % ACCOUNTS + 1;
+      atomic(() -> {
+        select().from(Account.class).byId(id);
+        execute(DEPOSIT, id);
+      }).catchException(e -> {
+        throw new IllegalStateException(e);
+      });
+    });
+
+    run("Transaction", transactions, permits, i -> {
+      long id = i % ACCOUNTS + 1;
+      Transaction tx = Transaction.begin();
+      try {
+        new Query<>(Account.class).in(tx).byId(id);
+        CompletableFuture
+            .runAsync(() -> new Query<>().in(tx).execute(DEPOSIT, id), hops)
+            .join();
+        tx.commit();
+      } finally {
+        tx.close();
+      }
+    });
+
+    hops.shutdown();
+    long balance = select().bySQL(Long.class, "SELECT SUM(balance) FROM accounts").one();
+    System.out.printf("balance %d, expected %d%n", balance, 2L * transactions);
+    pool.dispose();
+  }
+
+  private static void run(String name, int transactions, Semaphore permits, IntConsumer work)
+      throws InterruptedException {
+    ExecutorService executor = newThreadPerTaskExecutor();
+    AtomicInteger failures = new AtomicInteger();
+    long start = System.nanoTime();
+    for (int i = 0; i < transactions; i++) {
+      int n = i;
+      executor.execute(() -> {
+        try {
+          permits.acquire();
+          try {
+            work.accept(n);
+          } finally {
+            permits.release();
+          }
+        } catch (Exception e) {
+          failures.incrementAndGet();
+        }
+      });
+    }
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.HOURS);
+    long elapsed = System.nanoTime() - start;
+
+    System.out.printf("%-12s %,d transactions in %,d ms, %,.0f tx/s, %d failed (%s threads)%n",
+        name, transactions, TimeUnit.NANOSECONDS.toMillis(elapsed),
+        transactions / (elapsed / 1e9), failures.get(), VIRTUAL ? "virtual" : "platform");
+  }
+
+  private static final boolean VIRTUAL = virtualThreadsAvailable();
+
+  private static boolean virtualThreadsAvailable() {
+    try {
+      Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  private static ExecutorService newThreadPerTaskExecutor() {
+    if (VIRTUAL) {
+      try {
+        return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+            .invoke(null);
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    return Executors.newFixedThreadPool(CONNECTIONS * 4);
+  }
+
+}
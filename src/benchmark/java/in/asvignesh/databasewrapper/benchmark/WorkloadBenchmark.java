@@ -0,0 +1,294 @@
+package in.asvignesh.databasewrapper.benchmark;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.atomic;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.execute;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.saveBatch;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.select;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.update;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import in.asvignesh.databasewrapper.core.Joins;
+import in.asvignesh.databasewrapper.core.metrics.LatencyHistogram;
+import in.asvignesh.databasewrapper.enums.OrderBy;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.h2.jdbcx.JdbcConnectionPool;
+
+/**
+ * Mixed workload on a configurable number of threads: point reads, pages of orders with their
+ * customers joined, batch inserts and updates inside {@code atomic()}. After a warmup every
+ * operation reports its throughput and p50/p99/p999 latency, followed by the collections and
+ * allocation of the run. Runs on in-memory H2 unless a url is given; the tables customers and
+ * orders are dropped and created with the fixture data.
+ * <p>
+ * Usage: {@code gradle workloadBenchmark -Pthreads=16 -Pseconds=30 -Pwarmup=10 -Pcustomers=50000
+ * -Pmix=read=60,page=15,batch=10,update=15 [-Purl=jdbc:... -Puser=... -Ppassword=...]}
+ */
+public class WorkloadBenchmark {
+
+  private static final int ORDERS_PER_CUSTOMER = 3;
+  private static final int BATCH_SIZE = 20;
+  private static final int PAGE_SIZE = 20;
+
+  private final int threads;
+  private final int customers;
+  private final Map<String, Operation> operations = new LinkedHashMap<>();
+  private final AtomicLong orders = new AtomicLong();
+  private volatile boolean measuring;
+  private volatile boolean running = true;
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new LinkedHashMap<>();
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      options.put(arg.substring(0, equals), arg.substring(equals + 1));
+    }
+    int threads = Integer.parseInt(options.getOrDefault("threads", "16"));
+    String url = options.getOrDefault("url", "");
+    JdbcConnectionPool pool = null;
+    if (url.isEmpty()) {
+      pool = JdbcConnectionPool.create("jdbc:h2:mem:workload;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=60000",
+          "sa", "");
+      pool.setMaxConnections(threads * 2);
+      DatabaseWrapper.open(pool);
+    } else {
+      DatabaseWrapper.open(url, options.getOrDefault("user", ""),
+          options.getOrDefault("password", ""));
+    }
+
+    WorkloadBenchmark benchmark = new WorkloadBenchmark(threads,
+        Integer.parseInt(options.getOrDefault("customers", "50000")),
+        options.getOrDefault("mix", "read=60,page=15,batch=10,update=15"));
+    benchmark.load();
+    benchmark.run(Integer.parseInt(options.getOrDefault("warmup", "10")),
+        Integer.parseInt(options.getOrDefault("seconds", "30")));
+    if (null != pool) {
+      pool.dispose();
+    }
+  }
+
+  private WorkloadBenchmark(int threads, int customers, String mix) {
+    this.threads = threads;
+    this.customers = customers;
+    for (String part : mix.split(",")) {
+      String[] weight = part.split("=");
+      operations.put(weight[0].trim(), new Operation(Integer.parseInt(weight[1].trim())));
+    }
+  }
+
+  /**
+   * Create the tables and save the fixture through the wrapper, in batches on all threads.
+   */
+  private void load() throws Exception {
+    long start = System.nanoTime();
+    execute("DROP TABLE IF EXISTS orders");
+    execute("DROP TABLE IF EXISTS customers");
+    execute(QueryBenchmark.CUSTOMERS);
+    execute("CREATE TABLE orders (id BIGINT AUTO_INCREMENT PRIMARY KEY, customer_id BIGINT, "
+        + "amount BIGINT, status VARCHAR(20))");
+    execute("CREATE INDEX orders_customer ON orders (customer_id)");
+    execute("CREATE INDEX orders_status ON orders (status)");
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<?>> loads = new ArrayList<>();
+    for (long from = 1; from <= customers; from += 1000) {
+      long first = from;
+      long last = Math.min(customers, from + 999);
+      loads.add(executor.submit(() -> {
+        saveBatch(LongStream.rangeClosed(first, last).mapToObj(Customer::of)
+            .collect(Collectors.toList()));
+        saveBatch(LongStream.rangeClosed(first, last)
+            .boxed()
+            .flatMap(customer -> LongStream.range(0, ORDERS_PER_CUSTOMER)
+                .mapToObj(n -> Order.of(customer, customer * ORDERS_PER_CUSTOMER + n)))
+            .collect(Collectors.toList()));
+      }));
+    }
+    for (Future<?> load : loads) {
+      load.get();
+    }
+    executor.shutdown();
+    orders.set((long) customers * ORDERS_PER_CUSTOMER);
+    System.out.printf("loaded %,d customers and %,d orders in %,d ms%n", customers, orders.get(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  private void run(int warmupSeconds, int seconds) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<Long>> workers = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      workers.add(executor.submit(this::work));
+    }
+    TimeUnit.SECONDS.sleep(warmupSeconds);
+    operations.values().forEach(Operation::reset);
+    Map<String, long[]> collections = collections();
+    measuring = true;
+    long start = System.nanoTime();
+    TimeUnit.SECONDS.sleep(seconds);
+    measuring = false;
+    long elapsed = System.nanoTime() - start;
+    Map<String, long[]> collected = collections();
+    running = false;
+    long allocated = 0;
+    for (Future<Long> worker : workers) {
+      allocated += worker.get();
+    }
+    executor.shutdown();
+    this.report(elapsed, collections, collected, allocated);
+  }
+
+  /**
+   * Run operations picked by weight until stopped.
+   *
+   * @return bytes allocated by this thread while measuring, -1 when the JVM does not tell
+   */
+  private long work() {
+    int total = operations.values().stream().mapToInt(operation -> operation.weight).sum();
+    long allocatedBefore = -1;
+    long allocated = 0;
+    while (running) {
+      if (measuring && allocatedBefore < 0) {
+        allocatedBefore = allocatedBytes();
+      }
+      int pick = ThreadLocalRandom.current().nextInt(total);
+      for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+        pick -= entry.getValue().weight;
+        if (pick < 0) {
+          this.perform(entry.getKey(), entry.getValue());
+          break;
+        }
+      }
+      if (!measuring && allocatedBefore >= 0 && 0 == allocated) {
+        allocated = allocatedBytes() - allocatedBefore;
+      }
+    }
+    return allocatedBefore < 0 ? -1 : allocated;
+  }
+
+  private void perform(String name, Operation operation) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long start = System.nanoTime();
+    try {
+      switch (name) {
+        case "read":
+          select().from(Customer.class).byId(random.nextLong(customers) + 1);
+          break;
+        case "page":
+          select().from(Order.class)
+              .join(Joins.with(Customer.class).as(Order::getCustomer)
+                  .on(Order::getCustomerId, Customer::getId))
+              .where(Order::getStatus, "NEW")
+              .order(Order::getId, OrderBy.DESC)
+              .page(random.nextInt(50) + 1, PAGE_SIZE);
+          break;
+        case "batch":
+          long customer = random.nextLong(customers) + 1;
+          List<Order> batch = new ArrayList<>(BATCH_SIZE);
+          for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(Order.of(customer, orders.incrementAndGet()));
+          }
+          saveBatch(batch);
+          break;
+        case "update":
+          long id = random.nextLong(customers) + 1;
+          atomic(() -> {
+            Customer found = select().from(Customer.class).byId(id);
+            update().from(Customer.class).set(Customer::getAge, (found.getAge() + 1) % 100)
+                .where(Customer::getId, id).execute();
+          }).catchException(e -> {
+            throw new IllegalStateException(e);
+          });
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown operation " + name);
+      }
+      if (measuring) {
+        operation.latency.record(System.nanoTime() - start);
+      }
+    } catch (RuntimeException e) {
+      if (measuring) {
+        operation.errors.increment();
+      }
+    }
+  }
+
+  private void report(long elapsedNanos, Map<String, long[]> before, Map<String, long[]> after,
+      long allocated) {
+    double seconds = elapsedNanos / 1e9;
+    long count = 0;
+    System.out.printf("%d threads, %.1f s measured%n", threads, seconds);
+    System.out.printf("%-8s %10s %10s %10s %10s %10s %10s %8s%n", "op", "count", "ops/s",
+        "p50 us", "p99 us", "p999 us", "max us", "errors");
+    for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+      LatencyHistogram latency = entry.getValue().latency;
+      count += latency.count();
+      System.out.printf("%-8s %,10d %,10.0f %,10d %,10d %,10d %,10d %8d%n", entry.getKey(),
+          latency.count(), latency.count() / seconds, micros(latency.percentileNanos(0.5)),
+          micros(latency.percentileNanos(0.99)), micros(latency.percentileNanos(0.999)),
+          micros(latency.maxNanos()), entry.getValue().errors.sum());
+    }
+    System.out.printf("%-8s %,10d %,10.0f%n", "total", count, count / seconds);
+    after.forEach((collector, totals) -> {
+      long[] start = before.getOrDefault(collector, new long[2]);
+      System.out.printf("gc %-24s %,6d collections %,8d ms%n", collector, totals[0] - start[0],
+          totals[1] - start[1]);
+    });
+    if (allocated >= 0 && count > 0) {
+      System.out.printf("allocated %,.0f MB/s, %,d bytes/op%n", allocated / seconds / 1e6,
+          allocated / count);
+    }
+  }
+
+  private static Map<String, long[]> collections() {
+    Map<String, long[]> collections = new LinkedHashMap<>();
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      collections.put(collector.getName(),
+          new long[]{collector.getCollectionCount(), collector.getCollectionTime()});
+    }
+    return collections;
+  }
+
+  private static long allocatedBytes() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threads)
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+
+  private static long micros(long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+
+  private static class Operation {
+
+    private final int weight;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    Operation(int weight) {
+      this.weight = weight;
+    }
+
+    void reset() {
+      latency.reset();
+      errors.reset();
+    }
+  }
+
+}
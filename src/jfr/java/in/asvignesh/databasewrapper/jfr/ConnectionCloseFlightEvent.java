@@ -0,0 +1,14 @@
+package in.asvignesh.databasewrapper.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("in.asvignesh.databasewrapper.ConnectionClose")
+@Label("Connection Close")
+@Category("Database Wrapper")
+@Description("Giving a connection back to the pool")
+class ConnectionCloseFlightEvent extends jdk.jfr.Event {
+
+}
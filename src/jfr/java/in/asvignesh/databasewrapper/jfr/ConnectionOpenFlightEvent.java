@@ -0,0 +1,18 @@
+package in.asvignesh.databasewrapper.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("in.asvignesh.databasewrapper.ConnectionOpen")
+@Label("Connection Open")
+@Category("Database Wrapper")
+@Description("Obtaining a connection for a statement")
+class ConnectionOpenFlightEvent extends jdk.jfr.Event {
+
+  @Label("Transactional")
+  @Description("Taken from the transaction instead of the pool")
+  boolean transactional;
+
+}
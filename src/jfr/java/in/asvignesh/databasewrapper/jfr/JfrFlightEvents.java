@@ -0,0 +1,98 @@
+package in.asvignesh.databasewrapper.jfr;
+
+import in.asvignesh.databasewrapper.core.metrics.FlightEvents;
+import in.asvignesh.databasewrapper.core.metrics.Fingerprint;
+import in.asvignesh.databasewrapper.core.metrics.Operation;
+import in.asvignesh.databasewrapper.core.metrics.Phase;
+import in.asvignesh.databasewrapper.core.metrics.QueryProfile;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+
+/**
+ * Flight Recorder implementation of {@link FlightEvents}, loaded by name.
+ */
+public class JfrFlightEvents extends FlightEvents {
+
+  private static final EventType[] TYPES = {
+      EventType.getEventType(StatementFlightEvent.class),
+      EventType.getEventType(ReadFlightEvent.class),
+      EventType.getEventType(TransactionFlightEvent.class),
+      EventType.getEventType(ConnectionOpenFlightEvent.class),
+      EventType.getEventType(ConnectionCloseFlightEvent.class)
+  };
+
+  @Override
+  public Object begin(Kind kind) {
+    if (!TYPES[kind.ordinal()].isEnabled()) {
+      return null;
+    }
+    Event event;
+    switch (kind) {
+      case STATEMENT:
+        event = new StatementFlightEvent();
+        break;
+      case READ:
+        event = new ReadFlightEvent();
+        break;
+      case TRANSACTION:
+        event = new TransactionFlightEvent();
+        break;
+      case CONNECTION_OPEN:
+        event = new ConnectionOpenFlightEvent();
+        break;
+      default:
+        event = new ConnectionCloseFlightEvent();
+    }
+    event.begin();
+    return event;
+  }
+
+  @Override
+  public void statement(Object event, Operation operation, String sql, Class<?> modelClass,
+      long rows, Throwable error) {
+    StatementFlightEvent statement = (StatementFlightEvent) event;
+    statement.end();
+    if (statement.shouldCommit()) {
+      statement.operation = operation.name();
+      statement.fingerprint = Fingerprint.of(sql);
+      statement.modelClass = modelClass;
+      statement.rows = rows;
+      statement.error = null == error ? null : error.toString();
+      statement.commit();
+    }
+  }
+
+  @Override
+  public void read(Object event, QueryProfile profile, Class<?> modelClass) {
+    ReadFlightEvent read = (ReadFlightEvent) event;
+    read.end();
+    if (read.shouldCommit()) {
+      read.operation = profile.operation().name();
+      read.fingerprint = Fingerprint.of(profile.shape());
+      read.modelClass = modelClass;
+      read.render = profile.nanos(Phase.RENDER);
+      read.connection = profile.nanos(Phase.CONNECTION);
+      read.count = profile.nanos(Phase.COUNT);
+      read.execute = profile.nanos(Phase.EXECUTE);
+      read.mapping = profile.nanos(Phase.MAPPING);
+      read.join = profile.nanos(Phase.JOIN);
+      read.commit();
+    }
+  }
+
+  @Override
+  public void transaction(Object event, boolean committed) {
+    TransactionFlightEvent transaction = (TransactionFlightEvent) event;
+    transaction.committed = committed;
+    transaction.commit();
+  }
+
+  @Override
+  public void connection(Object event, boolean transactional) {
+    if (event instanceof ConnectionOpenFlightEvent) {
+      ((ConnectionOpenFlightEvent) event).transactional = transactional;
+    }
+    ((Event) event).commit();
+  }
+
+}
@@ -0,0 +1,48 @@
+package in.asvignesh.databasewrapper.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("in.asvignesh.databasewrapper.Read")
+@Label("Read")
+@Category("Database Wrapper")
+@Description("A read of a query with the time of each of its phases")
+class ReadFlightEvent extends jdk.jfr.Event {
+
+  @Label("Operation")
+  String operation;
+
+  @Label("Fingerprint")
+  String fingerprint;
+
+  @Label("Model Class")
+  Class<?> modelClass;
+
+  @Label("Render")
+  @Timespan
+  long render;
+
+  @Label("Connection")
+  @Timespan
+  long connection;
+
+  @Label("Count")
+  @Timespan
+  long count;
+
+  @Label("Execute")
+  @Timespan
+  long execute;
+
+  @Label("Mapping")
+  @Timespan
+  long mapping;
+
+  @Label("Join")
+  @Timespan
+  long join;
+
+}
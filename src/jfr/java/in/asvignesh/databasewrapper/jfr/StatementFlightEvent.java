@@ -0,0 +1,29 @@
+package in.asvignesh.databasewrapper.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("in.asvignesh.databasewrapper.Statement")
+@Label("Statement")
+@Category("Database Wrapper")
+@Description("One SQL statement run by a query")
+class StatementFlightEvent extends jdk.jfr.Event {
+
+  @Label("Operation")
+  String operation;
+
+  @Label("Fingerprint")
+  String fingerprint;
+
+  @Label("Model Class")
+  Class<?> modelClass;
+
+  @Label("Rows")
+  long rows;
+
+  @Label("Error")
+  String error;
+
+}
@@ -0,0 +1,17 @@
+package in.asvignesh.databasewrapper.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("in.asvignesh.databasewrapper.Transaction")
+@Label("Transaction")
+@Category("Database Wrapper")
+@Description("A transaction run by atomic()")
+class TransactionFlightEvent extends jdk.jfr.Event {
+
+  @Label("Committed")
+  boolean committed;
+
+}
@@ -8,10 +8,10 @@ import java.io.Serializable;
 public abstract class DataModel {
 
   /**
-   * The query object for the current model.
+   * The query object for the current model, created on first use so that mapped rows do not pay
+   * for it and it picks up the database that is current when the model is written.
    */
-  private transient Query<? extends DataModel> query = new Query<>(
-      this.getClass());
+  private transient Query<? extends DataModel> query;
 
   /**
    * Save model
@@ -19,11 +19,11 @@ public abstract class DataModel {
    * @return ResultKey
    */
   public ResultKey save() {
-    return query.save(this);
+    return query().save(this);
   }
 
   public ResultKey saveOrUpdateOnDuplicate() {
-    return query.saveOrUpdateOnDuplicate(this);
+    return query().saveOrUpdateOnDuplicate(this);
   }
 
   /**
@@ -32,7 +32,7 @@ public abstract class DataModel {
    * @return number of rows affected after execution
    */
   public int update() {
-    return query.updateByModel(this);
+    return query().updateByModel(this);
   }
 
   /**
@@ -51,7 +51,7 @@ public abstract class DataModel {
    * @return number of rows affected after execution
    */
   public int delete() {
-    return query.deleteByModel(this);
+    return query().deleteByModel(this);
   }
 
   /**
@@ -62,7 +62,7 @@ public abstract class DataModel {
    * @return Query
    */
   public Query<? extends DataModel> set(String column, Object value) {
-    return query.set(column, value);
+    return query().set(column, value);
   }
 
   /**
@@ -75,7 +75,7 @@ public abstract class DataModel {
   public <T extends DataModel, R> Query<? extends DataModel> set(
       TypeFunction<T, R> function,
       Object value) {
-    return query.set(function, value);
+    return query().set(function, value);
   }
 
   /**
@@ -86,7 +86,7 @@ public abstract class DataModel {
    * @return Query
    */
   public Query<? extends DataModel> where(String statement, Object value) {
-    return query.where(statement, value);
+    return query().where(statement, value);
   }
 
   /**
@@ -99,7 +99,14 @@ public abstract class DataModel {
   public <T extends DataModel, R> Query<? extends DataModel> where(
       TypeFunction<T, R> function,
       Object value) {
-    return query.where(function, value);
+    return query().where(function, value);
+  }
+
+  private Query<? extends DataModel> query() {
+    if (null == query) {
+      query = new Query<>(this.getClass());
+    }
+    return query;
   }
 
 }
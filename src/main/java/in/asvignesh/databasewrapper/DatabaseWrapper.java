@@ -3,23 +3,58 @@ package in.asvignesh.databasewrapper;
 import static in.asvignesh.databasewrapper.enums.ErrorCode.SQL2O_IS_NULL;
 import static in.asvignesh.databasewrapper.utils.Functions.ifReturn;
 import static in.asvignesh.databasewrapper.utils.Functions.ifReturnOrThrow;
+import static in.asvignesh.databasewrapper.utils.Functions.ifNotNullReturn;
+import static in.asvignesh.databasewrapper.utils.Functions.ifNotNullThen;
+import static in.asvignesh.databasewrapper.utils.Functions.ifNullThrow;
+import static in.asvignesh.databasewrapper.utils.Functions.ifThen;
 import static in.asvignesh.databasewrapper.utils.Functions.ifThrow;
 import static java.util.stream.Collectors.joining;
 
 import in.asvignesh.databasewrapper.core.Atomic;
 import in.asvignesh.databasewrapper.core.Query;
 import in.asvignesh.databasewrapper.core.ResultKey;
+import in.asvignesh.databasewrapper.core.SpilledList;
+import in.asvignesh.databasewrapper.core.cache.CacheFiles;
+import in.asvignesh.databasewrapper.core.cache.EntityCache;
+import in.asvignesh.databasewrapper.core.cache.EntityCaches;
+import in.asvignesh.databasewrapper.core.cache.KeyGuards;
+import in.asvignesh.databasewrapper.core.cache.Replica;
+import in.asvignesh.databasewrapper.core.cache.Replicas;
+import in.asvignesh.databasewrapper.core.cache.ResultCache;
+import in.asvignesh.databasewrapper.core.cache.SingleFlight;
 import in.asvignesh.databasewrapper.core.dml.Delete;
 import in.asvignesh.databasewrapper.core.dml.Select;
 import in.asvignesh.databasewrapper.core.dml.Update;
 import in.asvignesh.databasewrapper.core.functions.TypeFunction;
+import in.asvignesh.databasewrapper.core.metrics.ConnectionTracker;
+import in.asvignesh.databasewrapper.core.metrics.Fingerprint;
+import in.asvignesh.databasewrapper.core.metrics.FlightEvents;
+import in.asvignesh.databasewrapper.core.metrics.FlightEvents.Kind;
+import in.asvignesh.databasewrapper.core.metrics.Operation;
+import in.asvignesh.databasewrapper.core.metrics.PhaseProfiler;
+import in.asvignesh.databasewrapper.core.metrics.QueryListener;
+import in.asvignesh.databasewrapper.core.metrics.QueryMetrics;
+import in.asvignesh.databasewrapper.core.metrics.StatementSummary;
+import in.asvignesh.databasewrapper.core.shard.Shards;
 import in.asvignesh.databasewrapper.dialect.Dialect;
 import in.asvignesh.databasewrapper.dialect.MySQLDialect;
 import in.asvignesh.databasewrapper.exception.DatabaseWrapperException;
 import in.asvignesh.databasewrapper.utils.DatabaseUtils;
 import java.io.Serializable;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import javax.sql.DataSource;
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -34,6 +69,10 @@ import org.sql2o.quirks.QuirksDetector;
 public class DatabaseWrapper {
 
   private static DatabaseWrapper instance;
+  /**
+   * Database bound to the current thread by {@link #run(Runnable)}, e.g. the one of a tenant.
+   */
+  private static final ThreadLocal<DatabaseWrapper> CURRENT = new ThreadLocal<>();
   /**
    * The object of the underlying operation database.
    */
@@ -53,15 +92,67 @@ public class DatabaseWrapper {
    */
   private Class<? extends Exception> rollbackException = RuntimeException.class;
   /**
-   * SQL performance statistics are enabled, which is enabled by default, and outputs the elapsed
-   * time required.
+   * SQL performance statistics are enabled, which is enabled by default: statements, connections
+   * and transactions are timed into {@link #metrics()} and passed on to its listeners.
    */
   private boolean enableSQLStatistic = true;
+  private final QueryMetrics metrics = new QueryMetrics();
+  /**
+   * Phase histograms of every read, null when reads are not profiled.
+   */
+  private PhaseProfiler phaseProfiler;
+  /**
+   * Checkouts of pool connections by queries, null when not tracked.
+   */
+  private ConnectionTracker connectionTracker;
   /**
    * use the limit statement of SQL and use "limit ?" when enabled, the way to retrieve a fixed
    * number of rows.
    */
   private boolean useSQLLimit = true;
+  /**
+   * Databases holding the partitions of models that declare a shard key, null when not sharded.
+   */
+  private Shards shards;
+  /**
+   * Rows and estimated bytes of a list result kept on the heap, the rest is spilled to a temp
+   * file. 0 for no limit.
+   */
+  private int spillRows;
+  private long spillBytes;
+  private Path spillDirectory;
+  /**
+   * Executor running the async query variants, null for a shared daemon pool.
+   */
+  private Executor asyncExecutor;
+  /**
+   * Entity caches of the {@link in.asvignesh.databasewrapper.annotation.Cacheable} models.
+   */
+  private final EntityCaches entityCaches = new EntityCaches();
+  /**
+   * Results of queries marked {@link Query#cached(java.time.Duration)}.
+   */
+  private ResultCache resultCache = new ResultCache(100_000);
+  /**
+   * In-flight reads of queries marked {@link Query#coalesce()}.
+   */
+  private final SingleFlight singleFlight = new SingleFlight();
+  /**
+   * Bloom filter guards of the {@link in.asvignesh.databasewrapper.annotation.BloomGuard} models.
+   */
+  private final KeyGuards keyGuards = new KeyGuards();
+  /**
+   * In-memory tables of the {@link in.asvignesh.databasewrapper.annotation.Replicated} models.
+   */
+  private final Replicas replicas = new Replicas();
+  /**
+   * Save of the warm-start file started by {@link #persistCaches(Path, Duration)}, its schedule and
+   * shutdown hook, null when caches are not persisted.
+   */
+  private final ReentrantLock cacheFileLock = new ReentrantLock();
+  private Runnable cacheSave;
+  private ScheduledFuture<?> cacheSaves;
+  private Thread cacheSaveHook;
 
   /**
    * Create DatabaseWrapper with Sql2o
@@ -100,25 +191,77 @@ public class DatabaseWrapper {
     return of();
   }
 
+  /**
+   * The current database: the one bound to this thread, otherwise the global one.
+   *
+   * @return DatabaseWrapper
+   */
   public static DatabaseWrapper of() {
+    DatabaseWrapper current = CURRENT.get();
+    if (null != current) {
+      return current;
+    }
     return ifReturnOrThrow(null != instance && null != instance.sql2o,
         instance,
         new DatabaseWrapperException(SQL2O_IS_NULL));
   }
 
   /**
-   * Create DatabaseWrapper with Sql2o
+   * Whether {@link #of()} has a database to return.
+   *
+   * @return true when a database is bound to this thread or a global one is open
+   */
+  public static boolean isOpen() {
+    return null != CURRENT.get() || (null != instance && null != instance.sql2o);
+  }
+
+  /**
+   * Create DatabaseWrapper with Sql2o and make it the global one
    *
    * @param sql2o sql2o instance
    * @return DatabaseWrapper
    */
   public static DatabaseWrapper open(Sql2o sql2o) {
+    DatabaseWrapper databaseWrapper = create(sql2o);
+    instance = databaseWrapper;
+    return databaseWrapper;
+  }
+
+  /**
+   * Create an independent DatabaseWrapper with Sql2o, the global one is left untouched.
+   *
+   * @param sql2o sql2o instance
+   * @return DatabaseWrapper
+   */
+  public static DatabaseWrapper create(Sql2o sql2o) {
+    ifNullThrow(sql2o, new DatabaseWrapperException(SQL2O_IS_NULL));
     DatabaseWrapper databaseWrapper = new DatabaseWrapper();
     databaseWrapper.setSql2o(sql2o);
-    instance = databaseWrapper;
     return databaseWrapper;
   }
 
+  /**
+   * Create an independent DatabaseWrapper with datasource
+   *
+   * @param dataSource datasource instance
+   * @return DatabaseWrapper
+   */
+  public static DatabaseWrapper create(DataSource dataSource) {
+    return create(new Sql2o(dataSource));
+  }
+
+  /**
+   * Create an independent DatabaseWrapper with url and db info
+   *
+   * @param url jdbc url
+   * @param user database username
+   * @param pass database password
+   * @return DatabaseWrapper
+   */
+  public static DatabaseWrapper create(String url, String user, String pass) {
+    return create(new Sql2o(url, user, pass, QuirksDetector.forURL(url)));
+  }
+
   /**
    * Create DatabaseWrapper with url, like Sqlite or h2
    *
@@ -191,10 +334,14 @@ public class DatabaseWrapper {
    * @return Atomic
    */
   public static Atomic atomic(Runnable runnable) {
+    long start = System.nanoTime();
+    Object flight = FlightEvents.get().begin(Kind.TRANSACTION);
+    boolean committed = false;
     try {
       Query.beginTransaction();
       runnable.run();
       Query.commit();
+      committed = true;
       return Atomic.ok();
     } catch (Exception e) {
 
@@ -209,9 +356,27 @@ public class DatabaseWrapper {
       return Atomic.error(e).rollback(isRollback);
     } finally {
       Query.endTransaction();
+      DatabaseWrapper db = ifNotNullReturn(CURRENT.get(), () -> instance);
+      if (null != db && db.enableSQLStatistic) {
+        db.metrics.transaction(System.nanoTime() - start, committed);
+      }
+      if (null != flight) {
+        FlightEvents.get().transaction(flight, committed);
+      }
     }
   }
 
+  /**
+   * Code that performs a transaction operation on the async executor of the current database.
+   *
+   * @param runnable the code snippet to execute.
+   * @return future of the Atomic
+   */
+  public static CompletableFuture<Atomic> atomicAsync(Runnable runnable) {
+    DatabaseWrapper db = of();
+    return CompletableFuture.supplyAsync(() -> db.call(() -> atomic(runnable)), db.asyncExecutor());
+  }
+
   /**
    * Open a query statement.
    *
@@ -279,8 +444,11 @@ public class DatabaseWrapper {
    * @param models model list
    */
   public static <T extends DataModel> void saveBatch(List<T> models) {
-    atomic(() -> models.forEach(DatabaseWrapper::save))
+    long start = System.nanoTime();
+    Atomic atomic = atomic(() -> models.forEach(DatabaseWrapper::save))
         .catchException(e -> System.out.println("Batch save model error, message: {}" + e));
+    of().recordBatch(models.isEmpty() ? null : models.get(0).getClass(), models.size(),
+        System.nanoTime() - start, atomic);
   }
 
   /**
@@ -293,9 +461,11 @@ public class DatabaseWrapper {
   public static <T extends DataModel, S extends Serializable> void deleteBatch(
       Class<T> model,
       S... ids) {
-    atomic(() -> Arrays.stream(ids)
+    long start = System.nanoTime();
+    Atomic atomic = atomic(() -> Arrays.stream(ids)
         .forEach(new Query<>(model)::deleteById))
         .catchException(e -> System.out.println("Batch save model error, message: {}" + e));
+    of().recordBatch(model, ids.length, System.nanoTime() - start, atomic);
   }
 
   /**
@@ -331,6 +501,45 @@ public class DatabaseWrapper {
     return new Query<>().execute(sql, params);
   }
 
+  /**
+   * Run code with this database as the current one, every query, model and transaction in it
+   * that is not explicitly bound uses this database.
+   *
+   * @param runnable the code snippet to execute.
+   */
+  public void run(Runnable runnable) {
+    this.call(() -> {
+      runnable.run();
+      return null;
+    });
+  }
+
+  /**
+   * Run code with this database as the current one and return its result.
+   *
+   * @param supplier the code snippet to execute.
+   * @return result of the supplier
+   */
+  public <R> R call(Supplier<R> supplier) {
+    DatabaseWrapper previous = CURRENT.get();
+    CURRENT.set(this);
+    try {
+      return supplier.get();
+    } finally {
+      ifThen(null == previous, CURRENT::remove, () -> CURRENT.set(previous));
+    }
+  }
+
+  /**
+   * Open a query of a model bound to this database.
+   *
+   * @param modelClass model class type
+   * @return Query
+   */
+  public <T extends DataModel> Query<T> query(Class<T> modelClass) {
+    return new Query<>(this, modelClass);
+  }
+
   /**
    * Set the type of rollback exception to trigger the transaction rollback.
    *
@@ -391,6 +600,84 @@ public class DatabaseWrapper {
     return this.enableSQLStatistic;
   }
 
+  /**
+   * Statement, connection and transaction statistics, recorded while
+   * {@link #enableSQLStatistic(boolean)} is on.
+   */
+  public QueryMetrics metrics() {
+    return metrics;
+  }
+
+  /**
+   * Statements that took the most time in total, grouped by their {@link Fingerprint}.
+   *
+   * @param limit number of statements
+   * @return statements, most expensive first
+   */
+  public List<StatementSummary> statistics(int limit) {
+    return metrics.statistics().top(limit);
+  }
+
+  public List<StatementSummary> statistics() {
+    return this.statistics(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Be notified of every statement and transaction while SQL statistics are enabled.
+   *
+   * @param listener listener
+   * @return DatabaseWrapper
+   */
+  public DatabaseWrapper addQueryListener(QueryListener listener) {
+    metrics.addListener(listener);
+    return this;
+  }
+
+  public DatabaseWrapper removeQueryListener(QueryListener listener) {
+    metrics.removeListener(listener);
+    return this;
+  }
+
+  /**
+   * Profile the phases of every read into the profiler, see {@link Query#profile}. Pass null to
+   * stop profiling.
+   *
+   * @param phaseProfiler profiler
+   * @return DatabaseWrapper
+   */
+  public DatabaseWrapper phaseProfiler(PhaseProfiler phaseProfiler) {
+    this.phaseProfiler = phaseProfiler;
+    return this;
+  }
+
+  public PhaseProfiler phaseProfiler() {
+    return phaseProfiler;
+  }
+
+  /**
+   * Track the connections queries take from the pool, see {@link ConnectionTracker}. Pass null to
+   * stop tracking.
+   *
+   * @param connectionTracker tracker
+   * @return DatabaseWrapper
+   */
+  public DatabaseWrapper trackConnections(ConnectionTracker connectionTracker) {
+    this.connectionTracker = connectionTracker;
+    return this;
+  }
+
+  public ConnectionTracker connectionTracker() {
+    return connectionTracker;
+  }
+
+  private void recordBatch(Class<?> modelClass, int rows, long elapsedNanos, Atomic atomic) {
+    if (enableSQLStatistic) {
+      Exception error = atomic.catchAndReturn(e -> e);
+      metrics.statement(Operation.BATCH, null, null, modelClass, null == error ? rows : 0,
+          elapsedNanos, error);
+    }
+  }
+
   /**
    * Set the use of SQL limit.
    *
@@ -406,6 +693,237 @@ public class DatabaseWrapper {
     return this.useSQLLimit;
   }
 
+  /**
+   * Spill the rows of a list result beyond either budget to a memory-mapped temp file, the result
+   * is then a {@link SpilledList}. Not applied to joins, cached, coalesced or scattered reads.
+   *
+   * @param maxRows rows kept on the heap, 0 for no limit
+   * @param maxBytes estimated bytes kept on the heap, 0 for no limit
+   * @return DatabaseWrapper
+   */
+  public DatabaseWrapper spillAfter(int maxRows, long maxBytes) {
+    this.spillRows = maxRows;
+    this.spillBytes = maxBytes;
+    return this;
+  }
+
+  /**
+   * Set the directory of the spill files, the default temp directory otherwise.
+   *
+   * @param spillDirectory directory
+   * @return DatabaseWrapper
+   */
+  public DatabaseWrapper spillDirectory(Path spillDirectory) {
+    this.spillDirectory = spillDirectory;
+    return this;
+  }
+
+  public int spillRows() {
+    return spillRows;
+  }
+
+  public long spillBytes() {
+    return spillBytes;
+  }
+
+  public Path spillDirectory() {
+    return spillDirectory;
+  }
+
+  /**
+   * Spread the models declaring {@link in.asvignesh.databasewrapper.annotation.Table#shardKey()}
+   * over several databases, routed by modulo of the shard key.
+   *
+   * @param databases shard databases, in shard index order
+   * @return DatabaseWrapper
+   */
+  public DatabaseWrapper shards(Sql2o... databases) {
+    return this.shards(Shards.of(databases));
+  }
+
+  /**
+   * Spread the models declaring {@link in.asvignesh.databasewrapper.annotation.Table#shardKey()}
+   * over several databases.
+   *
+   * @param shards shard databases and routing strategy
+   * @return DatabaseWrapper
+   */
+  public DatabaseWrapper shards(Shards shards) {
+    this.shards = shards;
+    return this;
+  }
+
+  public Shards shards() {
+    return this.shards;
+  }
+
+  /**
+   * Set the executor running the async query variants, blocking JDBC calls run on it.
+   *
+   * @param asyncExecutor executor
+   * @return DatabaseWrapper
+   */
+  public DatabaseWrapper asyncExecutor(Executor asyncExecutor) {
+    this.asyncExecutor = asyncExecutor;
+    return this;
+  }
+
+  public Executor asyncExecutor() {
+    return ifNotNullReturn(this.asyncExecutor, () -> AsyncPool.EXECUTOR);
+  }
+
+  /**
+   * Entity cache of a model, used by {@link Query#byId(Object)} and {@link Query#byIds(Object...)}.
+   *
+   * @param modelClass model class type
+   * @return EntityCache, null when the model is not
+   * {@link in.asvignesh.databasewrapper.annotation.Cacheable}
+   */
+  public <T> EntityCache<T> entityCache(Class<T> modelClass) {
+    return entityCaches.of(modelClass);
+  }
+
+  public EntityCaches entityCaches() {
+    return entityCaches;
+  }
+
+  /**
+   * Replace the result cache with an empty one bounded by the given weight, roughly the number of
+   * cells it may hold.
+   *
+   * @param maxWeight maximum weight
+   * @return DatabaseWrapper
+   */
+  public DatabaseWrapper resultCacheMaxWeight(long maxWeight) {
+    this.resultCache = new ResultCache(maxWeight);
+    return this;
+  }
+
+  public ResultCache resultCache() {
+    return resultCache;
+  }
+
+  public SingleFlight singleFlight() {
+    return singleFlight;
+  }
+
+  /**
+   * Guards are created on first use, {@link Query#keyGuard()} creates one to build it ahead.
+   */
+  public KeyGuards keyGuards() {
+    return keyGuards;
+  }
+
+  /**
+   * Replicas are loaded on first use, {@link Query#replica()} creates one to load it ahead.
+   */
+  public Replicas replicas() {
+    return replicas;
+  }
+
+  /**
+   * Write the entity caches and replicas to a warm-start file, see {@link CacheFiles}.
+   *
+   * @param file file to write
+   * @return number of cache entries and replica rows written
+   */
+  public int saveCaches(Path file) {
+    return CacheFiles.save(file, entityCaches, replicas);
+  }
+
+  /**
+   * Fill the entity caches and replicas from a warm-start file, replicas reload in the background.
+   *
+   * @param file file written by {@link #saveCaches(Path)}
+   * @param maxAge age above which the file is ignored, null for no limit
+   * @return number of cache entries and replica rows read
+   */
+  public int loadCaches(Path file, Duration maxAge) {
+    return CacheFiles.load(file, maxAge, entityCaches::of, this::replicaOf);
+  }
+
+  /**
+   * Load the caches from a warm-start file saved at most one interval ago, then save them to it
+   * periodically and on shutdown. A later call replaces the file and interval.
+   *
+   * @param file warm-start file
+   * @param interval time between saves, zero to save on shutdown only and load a file of any age
+   * @return DatabaseWrapper
+   */
+  public DatabaseWrapper persistCaches(Path file, Duration interval) {
+    return this.persistCaches(file, interval, interval.isZero() ? null : interval);
+  }
+
+  /**
+   * Load the caches from a warm-start file now, then save them to it periodically and on shutdown.
+   * A later call replaces the file and interval.
+   *
+   * @param file warm-start file
+   * @param interval time between saves, zero to save on shutdown only
+   * @param maxAge age above which the file is not loaded, null for no limit
+   * @return DatabaseWrapper
+   */
+  public DatabaseWrapper persistCaches(Path file, Duration interval, Duration maxAge) {
+    this.loadCaches(file, maxAge);
+    Runnable save = () -> {
+      try {
+        this.saveCaches(file);
+      } catch (DatabaseWrapperException e) {
+        // keep the previous file, the next save may succeed
+      }
+    };
+    cacheFileLock.lock();
+    try {
+      this.unschedule();
+      this.cacheSave = save;
+      if (!interval.isZero()) {
+        this.cacheSaves = CacheFileWriter.SCHEDULER.scheduleWithFixedDelay(save,
+            interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+      }
+      this.cacheSaveHook = new Thread(save, "databasewrapper-cache-files");
+      Runtime.getRuntime().addShutdownHook(cacheSaveHook);
+    } finally {
+      cacheFileLock.unlock();
+    }
+    return this;
+  }
+
+  /**
+   * Save the caches a last time and stop the saves of {@link #persistCaches(Path, Duration)}, for a
+   * database that is closed or evicted before shutdown.
+   */
+  public void stopPersistingCaches() {
+    Runnable save;
+    cacheFileLock.lock();
+    try {
+      save = this.cacheSave;
+      this.unschedule();
+    } finally {
+      cacheFileLock.unlock();
+    }
+    ifNotNullThen(save, () -> save.run());
+  }
+
+  private void unschedule() {
+    ifNotNullThen(cacheSaves, () -> cacheSaves.cancel(false));
+    if (null != cacheSaveHook) {
+      try {
+        Runtime.getRuntime().removeShutdownHook(cacheSaveHook);
+      } catch (IllegalStateException e) {
+        // shutdown in progress, the hook is running or about to
+      }
+    }
+    this.cacheSave = null;
+    this.cacheSaves = null;
+    this.cacheSaveHook = null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Replica<?> replicaOf(Class<?> type) {
+    return DataModel.class.isAssignableFrom(type)
+        ? new Query<>(this, (Class<DataModel>) type).replica() : null;
+  }
+
   /**
    * Add custom Type converter
    *
@@ -423,5 +941,30 @@ public class DatabaseWrapper {
     return this;
   }
 
+  /**
+   * Shared daemon pool for the async query variants, created on first use.
+   */
+  private static class AsyncPool {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "databasewrapper-async-" + SEQUENCE.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+
+  }
+
+  private static class CacheFileWriter {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors
+        .newSingleThreadScheduledExecutor(runnable -> {
+          Thread thread = new Thread(runnable, "databasewrapper-cache-files");
+          thread.setDaemon(true);
+          return thread;
+        });
+
+  }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,41 @@
+package in.asvignesh.databasewrapper.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Keep a bloom filter over the primary key or a unique column of this model, lookups for keys it
+ * rules out return no row without a query.
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface BloomGuard {
+
+  /**
+   * Guarded column, the primary key when empty.
+   */
+  String column() default "";
+
+  /**
+   * Expected number of keys, the filter grows to the key count seen on rebuild.
+   */
+  long expectedKeys() default 1_000_000;
+
+  /**
+   * Target false positive probability.
+   */
+  double fpp() default 0.01;
+
+  /**
+   * Upper bound of the filter size, the false positive rate rises when it is reached.
+   */
+  long maxBytes() default 8 * 1024 * 1024;
+
+  /**
+   * Seconds between rebuilds from the table, 0 to never rebuild.
+   */
+  long rebuildSeconds() default 3600;
+
+}
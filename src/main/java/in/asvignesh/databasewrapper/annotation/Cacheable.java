@@ -0,0 +1,25 @@
+package in.asvignesh.databasewrapper.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Keep rows of this model loaded by primary key in the entity cache of the database.
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cacheable {
+
+  /**
+   * Maximum number of cached rows.
+   */
+  int maxSize() default 10000;
+
+  /**
+   * Seconds a cached row is served before it is loaded again, 0 for no expiry.
+   */
+  long ttlSeconds() default 300;
+
+}
@@ -0,0 +1,33 @@
+package in.asvignesh.databasewrapper.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Keep the whole table of this model in memory, equality and IN queries on it are answered
+ * without a query. Meant for small, read-mostly tables.
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Replicated {
+
+  /**
+   * Columns indexed besides the primary key.
+   */
+  String[] indexes() default {};
+
+  /**
+   * Seconds between reloads of the table, 0 to reload only after writes through the wrapper.
+   */
+  long refreshSeconds() default 300;
+
+  /**
+   * Answer conditions and orders on string columns from memory, comparing and sorting strings
+   * exactly. Only for columns with a binary collation, or whose values never differ by case or
+   * trailing spaces; by default such queries go to the database.
+   */
+  boolean exactStrings() default false;
+
+}
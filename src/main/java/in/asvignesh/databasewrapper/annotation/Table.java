@@ -13,4 +13,9 @@ public @interface Table {
 
   String pk() default "id";
 
+  /**
+   * Column used to route rows of this model to a shard, empty when the model is not sharded.
+   */
+  String shardKey() default "";
+
 }
@@ -0,0 +1,197 @@
+package in.asvignesh.databasewrapper.core;
+
+import in.asvignesh.databasewrapper.DataModel;
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects lookups by primary key from many callers and loads them with one
+ * {@code WHERE pk IN (...)} query per batch, in the manner of a DataLoader.
+ * <p>
+ * Ids are gathered for the configured window, or until the next turn of the async executor when
+ * the window is zero, and sent in batches of at most maxBatchSize distinct ids. Each caller gets
+ * a future completed with its row, or with null when the row does not exist. The loader keeps the
+ * database and transaction current where it was created.
+ *
+ * <pre>
+ * BatchLoader&lt;User&gt; users = BatchLoader.of(User.class).window(Duration.ofMillis(2));
+ * CompletableFuture&lt;User&gt; author = users.load(post.getAuthorId());
+ * </pre>
+ */
+public class BatchLoader<T extends DataModel> {
+
+  public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+  private final DatabaseWrapper db;
+  private final Transaction transaction;
+  private final Class<T> modelClass;
+  private final ReentrantLock lock = new ReentrantLock();
+  private Map<Object, Pending> pending = new LinkedHashMap<>();
+  private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+  private long windowNanos;
+  private boolean scheduled;
+
+  public BatchLoader(DatabaseWrapper db, Transaction transaction, Class<T> modelClass) {
+    this.db = db;
+    this.transaction = transaction;
+    this.modelClass = modelClass;
+  }
+
+  /**
+   * Loader bound to the current database and transaction.
+   *
+   * @param modelClass model class type
+   * @return BatchLoader
+   */
+  public static <T extends DataModel> BatchLoader<T> of(Class<T> modelClass) {
+    return new BatchLoader<>(DatabaseWrapper.of(), Transaction.current(), modelClass);
+  }
+
+  /**
+   * @param maxBatchSize maximum number of ids in one query
+   * @return BatchLoader
+   */
+  public BatchLoader<T> maxBatchSize(int maxBatchSize) {
+    this.maxBatchSize = Math.max(maxBatchSize, 1);
+    return this;
+  }
+
+  /**
+   * @param window how long ids are collected before a batch is sent, zero for the next turn of the
+   * async executor
+   * @return BatchLoader
+   */
+  public BatchLoader<T> window(Duration window) {
+    this.windowNanos = window.toNanos();
+    return this;
+  }
+
+  /**
+   * @param id primary key
+   * @return future of the model, completed with null when there is no such row
+   */
+  public CompletableFuture<T> load(Object id) {
+    List<Pending> full = null;
+    CompletableFuture<T> future;
+    lock.lock();
+    try {
+      Pending entry = pending.computeIfAbsent(Query.cacheKey(id), key -> new Pending(id));
+      future = entry.future;
+      if (pending.size() >= maxBatchSize) {
+        full = this.take();
+      } else if (!scheduled) {
+        scheduled = true;
+        this.schedule();
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (null != full) {
+      List<Pending> batch = full;
+      db.asyncExecutor().execute(() -> this.fetch(batch));
+    }
+    return future;
+  }
+
+  /**
+   * @param ids primary keys
+   * @return futures of the models in the order of the ids
+   */
+  public List<CompletableFuture<T>> loadMany(Object... ids) {
+    List<CompletableFuture<T>> futures = new ArrayList<>(ids.length);
+    for (Object id : ids) {
+      futures.add(this.load(id));
+    }
+    return futures;
+  }
+
+  /**
+   * Send the collected ids now, on the calling thread.
+   */
+  public void dispatch() {
+    List<Pending> batch;
+    lock.lock();
+    try {
+      batch = this.take();
+    } finally {
+      lock.unlock();
+    }
+    this.fetch(batch);
+  }
+
+  private void schedule() {
+    if (windowNanos <= 0) {
+      db.asyncExecutor().execute(this::dispatch);
+    } else {
+      Timer.SCHEDULER.schedule(() -> db.asyncExecutor().execute(this::dispatch),
+          windowNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private List<Pending> take() {
+    List<Pending> batch = new ArrayList<>(pending.values());
+    pending = new LinkedHashMap<>();
+    scheduled = false;
+    return batch;
+  }
+
+  private void fetch(List<Pending> batch) {
+    for (int from = 0; from < batch.size(); from += maxBatchSize) {
+      List<Pending> chunk = batch.subList(from, Math.min(from + maxBatchSize, batch.size()));
+      try {
+        Object[] ids = chunk.stream().map(entry -> entry.id).toArray();
+        Map<Object, T> models = new HashMap<>(ids.length * 2);
+        for (T model : this.query().byIds(ids)) {
+          models.put(Query.cacheKey(Query.primaryKey(model)), model);
+        }
+        chunk.forEach(entry -> entry.future.complete(models.get(Query.cacheKey(entry.id))));
+      } catch (RuntimeException e) {
+        chunk.forEach(entry -> entry.future.completeExceptionally(e));
+      }
+    }
+  }
+
+  private Query<T> query() {
+    Query<T> query = new Query<>(db, modelClass);
+    return null != transaction ? query.in(transaction) : query;
+  }
+
+  private class Pending {
+
+    private final Object id;
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+
+    Pending(Object id) {
+      this.id = id;
+    }
+  }
+
+  /**
+   * Shared daemon timer for batch windows, it only hands batches to the async executor.
+   */
+  private static class Timer {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private static final ScheduledExecutorService SCHEDULER = Executors
+        .newSingleThreadScheduledExecutor(runnable -> {
+          Thread thread = new Thread(runnable,
+              "databasewrapper-loader-" + SEQUENCE.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+
+  }
+
+}
@@ -25,9 +25,11 @@ public class DatabaseCache {
 
   public static final Map<Class, MethodAccess> METHOD_ACCESS_MAP = new ConcurrentHashMap<>();
 
-  private static final Map<Class<?>, String> CACHE_TABLE_NAME = new ConcurrentHashMap<>(8);
+  private static final Map<Class<?>, Map<String, String>> CACHE_TABLE_NAME = new ConcurrentHashMap<>(
+      8);
   private static final Map<Class<?>, String> CACHE_PK_COLUMN_NAME = new ConcurrentHashMap<>(8);
   private static final Map<Class<?>, String> CACHE_PK_FIELD_NAME = new ConcurrentHashMap<>(8);
+  private static final Map<Class<?>, String> CACHE_SHARD_KEY_COLUMN = new ConcurrentHashMap<>(8);
   private static final Map<Class<?>, Map<String, String>> MODEL_COLUMN_MAPPINGS = new ConcurrentHashMap<>(
       8);
   private static final Map<SerializedLambda, String> CACHE_LAMBDA_NAME = new ConcurrentHashMap<>(8);
@@ -95,14 +97,37 @@ public class DatabaseCache {
         name -> "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1));
   }
 
+  /**
+   * Table name of a model, derived ones use the table prefix of the current database when one is
+   * open.
+   */
   public static String getTableName(Class<?> modelClass) {
-    return CACHE_TABLE_NAME.computeIfAbsent(modelClass, type -> {
-      Table table = type.getAnnotation(Table.class);
-      if (null != table && DatabaseUtils.isNotEmpty(table.name())) {
-        return table.name();
-      }
-      return getTableName(type.getSimpleName(), DatabaseWrapper.of().tablePrefix());
-    });
+    Table table = modelClass.getAnnotation(Table.class);
+    if (null != table && DatabaseUtils.isNotEmpty(table.name())) {
+      return table.name();
+    }
+    return getTableName(modelClass,
+        DatabaseWrapper.isOpen() ? DatabaseWrapper.of().tablePrefix() : null);
+  }
+
+  /**
+   * Table name of a model, derived names are cached per table prefix since every database may
+   * use its own prefix.
+   *
+   * @param modelClass model class type
+   * @param prefix table prefix of the database, may be null
+   * @return table name
+   */
+  public static String getTableName(Class<?> modelClass, String prefix) {
+    return CACHE_TABLE_NAME
+        .computeIfAbsent(modelClass, type -> new ConcurrentHashMap<>(4))
+        .computeIfAbsent(null == prefix ? "" : prefix, key -> {
+          Table table = modelClass.getAnnotation(Table.class);
+          if (null != table && DatabaseUtils.isNotEmpty(table.name())) {
+            return table.name();
+          }
+          return getTableName(modelClass.getSimpleName(), prefix);
+        });
   }
 
   public static String getPKColumn(Class<?> modelClass) {
@@ -127,6 +152,20 @@ public class DatabaseCache {
     return pkField;
   }
 
+  /**
+   * Shard key column of a model, declared with {@link Table#shardKey()}.
+   *
+   * @param modelClass model class type
+   * @return shard key column name, null when the model is not sharded
+   */
+  public static String getShardKeyColumn(Class<?> modelClass) {
+    String shardKey = CACHE_SHARD_KEY_COLUMN.computeIfAbsent(modelClass, type -> {
+      Table table = type.getAnnotation(Table.class);
+      return null != table ? table.shardKey() : "";
+    });
+    return DatabaseUtils.isEmpty(shardKey) ? null : shardKey;
+  }
+
   public static String getLambdaColumnName(SerializedLambda serializedLambda) {
     return CACHE_LAMBDA_NAME.computeIfAbsent(serializedLambda, lambda -> {
       String className = serializedLambda.getImplClass().replace("/", ".");
@@ -9,11 +9,29 @@ import static in.asvignesh.databasewrapper.utils.Functions.ifNullThen;
 import static in.asvignesh.databasewrapper.utils.Functions.ifNullThrow;
 import static in.asvignesh.databasewrapper.utils.Functions.ifReturn;
 import static in.asvignesh.databasewrapper.utils.Functions.ifThen;
+import static in.asvignesh.databasewrapper.utils.Functions.ifThrow;
 import static java.util.stream.Collectors.toList;
 
 import in.asvignesh.databasewrapper.DataModel;
 import in.asvignesh.databasewrapper.DatabaseWrapper;
+import in.asvignesh.databasewrapper.core.cache.EntityCache;
+import in.asvignesh.databasewrapper.core.cache.EntityCaches;
+import in.asvignesh.databasewrapper.core.cache.KeyGuard;
+import in.asvignesh.databasewrapper.core.cache.Replica;
+import in.asvignesh.databasewrapper.core.cache.ReplicaSnapshot;
+import in.asvignesh.databasewrapper.core.cache.ResultCache;
+import in.asvignesh.databasewrapper.core.cache.SingleFlight;
 import in.asvignesh.databasewrapper.core.functions.TypeFunction;
+import in.asvignesh.databasewrapper.core.metrics.ConnectionTracker;
+import in.asvignesh.databasewrapper.core.metrics.FlightEvents;
+import in.asvignesh.databasewrapper.core.metrics.FlightEvents.Kind;
+import in.asvignesh.databasewrapper.core.metrics.Operation;
+import in.asvignesh.databasewrapper.core.metrics.Phase;
+import in.asvignesh.databasewrapper.core.metrics.PhaseProfiler;
+import in.asvignesh.databasewrapper.core.metrics.QueryProfile;
+import in.asvignesh.databasewrapper.core.metrics.QueryMetrics;
+import in.asvignesh.databasewrapper.core.shard.ShardMerger;
+import in.asvignesh.databasewrapper.core.shard.Shards;
 import in.asvignesh.databasewrapper.enums.DMLType;
 import in.asvignesh.databasewrapper.enums.ErrorCode;
 import in.asvignesh.databasewrapper.enums.OrderBy;
@@ -23,26 +41,59 @@ import in.asvignesh.databasewrapper.page.PageRow;
 import in.asvignesh.databasewrapper.utils.DatabaseUtils;
 import java.io.Serializable;
 import java.lang.reflect.Field;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 import lombok.NoArgsConstructor;
+import org.reactivestreams.Publisher;
 import org.sql2o.Connection;
+import org.sql2o.ResultSetHandler;
+import org.sql2o.ResultSetIterable;
 import org.sql2o.Sql2o;
 
 @NoArgsConstructor
 public class Query<T extends DataModel> {
 
-  private static Sql2o sql2o;
+  private static final Pattern EQUALITY = Pattern.compile("^\\s*(\\w+)\\s*(?:=\\s*\\?)?\\s*$");
 
-  private static ThreadLocal<Connection> localConnection = new ThreadLocal<>();
+  private static final Pattern OR = Pattern.compile("\\bOR\\b", Pattern.CASE_INSENSITIVE);
+
+  private static final Pattern PLAIN_ORDER = Pattern
+      .compile("^\\s*[\\w.]+(\\s+(ASC|DESC))?(\\s*,\\s*[\\w.]+(\\s+(ASC|DESC))?)*\\s*$",
+          Pattern.CASE_INSENSITIVE);
+
+  /**
+   * Database this query runs against, null for the ambient {@link DatabaseWrapper#of()}.
+   */
+  private DatabaseWrapper db;
+
+  /**
+   * Sql2o bound to this query, overrides the database of the wrapper.
+   */
+  private Sql2o sql2o;
+
+  /**
+   * Transaction this query runs in, null for the transaction current on the calling thread.
+   */
+  private Transaction transaction;
 
   private Class<T> modelClass;
 
@@ -73,14 +124,57 @@ public class Query<T extends DataModel> {
   private String primaryKeyColumn;
 
 
-  private String tableName;
-
-
   private DMLType dmlType;
 
 
   private List<JoinParam> joinParams = new ArrayList<>();
 
+  /**
+   * Shard the next statement is routed to, null for the default database or a scatter.
+   */
+  private Sql2o shard;
+
+  /**
+   * Time to live of the result of the next query in the result cache, null when not cached.
+   */
+  private Duration cacheTtl;
+
+  /**
+   * Whether the next query joins an identical one already running, see {@link SingleFlight}.
+   */
+  private boolean coalesce;
+  private Consumer<QueryProfile> profileConsumer;
+  private QueryProfile profile;
+  private Object readFlight;
+
+  /**
+   * Columns compared for equality by the conditions, for the key guard.
+   */
+  private Map<String, Object> equalities = new LinkedHashMap<>(4);
+
+  private String lastColumn;
+
+  /**
+   * Columns restricted to a list of values by the conditions, for the replica.
+   */
+  private Map<String, Object[]> memberships = new LinkedHashMap<>(4);
+
+  /**
+   * Whether the conditions contain OR, equalities then no longer restrict the rows.
+   */
+  private boolean disjunctive;
+
+  /**
+   * Whether the running statement told the key guard about the keys it writes.
+   */
+  private boolean keysTracked;
+
+  /**
+   * Whether statements run on pool connections even while a transaction is current, for loads
+   * shared with other callers such as replicas.
+   */
+  private boolean detached;
+
   public Query(DMLType dmlType) {
     this.dmlType = dmlType;
   }
@@ -89,55 +183,129 @@ public class Query<T extends DataModel> {
     this.parse(modelClass);
   }
 
+  public Query(DatabaseWrapper db, Class<T> modelClass) {
+    this.db = db;
+    this.parse(modelClass);
+  }
 
+
+  /**
+   * Start a transaction on the current thread, each database joins it on first use.
+   */
   public static void beginTransaction() {
-    ifNullThen(localConnection.get(),
-        () -> {
-          Connection connection = getSql2o().beginTransaction();
-          localConnection.set(connection);
-        });
+    ifNullThen(Transaction.current(),
+        () -> Transaction.bind(Transaction.begin()));
   }
 
 
   public static void endTransaction() {
-    ifNotNullThen(localConnection.get(),
+    ifNotNullThen(Transaction.current(),
         () -> {
-          Connection connection = localConnection.get();
-          ifThen(connection.isRollbackOnClose(), connection::close);
-          localConnection.remove();
+          Transaction.current().close();
+          Transaction.unbind();
         });
   }
 
 
   public static void commit() {
-    localConnection.get().commit();
+    Transaction.current().commit();
   }
 
 
   public static void rollback() {
-    ifNotNullThen(localConnection.get(),
+    ifNotNullThen(Transaction.current(),
         () -> {
 //          log.error("Rollback connection.");
-          localConnection.get().rollback();
+          Transaction.current().rollback();
         });
   }
 
+  public static boolean inTransaction() {
+    return null != Transaction.current();
+  }
+
   public static Sql2o getSql2o() {
-    return ifNotNullReturn(sql2o,
-        () -> {
-          Sql2o sql2o = DatabaseWrapper.of().getSql2o();
-          ifNullThrow(sql2o, new DatabaseWrapperException("SQL2O instance not is null."));
-          return sql2o;
-        });
+    Sql2o sql2o = DatabaseWrapper.of().getSql2o();
+    ifNullThrow(sql2o, new DatabaseWrapperException("SQL2O instance not is null."));
+    return sql2o;
   }
 
   public Query<T> parse(Class<T> modelClass) {
     this.modelClass = modelClass;
-    this.tableName = DatabaseCache.getTableName(modelClass);
     this.primaryKeyColumn = DatabaseCache.getPKColumn(modelClass);
     return this;
   }
 
+  /**
+   * Run this query in a transaction, e.g. one started on another thread.
+   *
+   * @param transaction transaction
+   * @return Query
+   */
+  public Query<T> in(Transaction transaction) {
+    this.transaction = transaction;
+    return this;
+  }
+
+  /**
+   * Run this query against a specific database instead of the ambient one.
+   *
+   * @param db database wrapper, e.g. the one of a tenant
+   * @return Query
+   */
+  public Query<T> using(DatabaseWrapper db) {
+    this.db = db;
+    return this;
+  }
+
+
+  /**
+   * Route the next statement to the shard owning a shard key value.
+   *
+   * @param shardKey shard key value
+   * @return Query
+   */
+  public Query<T> shard(Object shardKey) {
+    this.shard = shards().route(shardKey);
+    return this;
+  }
+
+  /**
+   * Serve the result of the next query from the result cache of the database, see
+   * {@link ResultCache}. Queries inside a transaction always go to the database.
+   *
+   * @param ttl how long the result may be served
+   * @return Query
+   */
+  public Query<T> cached(Duration ttl) {
+    this.cacheTtl = ttl;
+    return this;
+  }
+
+  /**
+   * Time the phases of the next {@link #all()}, {@link #one()}, {@link #count()} or page and
+   * hand the breakdown to the consumer, see {@link QueryProfile}. Reads answered from a replica
+   * are not profiled.
+   *
+   * @param consumer receives the profile on the reading thread
+   * @return Query
+   */
+  public Query<T> profile(Consumer<QueryProfile> consumer) {
+    this.profileConsumer = consumer;
+    return this;
+  }
+
+  /**
+   * Let the next query share the execution of an identical query (same SQL and parameters)
+   * running at the same time, each caller gets its own copy of the result. Queries inside a
+   * transaction always run on their own.
+   *
+   * @return Query
+   */
+  public Query<T> coalesce() {
+    this.coalesce = true;
+    return this;
+  }
 
   public Query<T> exclude(String... columnNames) {
     Collections.addAll(excludedColumns, columnNames);
@@ -161,11 +329,16 @@ public class Query<T extends DataModel> {
   }
 
   public Query<T> where(String statement) {
+    this.lastColumn = statement.trim().matches("\\w+") ? statement.trim() : null;
+    this.disjunctive |= OR.matcher(statement).find();
     conditionSQL.append(" AND ").append(statement);
     return this;
   }
 
   public Query<T> where(String statement, Object value) {
+    Matcher equality = EQUALITY.matcher(statement);
+    ifThen(equality.matches(), () -> equalities.put(equality.group(1).toLowerCase(), value));
+    this.disjunctive |= OR.matcher(statement).find();
     conditionSQL.append(" AND ").append(statement);
     if (!statement.contains("?")) {
       conditionSQL.append(" = ?");
@@ -177,6 +350,7 @@ public class Query<T extends DataModel> {
   public <R> Query<T> where(TypeFunction<T, R> function) {
     String columnName = DatabaseUtils.getLambdaColumnName(function);
     conditionSQL.append(" AND ").append(columnName);
+    this.lastColumn = columnName;
     return this;
   }
 
@@ -185,6 +359,7 @@ public class Query<T extends DataModel> {
     String columnName = DatabaseUtils.getLambdaColumnName(function);
     conditionSQL.append(" AND ").append(columnName).append(" = ?");
     paramValues.add(value);
+    equalities.put(columnName.toLowerCase(), value);
     return this;
   }
 
@@ -211,6 +386,7 @@ public class Query<T extends DataModel> {
   public Query<T> eq(Object value) {
     conditionSQL.append(" = ?");
     paramValues.add(value);
+    ifNotNullThen(lastColumn, () -> equalities.put(lastColumn.toLowerCase(), value));
     return this;
   }
 
@@ -232,6 +408,7 @@ public class Query<T extends DataModel> {
   }
 
   public Query<T> or(String statement, Object value) {
+    this.disjunctive = true;
     conditionSQL.append(" OR (").append(statement);
     if (!statement.contains("?")) {
       conditionSQL.append(" = ?");
@@ -407,6 +584,7 @@ public class Query<T extends DataModel> {
     conditionSQL.append(" AND ").append(column).append(" IN (");
     this.setArguments(args);
     conditionSQL.append(")");
+    memberships.put(column.toLowerCase(), args);
     return this;
   }
 
@@ -419,6 +597,7 @@ public class Query<T extends DataModel> {
     conditionSQL.append(" IN (");
     this.setArguments(args);
     conditionSQL.append(")");
+    ifNotNullThen(lastColumn, () -> memberships.put(lastColumn.toLowerCase(), args));
     return this;
   }
 
@@ -471,47 +650,284 @@ public class Query<T extends DataModel> {
 
   public T byId(Object id) {
     this.beforeCheck();
-    this.where(primaryKeyColumn, id);
+    Transaction transaction = this.isPlain() ? this.transaction() : null;
+    T known = null != transaction ? transaction.identity(modelClass, cacheKey(id)) : null;
+    if (null != known) {
+      return known;
+    }
+    KeyGuard guard = this.isPlain() ? this.keyGuard() : null;
+    boolean guarded = null != guard && this.isPrimaryKey(guard.column()) && guard.isReady();
+    if (null != guard && this.isPrimaryKey(guard.column()) && !guard.mightContain(id)) {
+      return null;
+    }
+    List<T> replicated = this.isPlain() ? this.fromReplica(
+        Collections.singletonMap(primaryKeyColumn.toLowerCase(), id), Collections.emptyMap())
+        : null;
+    EntityCache<T> cache = null == replicated ? this.readCache() : null;
+    T model = null != replicated ? replicated.stream().findFirst().orElse(null)
+        : null != cache ? cache.get(id) : null;
+    if (null != replicated) {
+      this.clean(null);
+    } else if (null == model) {
+      long generation = null != cache ? cache.generation() : 0;
+      this.routeByPrimaryKey(id);
+      this.where(primaryKeyColumn, id);
 
-    String sql = this.buildSelectSQL(false);
+      String sql = this.buildSelectSQL(false);
 
-    T model = this.queryOne(modelClass, sql, paramValues);
+      model = this.queryOne(modelClass, sql, paramValues);
 
-    ifNotNullThen(model, () -> this.setJoin(Collections.singletonList(model)));
+      if (null != model && null != cache && null == this.transaction()) {
+        cache.put(id, model, generation);
+      }
+    }
 
-    return model;
+    if (guarded && null == model) {
+      guard.falsePositive();
+    }
+    T result = this.identify(transaction, model);
+    ifNotNullThen(result, () -> this.setJoin(Collections.singletonList(result)));
+
+    return result;
   }
 
 
   public List<T> byIds(Object... ids) {
-    this.in(this.primaryKeyColumn, ids);
-    return this.all();
+    this.beforeCheck();
+    Transaction transaction = this.transaction();
+    EntityCache<T> cache = this.readCache();
+    if (this.orderBySQL.length() > 0 || !this.isPlain()
+        || (null == cache && null == transaction) || null != this.replica()) {
+      this.in(this.primaryKeyColumn, ids);
+      return this.all();
+    }
+    Map<Object, T> models = new LinkedHashMap<>(ids.length * 2);
+    List<Object> missing = new ArrayList<>(ids.length);
+    for (Object id : ids) {
+      if (!models.containsKey(cacheKey(id))) {
+        T model = this.lookup(transaction, cache, id);
+        models.put(cacheKey(id), model);
+        ifNullThen(model, () -> missing.add(id));
+      }
+    }
+    if (!missing.isEmpty()) {
+      long generation = null != cache ? cache.generation() : 0;
+      this.in(this.primaryKeyColumn, missing);
+      String sql = this.buildSelectSQL(false);
+      for (T model : this.queryList(modelClass, sql, paramValues)) {
+        Object id = primaryKey(model);
+        if (null != cache && null == transaction) {
+          cache.put(id, model, generation);
+        }
+        models.put(cacheKey(id), this.identify(transaction, model));
+      }
+    }
+    List<T> result = models.values().stream().filter(Objects::nonNull).collect(toList());
+    this.setJoin(result);
+    return result;
   }
 
 
   public T one() {
     this.beforeCheck();
+    long mark = this.startProfile();
+    Transaction transaction = this.isFullRow() ? this.transaction() : null;
+    if (this.ruledOut()) {
+      this.clean(null);
+      return null;
+    }
+    List<T> replicated = this.fromReplica(equalities, memberships);
+    if (null != replicated) {
+      this.clean(null);
+    }
+    String sql = null == replicated ? this.buildSelectSQL(true) : null;
+    this.lap(Phase.RENDER, mark);
 
-    String sql = this.buildSelectSQL(true);
-
-    T model = this.queryOne(modelClass, sql, paramValues);
+    T model = this.identify(transaction, null != replicated
+        ? replicated.stream().findFirst().orElse(null)
+        : this.queryOne(modelClass, sql, paramValues));
 
     ifThen(null != model && null != joinParams,
         () -> this.setJoin(Collections.singletonList(model)));
 
+    this.finishProfile(Operation.SELECT, sql);
     return model;
   }
 
 
   public List<T> all() {
     this.beforeCheck();
-    String sql = this.buildSelectSQL(true);
-    List<T> models = this.queryList(modelClass, sql, paramValues);
+    long mark = this.startProfile();
+    Transaction transaction = this.isFullRow() ? this.transaction() : null;
+    if (this.ruledOut()) {
+      this.clean(null);
+      return new ArrayList<>();
+    }
+    List<T> replicated = this.fromReplica(equalities, memberships);
+    if (null != replicated) {
+      this.clean(null);
+    }
+    String sql = null == replicated ? this.buildSelectSQL(true) : null;
+    this.lap(Phase.RENDER, mark);
+    List<T> models = this.identify(transaction, null != replicated ? replicated
+        : this.queryList(modelClass, sql, paramValues));
     this.setJoin(models);
+    this.finishProfile(Operation.SELECT, sql);
     return models;
   }
 
 
+  /**
+   * Hand every row to the consumer in one model instance refilled for each row, so a scan over
+   * many rows allocates next to nothing. The consumer must neither keep the instance nor pass it
+   * on. Only the selected columns are filled.
+   *
+   * @param consumer row consumer
+   */
+  public void forEachReusing(Consumer<T> consumer) {
+    this.beforeCheck();
+    if (this.ruledOut()) {
+      this.clean(null);
+      return;
+    }
+    String sql = this.buildSelectSQL(true);
+    Object[] params = paramValues.toArray();
+    List<Sql2o> databases = this.isScatter(modelClass)
+        ? shards().databases() : Collections.singletonList(target());
+    try {
+      for (Sql2o database : databases) {
+        RowFiller<T> filler = new RowFiller<>(modelClass, database.getQuirks());
+        Connection conn = getConn(database);
+        try (ResultSetIterable<T> rows = createQuery(conn, sql, params)
+            .executeAndFetchLazy((ResultSetHandler<T>) filler::fill)) {
+          this.measured(Operation.SELECT, sql, params, () -> {
+            long[] count = new long[1];
+            rows.forEach(row -> {
+              count[0]++;
+              consumer.accept(row);
+            });
+            return count[0];
+          }, count -> count);
+        } finally {
+          this.closeConn(conn);
+        }
+      }
+    } finally {
+      this.clean(null);
+    }
+  }
+
+  /**
+   * Async variant of {@link #one()}.
+   *
+   * @return future of the model, completed on the async executor
+   */
+  public CompletableFuture<T> oneAsync() {
+    return this.async(this::one);
+  }
+
+  /**
+   * Async variant of {@link #all()}.
+   *
+   * @return future of the models, completed on the async executor
+   */
+  public CompletableFuture<List<T>> allAsync() {
+    return this.async(this::all);
+  }
+
+  /**
+   * Stream the rows of this query to subscribers as they request them, see {@link QueryPublisher}.
+   *
+   * @return Publisher
+   */
+  public Publisher<T> publisher() {
+    return this.publisher(QueryPublisher.DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Stream the rows of this query to subscribers as they request them, see {@link QueryPublisher}.
+   *
+   * @param batchSize maximum number of rows read per turn on the async executor
+   * @return Publisher
+   */
+  public Publisher<T> publisher(int batchSize) {
+    this.beforeCheck();
+    String sql = this.buildSelectSQL(true);
+    return this.publisher(modelClass, sql, paramValues.toArray(), batchSize);
+  }
+
+  public <S> Publisher<S> publisher(Class<S> type, String sql, Object[] params, int batchSize) {
+    try {
+      ifThrow(this.isScatter(type),
+          new DatabaseWrapperException("Publisher of a sharded model needs a routed shard."));
+      Sql2o database = target();
+      Transaction transaction = this.transaction();
+      Map<String, String> columnMappings = computeModelColumnMappings(type);
+      List<JoinParam> joins = new ArrayList<>(this.joinParams);
+      // joins are read on the executor thread, in the transaction and database of the rows
+      Query<T> joinQuery = joins.isEmpty() ? null
+          : new Query<>(db(), modelClass).in(transaction).bindSQL2o(database);
+      ifNotNullThen(joinQuery, () -> joins.forEach(joinQuery::join));
+
+      // pool connections are checked out and in like those of any statement, on the executor
+      Query<T> pool = null != transaction ? null
+          : new Query<T>(DMLType.SELECT).using(db()).bindSQL2o(database).detached();
+
+      return new QueryPublisher<>(db().asyncExecutor(), batchSize, () -> {
+        Connection conn = ifReturn(null != transaction,
+            () -> transaction.connection(database),
+            () -> pool.getConn(database));
+        try {
+          ResultSetIterable<S> rows = createQuery(conn, sql, params)
+              .setColumnMappings(columnMappings)
+              .throwOnMappingFailure(false)
+              .executeAndFetchLazy(type);
+          rows.setAutoCloseConnection(false);
+          return ifReturn(null == pool, () -> rows,
+              () -> closingWith(rows, () -> pool.closeConn(conn)));
+        } catch (RuntimeException e) {
+          ifNotNullThen(pool, () -> pool.closeConn(conn));
+          throw e;
+        }
+      }, null == joinQuery ? null : row -> joinQuery.setJoin(modelClass.cast(row)),
+          null == transaction ? null : transaction.lock());
+    } finally {
+      this.clean(null);
+    }
+  }
+
+  /**
+   * Rows that run an action once closed, e.g. giving their connection back.
+   */
+  private static <S> ResultSetIterable<S> closingWith(ResultSetIterable<S> rows,
+      Runnable onClose) {
+    return new ResultSetIterable<S>() {
+      @Override
+      public Iterator<S> iterator() {
+        return rows.iterator();
+      }
+
+      @Override
+      public void close() {
+        try {
+          rows.close();
+        } finally {
+          onClose.run();
+        }
+      }
+
+      @Override
+      public boolean isAutoCloseConnection() {
+        return rows.isAutoCloseConnection();
+      }
+
+      @Override
+      public void setAutoCloseConnection(boolean autoCloseConnection) {
+        rows.setAutoCloseConnection(autoCloseConnection);
+      }
+    };
+  }
+
   public List<Map<String, Object>> maps() {
     this.beforeCheck();
     String sql = this.buildSelectSQL(true);
@@ -544,11 +960,12 @@ public class Query<T extends DataModel> {
 
 
   public List<T> limit(int limit) {
-    return ifReturn(DatabaseWrapper.of().isUseSQLLimit(),
+    return ifReturn(db().isUseSQLLimit(),
         () -> {
           isSQLLimit = true;
           paramValues.add(limit);
-          return all();
+          List<T> all = all();
+          return ifReturn(all.size() > limit, () -> all.subList(0, limit), () -> all);
         },
         () -> {
           List<T> all = all();
@@ -559,6 +976,20 @@ public class Query<T extends DataModel> {
   }
 
 
+  /**
+   * Async variant of {@link #page(PageRow)}.
+   *
+   * @param pageRow page number and size
+   * @return future of the page, completed on the async executor
+   */
+  public CompletableFuture<Page<T>> pageAsync(PageRow pageRow) {
+    return this.async(() -> this.page(pageRow));
+  }
+
+  public CompletableFuture<Page<T>> pageAsync(int page, int limit) {
+    return this.pageAsync(new PageRow(page, limit));
+  }
+
   public Page<T> page(int page, int limit) {
     return this.page(new PageRow(page, limit));
   }
@@ -576,23 +1007,38 @@ public class Query<T extends DataModel> {
 
   public Page<T> page(String sql, Object[] params, PageRow pageRow) {
     this.beforeCheck();
-    Connection conn = getConn();
+    ifNullThen(profile, this::startProfile);
+    Supplier<Page<T>> loader = () -> this.loadPage(sql, params, pageRow);
+    Page<T> page = ifReturn(joinParams.isEmpty(),
+        () -> this.cachedResult(Arrays.asList("page", modelClass, pageRow.getPageNum(),
+            pageRow.getPageSize()), sql, params, loader),
+        loader);
+    this.finishProfile(Operation.PAGE, sql);
+    return page;
+  }
+
+  private Page<T> loadPage(String sql, Object[] params, PageRow pageRow) {
+    long mark = this.mark();
+    String countSql = useSQL ? "SELECT COUNT(*) FROM (" + sql + ") tmp" : buildCountSQL(sql);
+    this.lap(Phase.RENDER, mark);
+    if (this.isScatter(modelClass)) {
+      return this.scatterPage(sql, countSql, params, pageRow);
+    }
+    Connection conn = getConn(target());
     try {
-      String countSql = useSQL ? "SELECT COUNT(*) FROM (" + sql + ") tmp" : buildCountSQL(sql);
-
-      long count = conn.createQuery(countSql)
-          .withParams(params)
-          .executeAndFetchFirst(Long.class);
+      long count = this.phase(Phase.COUNT, () -> this.measured(Operation.COUNT, countSql, params,
+          () -> createQuery(conn, countSql, params).executeScalar(Long.class)));
 
       Page<T> pageBean = new Page<>(count, pageRow.getPageNum(), pageRow.getPageSize());
 
       ifThen(count > 0, () -> {
+        long rendering = this.mark();
         String pageSQL = this.buildPageSQL(sql, pageRow);
-        List<T> list = conn.createQuery(pageSQL)
-            .withParams(params)
-            .setAutoDeriveColumnNames(true)
-            .throwOnMappingFailure(false)
-            .executeAndFetch(modelClass);
+        this.lap(Phase.RENDER, rendering);
+        List<T> list = this.measured(Operation.PAGE, pageSQL, params,
+            () -> this.fetch(createQuery(conn, pageSQL, params)
+                .setAutoDeriveColumnNames(true)
+                .throwOnMappingFailure(false), modelClass));
 
         this.setJoin(list);
         pageBean.setRows(list);
@@ -605,21 +1051,91 @@ public class Query<T extends DataModel> {
     }
   }
 
+  /**
+   * Page over all shards: every shard returns its first pageNum * pageSize rows, the merged
+   * result is cut to the requested page and the counts are summed.
+   */
+  private Page<T> scatterPage(String sql, String countSql, Object[] params, PageRow pageRow) {
+    try {
+      long count = this.phase(Phase.COUNT,
+          () -> this.scatter(database -> fetchOne(database, Long.class, countSql, params))
+              .stream().mapToLong(Long::longValue).sum());
+
+      Page<T> pageBean = new Page<>(count, pageRow.getPageNum(), pageRow.getPageSize());
+
+      ifThen(count > 0, () -> {
+        int offset = (pageBean.getPageNum() - 1) * pageRow.getPageSize();
+        long rendering = this.mark();
+        String pageSQL = this.buildPageSQL(sql,
+            new PageRow(1, offset + pageRow.getPageSize()));
+        this.lap(Phase.RENDER, rendering);
+        List<T> merged = ShardMerger.merge(
+            this.scatter(database -> fetchList(database, modelClass, pageSQL, params)),
+            ShardMerger.modelComparator(modelClass, this.orderBySQL.toString(),
+                db().dialect().textOrder()));
+
+        List<T> list = new ArrayList<>(merged.subList(Math.min(offset, merged.size()),
+            Math.min(offset + pageRow.getPageSize(), merged.size())));
+        this.setJoin(list);
+        pageBean.setRows(list);
+      });
+
+      return pageBean;
+    } finally {
+      this.clean(null);
+    }
+  }
+
   private String buildCountSQL(String sql) {
     return "SELECT COUNT(*) " + sql.substring(sql.indexOf("FROM"));
   }
 
 
   public Page<T> page(PageRow pageRow) {
+    long mark = this.startProfile();
     String sql = this.buildSelectSQL(false);
+    this.lap(Phase.RENDER, mark);
     return this.page(sql, pageRow);
   }
 
 
+  /**
+   * Async variant of {@link #count()}.
+   *
+   * @return future of the count, completed on the async executor
+   */
+  public CompletableFuture<Long> countAsync() {
+    return this.async(this::count);
+  }
+
   public long count() {
     this.beforeCheck();
+    long mark = this.startProfile();
+    if (this.ruledOut()) {
+      this.clean(null);
+      return 0;
+    }
+    List<T> replicated = this.fromReplica(equalities, memberships);
+    if (null != replicated) {
+      this.clean(null);
+      return replicated.size();
+    }
     String sql = this.buildCountSQL();
-    return this.queryOne(Long.class, sql, paramValues);
+    this.lap(Phase.RENDER, mark);
+    long count;
+    if (!this.isScatter(modelClass)) {
+      count = this.queryOne(Long.class, sql, paramValues);
+    } else {
+      Object[] params = paramValues.toArray();
+      try {
+        count = this.scatter(database -> fetchOne(database, Long.class, sql, params))
+            .stream().mapToLong(Long::longValue).sum();
+      } finally {
+        this.clean(null);
+      }
+    }
+    this.finishProfile(Operation.COUNT, sql);
+    return count;
   }
 
 
@@ -655,24 +1171,43 @@ public class Query<T extends DataModel> {
   }
 
   public <S> S queryOne(Class<S> type, String sql, Object[] params) {
-    Connection conn = getConn();
+    return this.cachedResult(Arrays.asList("one", type), sql, params, () -> {
+      try {
+        if (!this.isScatter(type)) {
+          return this.fetchOne(target(), type, sql, params);
+        }
+        return this.scatter(database -> fetchOne(database, type, sql, params))
+            .stream()
+            .filter(Objects::nonNull)
+            .findFirst()
+            .orElse(null);
+      } finally {
+        this.clean(null);
+      }
+    });
+  }
+
+  private <S> S fetchOne(Sql2o database, Class<S> type, String sql, Object[] params) {
+    Connection conn = getConn(database);
     try {
-      org.sql2o.Query query = conn.createQuery(sql)
-          .withParams(params)
+      org.sql2o.Query query = createQuery(conn, sql, params)
           .setAutoDeriveColumnNames(true)
           .throwOnMappingFailure(false);
 
-      return ifReturn(DatabaseUtils.isBasicType(type),
-          () -> query.executeScalar(type),
-          () -> query.executeAndFetchFirst(type));
+      long mark = this.mark();
+      S result = this.measured(Operation.of(sql), sql, params,
+          () -> ifReturn(DatabaseUtils.isBasicType(type),
+              () -> query.executeScalar(type),
+              () -> query.executeAndFetchFirst(type)));
+      this.lap(Phase.EXECUTE, mark);
+      return result;
     } finally {
       this.closeConn(conn);
-      this.clean(null);
     }
   }
 
   public <S> S queryOne(Class<S> type, String sql, List<Object> params) {
-    if (DatabaseWrapper.of().isUseSQLLimit()) {
+    if (db().isUseSQLLimit()) {
       sql += " LIMIT 1";
     }
     List<S> list = queryList(type, sql, params);
@@ -681,36 +1216,93 @@ public class Query<T extends DataModel> {
 
 
   public <S> List<S> queryList(Class<S> type, String sql, Object[] params) {
-    Connection conn = getConn();
+    return this.cachedResult(Arrays.asList("list", type), sql, params, () -> {
+      try {
+        if (!this.isScatter(type)) {
+          return this.fetchList(target(), type, sql, params);
+        }
+        return ShardMerger.merge(
+            this.scatter(database -> fetchList(database, type, sql, params)),
+            ShardMerger.modelComparator(type, this.orderBySQL.toString(),
+                db().dialect().textOrder()));
+      } finally {
+        this.clean(null);
+      }
+    });
+  }
+
+  private <S> List<S> fetchList(Sql2o database, Class<S> type, String sql, Object[] params) {
+    Connection conn = getConn(database);
     try {
-      return conn.createQuery(sql)
-          .withParams(params)
-          .setColumnMappings(computeModelColumnMappings(type))
-          .throwOnMappingFailure(false)
-          .executeAndFetch(type);
+      return this.measured(Operation.of(sql), sql, params,
+          () -> this.fetch(createQuery(conn, sql, params)
+              .setColumnMappings(computeModelColumnMappings(type))
+              .throwOnMappingFailure(false), type));
     } finally {
       this.closeConn(conn);
-      this.clean(null);
     }
   }
 
 
+  /**
+   * Fetch the rows, spilling them to a temp file when the database sets a budget, see
+   * {@link SpilledList}.
+   */
+  private <S> List<S> fetch(org.sql2o.Query query, Class<S> type) {
+    DatabaseWrapper database = db();
+    boolean spill = (database.spillRows() > 0 || database.spillBytes() > 0)
+        && DataModel.class.isAssignableFrom(type) && joinParams.isEmpty()
+        && null == cacheTtl && !coalesce && !this.isScatter(type);
+    if (!spill && null == profile) {
+      return query.executeAndFetch(type);
+    }
+    long mark = this.mark();
+    try (ResultSetIterable<S> rows = query.executeAndFetchLazy(type)) {
+      mark = this.lap(Phase.EXECUTE, mark);
+      List<S> list;
+      if (spill) {
+        list = SpilledList.collect(type, rows, database.spillRows(), database.spillBytes(),
+            database.spillDirectory());
+      } else {
+        list = new ArrayList<>();
+        rows.forEach(list::add);
+      }
+      this.lap(Phase.MAPPING, mark);
+      return list;
+    }
+  }
+
   public <S> List<S> queryList(Class<S> type, String sql, List<Object> params) {
     return this.queryList(type, sql, params.toArray());
   }
 
   public List<Map<String, Object>> queryListMap(String sql, Object[] params) {
-    Connection conn = getConn();
+    return this.cachedResult(Collections.singletonList("maps"), sql, params, () -> {
+      try {
+        if (!this.isScatter(modelClass)) {
+          return this.fetchListMap(target(), sql, params);
+        }
+        return ShardMerger.merge(
+            this.scatter(database -> fetchListMap(database, sql, params)),
+            ShardMerger.mapComparator(this.orderBySQL.toString(),
+                db().dialect().textOrder()));
+      } finally {
+        this.clean(null);
+      }
+    });
+  }
+
+  private List<Map<String, Object>> fetchListMap(Sql2o database, String sql, Object[] params) {
+    Connection conn = getConn(database);
     try {
-      return conn.createQuery(sql)
-          .withParams(params)
-          .setAutoDeriveColumnNames(true)
-          .throwOnMappingFailure(false)
-          .executeAndFetchTable()
-          .asList();
+      return this.measured(Operation.of(sql), sql, params,
+          () -> createQuery(conn, sql, params)
+              .setAutoDeriveColumnNames(true)
+              .throwOnMappingFailure(false)
+              .executeAndFetchTable()
+              .asList());
     } finally {
       this.closeConn(conn);
-      this.clean(null);
     }
   }
 
@@ -719,6 +1311,26 @@ public class Query<T extends DataModel> {
   }
 
 
+  /**
+   * Async variant of {@link #execute()}.
+   *
+   * @return future of the number of rows affected, completed on the async executor
+   */
+  public CompletableFuture<Integer> executeAsync() {
+    return this.async(this::execute);
+  }
+
+  /**
+   * Async variant of {@link #execute(String, Object...)}.
+   *
+   * @param sql sql statement
+   * @param params params
+   * @return future of the number of rows affected, completed on the async executor
+   */
+  public CompletableFuture<Integer> executeAsync(String sql, Object... params) {
+    return this.async(() -> this.execute(sql, params));
+  }
+
   public int execute() {
     switch (dmlType) {
       case UPDATE:
@@ -732,38 +1344,39 @@ public class Query<T extends DataModel> {
 
 
   public int execute(String sql, Object... params) {
-    Connection conn = getConn();
     try {
-      int pos = 1;
-      while (sql.contains("?")) {
-        sql = sql.replaceFirst("\\?", ":p" + (pos++));
+      if (!this.isScatter(modelClass)) {
+        return this.executeUpdate(target(), sql, params);
       }
-      params = params == null ? new Object[]{} : params;
-      return conn.createQuery(sql)
-          .withParams(params)
-          .executeUpdate()
-          .getResult();
+      return this.scatter(database -> executeUpdate(database, sql, params))
+          .stream().mapToInt(Integer::intValue).sum();
+    } finally {
+      this.afterStatement(sql);
+      this.clean(null);
+    }
+  }
+
+  private int executeUpdate(Sql2o database, String sql, Object[] params) {
+    Connection conn = getConn(database);
+    try {
+      return this.measured(Operation.of(sql), sql, params,
+          () -> createQuery(conn, sql, params).executeUpdate().getResult(), Integer::longValue);
     } finally {
       this.closeConn(conn);
-      this.clean(conn);
     }
   }
 
   public Object executeAndGetKey(String sql, Object... params) {
-    Connection conn = getConn();
+    ifThrow(this.isScatter(modelClass),
+        new DatabaseWrapperException("Insert into a sharded model needs its shard key."));
+    Connection conn = getConn(target());
     try {
-      int pos = 1;
-      while (sql.contains("?")) {
-        sql = sql.replaceFirst("\\?", ":p" + (pos++));
-      }
-      params = params == null ? new Object[]{} : params;
-      return conn.createQuery(sql)
-          .withParams(params)
-          .executeUpdate()
-          .getKey();
+      return this.measured(Operation.of(sql), sql, params,
+          () -> createQuery(conn, sql, params).executeUpdate().getKey(), key -> 1L);
     } finally {
       this.closeConn(conn);
-      this.clean(conn);
+      this.afterStatement(sql);
+      this.clean(null);
     }
   }
 
@@ -780,104 +1393,109 @@ public class Query<T extends DataModel> {
   public <S extends DataModel> ResultKey save(S model) {
     List<Object> columnValues = DatabaseUtils.toColumnValues(model, true);
     String sql = this.buildInsertSQL(model, columnValues);
-    Connection conn = getConn();
-    try {
+    ifThen(this.isSharded(modelClass), () -> this.shard(this.shardKeyValue(model)));
 
-      List<Object> params = columnValues.stream()
-          .filter(Objects::nonNull)
-          .collect(toList());
+    List<Object> params = columnValues.stream()
+        .filter(Objects::nonNull)
+        .collect(toList());
 
-      int pos = 1;
-      while (sql.contains("?")) {
-        sql = sql.replaceFirst("\\?", ":p" + (pos++));
-      }
-      return new ResultKey(executeAndGetKey(sql, params));
-    } finally {
-      this.closeConn(conn);
-      this.clean(conn);
-    }
+    KeyGuard guard = this.trackKeys(model);
+    Object key = executeAndGetKey(sql, params);
+    ifThen(null != guard && this.isPrimaryKey(guard.column()), () -> this.guardKey(guard, key));
+    return new ResultKey(key);
   }
 
   public <S extends DataModel> ResultKey saveOrUpdateOnDuplicate(S model) {
     List<Object> columnValues = DatabaseUtils.toColumnValues(model, true);
     List<Object> duplicateColumnValues = DatabaseUtils.toColumnValuesDuplicate(model, true);
     String sql = this.buildInsertOrUpdateOnDuplicateSQL(model, columnValues);
-    Connection conn = getConn();
-    try {
+    ifThen(this.isSharded(modelClass), () -> this.shard(this.shardKeyValue(model)));
 
-      List<Object> params = columnValues.stream()
-          .filter(Objects::nonNull)
-          .collect(toList());
+    List<Object> params = columnValues.stream()
+        .filter(Objects::nonNull)
+        .collect(toList());
 
-      List<Object> duplicateParams = duplicateColumnValues.stream()
-          .filter(Objects::nonNull)
-          .collect(toList());
+    List<Object> duplicateParams = duplicateColumnValues.stream()
+        .filter(Objects::nonNull)
+        .collect(toList());
 
-      params.addAll(duplicateParams);
+    params.addAll(duplicateParams);
 
-      int pos = 1;
-      while (sql.contains("?")) {
-        sql = sql.replaceFirst("\\?", ":p" + (pos++));
-      }
-
-      return new ResultKey(executeAndGetKey(sql, params));
-//          new ResultKey(conn.createQuery(sql)
-//          .withParams(params)
-//          .executeUpdate()
-//          .getKey());
-    } finally {
-      this.closeConn(conn);
-      this.clean(conn);
-    }
+    KeyGuard guard = this.trackKeys(model);
+    Object key = executeAndGetKey(sql, params);
+    ifThen(null != guard && this.isPrimaryKey(guard.column()), () -> this.guardKey(guard, key));
+    ResultKey resultKey = new ResultKey(key);
+    this.afterWrite(DatabaseUtils.invokeMethod(model,
+        getGetterName(DatabaseCache.getPKField(modelClass)), DatabaseUtils.EMPTY_ARG));
+    return resultKey;
   }
 
   public int delete() {
-    String sql = this.buildDeleteSQL(null);
-    return this.execute(sql, paramValues);
+    return this.delete(null);
   }
 
 
   public <S extends Serializable> int deleteById(S id) {
+    this.routeByPrimaryKey(id);
     this.where(primaryKeyColumn, id);
-    return this.delete();
+    return this.delete(id);
   }
 
   public <S extends DataModel> int deleteByModel(S model) {
     this.beforeCheck();
+    this.keysTracked = true;
+    this.routeByModel(model);
     String sql = this.buildDeleteSQL(model);
     List<Object> columnValueList = DatabaseUtils.toColumnValues(model, false);
-    return this.execute(sql, columnValueList);
+    return this.write(sql, columnValueList, null);
+  }
+
+  private int delete(Object id) {
+    this.keysTracked = true;
+    String sql = this.buildDeleteSQL(null);
+    return this.write(sql, paramValues, id);
   }
 
 
   public int update() {
-    this.beforeCheck();
-    String sql = this.buildUpdateSQL(null, updateColumns);
-    List<Object> columnValueList = new ArrayList<>();
-    updateColumns.forEach((key, value) -> columnValueList.add(value));
-    columnValueList.addAll(paramValues);
-    return this.execute(sql, columnValueList);
+    return this.update(null);
   }
 
 
   public int updateById(Serializable id) {
+    this.routeByPrimaryKey(id);
     this.where(primaryKeyColumn, id);
-    return this.update();
+    return this.update(id);
+  }
+
+  private int update(Object id) {
+    this.beforeCheck();
+    this.trackKeys(null);
+    String sql = this.buildUpdateSQL(null, updateColumns);
+    List<Object> columnValueList = new ArrayList<>();
+    updateColumns.forEach((key, value) -> columnValueList.add(value));
+    columnValueList.addAll(paramValues);
+    return this.write(sql, columnValueList, id);
   }
 
 
   public <S extends DataModel> int updateById(S model, Serializable id) {
+    this.routeByPrimaryKey(id);
+    this.routeByModel(model);
     this.where(primaryKeyColumn, id);
+    this.trackKeys(model);
     String sql = this.buildUpdateSQL(model, null);
     List<Object> columnValueList = DatabaseUtils.toColumnValues(model, false);
     columnValueList.add(id);
-    return this.execute(sql, columnValueList);
+    return this.write(sql, columnValueList, id);
   }
 
 
   public <S extends DataModel> int updateByModel(S model) {
     this.beforeCheck();
+    this.routeByModel(model);
 
+    this.trackKeys(model);
     Object primaryKey = DatabaseUtils.getAndRemovePrimaryKey(model);
 
     StringBuilder sql = new StringBuilder(this.buildUpdateSQL(model, null));
@@ -889,7 +1507,379 @@ public class Query<T extends DataModel> {
       columnValueList.add(primaryKey);
     });
 
-    return this.execute(sql.toString(), columnValueList);
+    return this.write(sql.toString(), columnValueList, primaryKey);
+  }
+
+  /**
+   * Run a read through the result cache when the query is marked {@link #cached(Duration)} and
+   * through single-flight when it is marked {@link #coalesce()}.
+   *
+   * @param kind what the loader returns, part of the key with the SQL and parameters
+   */
+  @SuppressWarnings("unchecked")
+  private <R> R cachedResult(List<Object> kind, String sql, Object[] params,
+      Supplier<R> loader) {
+    Duration ttl = this.cacheTtl;
+    boolean coalesce = this.coalesce;
+    if ((null == ttl && !coalesce) || null != this.transaction()) {
+      return loader.get();
+    }
+    List<Object> key = Arrays.asList(kind, sql,
+        null == params ? Collections.emptyList() : Arrays.asList(params), this.sql2o, this.shard);
+    Supplier<R> read = loader;
+    if (null != ttl) {
+      ResultCache cache = db().resultCache();
+      boolean[] found = new boolean[1];
+      Object hit = cache.get(key, found);
+      if (found[0]) {
+        this.clean(null);
+        return (R) hit;
+      }
+      Set<String> tables = ResultCache.readTables(sql);
+      ifNotNullThen(modelClass, () -> tables.add(ResultCache.normalize(tableName())));
+      read = () -> {
+        long generation = cache.generation();
+        R result = loader.get();
+        cache.put(key, result, tables, ttl.toMillis(), generation);
+        return result;
+      };
+    }
+    if (!coalesce) {
+      return read.get();
+    }
+    try {
+      return db().singleFlight().run(key, read);
+    } finally {
+      this.clean(null);
+    }
+  }
+
+  /**
+   * Bloom filter guard of the model, created and scheduled for its first build when needed.
+   *
+   * @return KeyGuard, null when the model is not
+   * {@link in.asvignesh.databasewrapper.annotation.BloomGuard}
+   */
+  public KeyGuard keyGuard() {
+    if (null == modelClass) {
+      return null;
+    }
+    DatabaseWrapper database = db();
+    Sql2o bound = this.sql2o;
+    return database.keyGuards().of(modelClass, settings -> {
+      String column = DatabaseUtils.isEmpty(settings.column())
+          ? DatabaseCache.getPKColumn(modelClass) : settings.column();
+      return new KeyGuard(column, settings,
+          consumer -> new Query<>(database, modelClass).bindSQL2o(bound)
+              .streamColumn(column, consumer),
+          database.asyncExecutor());
+    });
+  }
+
+  /**
+   * Whether the conditions pin the guarded column to a key the guard rules out.
+   */
+  private boolean ruledOut() {
+    if (disjunctive || equalities.isEmpty()) {
+      return false;
+    }
+    KeyGuard guard = this.keyGuard();
+    if (null == guard) {
+      return false;
+    }
+    Object key = equalities.get(guard.column().toLowerCase());
+    return null != key && !guard.mightContain(key);
+  }
+
+  /**
+   * Tell the key guard about the key a save or update writes, so that it keeps answering.
+   *
+   * @param model written model, null for column updates
+   */
+  private <S extends DataModel> KeyGuard trackKeys(S model) {
+    this.keysTracked = true;
+    KeyGuard guard = this.keyGuard();
+    if (null == guard) {
+      return null;
+    }
+    ifThen(updateColumns.containsKey(guard.column()),
+        () -> this.guardKey(guard, updateColumns.get(guard.column())));
+    ifNotNullThen(model, () -> this.guardKey(guard, this.columnValue(model, guard.column())));
+    return guard;
+  }
+
+  /**
+   * Add a written key to the guard, a key of a running transaction until it ends.
+   */
+  private void guardKey(KeyGuard guard, Object key) {
+    Transaction transaction = this.transaction();
+    ifThen(null == transaction, () -> guard.add(key),
+        () -> guard.add(key, () -> !transaction.isCompleted()));
+  }
+
+  private void afterStatement(String sql) {
+    this.invalidateResults(sql);
+    this.invalidateReplicas(sql);
+    if (keysTracked) {
+      return;
+    }
+    // a statement not written through the model, the rows it changed are unknown
+    this.invalidateEntities(sql);
+    if (sql.trim().regionMatches(true, 0, "DELETE", 0, 6)) {
+      return;
+    }
+    // a write the guards could not follow: they pass every key until rebuilt
+    Set<String> tables = ResultCache.writeTables(sql);
+    ifThen(tables.isEmpty(), db().keyGuards()::resetAll,
+        () -> tables.forEach(table -> db().keyGuards().resetTable(table,
+            type -> DatabaseCache.getTableName(type, db().tablePrefix()))));
+  }
+
+  private void streamColumn(String column, Consumer<Object> consumer) {
+    String sql = "SELECT " + column + " FROM " + this.tableName();
+    List<Sql2o> databases = this.isScatter(modelClass)
+        ? shards().databases() : Collections.singletonList(target());
+    for (Sql2o database : databases) {
+      try (Connection conn = database.open();
+          ResultSetIterable<Object> keys = conn.createQuery(sql).executeAndFetchLazy(
+              (ResultSetHandler<Object>) resultSet -> resultSet.getObject(1))) {
+        keys.forEach(consumer);
+      }
+    }
+  }
+
+  /**
+   * In-memory copy of the table, created and loaded when needed.
+   *
+   * @return Replica, null when the model is not
+   * {@link in.asvignesh.databasewrapper.annotation.Replicated}
+   */
+  public Replica<T> replica() {
+    if (null == modelClass) {
+      return null;
+    }
+    DatabaseWrapper database = db();
+    Sql2o bound = this.sql2o;
+    return database.replicas().of(modelClass, settings -> new Replica<>(modelClass,
+        DatabaseCache.getPKColumn(modelClass), settings,
+        () -> new Query<>(database, modelClass).bindSQL2o(bound).detached().loadTable(),
+        database.asyncExecutor()));
+  }
+
+  /**
+   * Rows selected by the conditions from the replica of the model. Values of other types than
+   * numbers, strings and booleans, and orders by expressions, are left to the database; so are
+   * conditions and orders on strings, unless the model opts into exact comparison with
+   * {@link in.asvignesh.databasewrapper.annotation.Replicated#exactStrings()}.
+   *
+   * @return new model instances, null when the database has to answer
+   */
+  private List<T> fromReplica(Map<String, Object> equalities, Map<String, Object[]> memberships) {
+    if (null == modelClass || disjunctive || isSQLLimit || null != shard || !this.isFullRow()
+        || (orderBySQL.length() > 0 && !PLAIN_ORDER.matcher(orderBySQL).matches())) {
+      return null;
+    }
+    // every condition has to be one the replica understands
+    String conditions = conditionSQL.toString();
+    int count = conditions.isEmpty() ? 0 : conditions.split(" AND ", -1).length - 1;
+    if (count != this.equalities.size() + this.memberships.size()) {
+      return null;
+    }
+    Transaction transaction = this.transaction();
+    if (null != transaction && (transaction.hasWritten(modelClass)
+        || transaction.hasWrittenTable(ResultCache.normalize(this.tableName())))) {
+      return null;
+    }
+    Replica<T> replica = this.replica();
+    ReplicaSnapshot<T> snapshot = null != replica ? replica.snapshot() : null;
+    if (null == snapshot) {
+      return null;
+    }
+    if (orderBySQL.length() > 0 && !snapshot.sortable(orderBySQL.toString())) {
+      replica.answered(false);
+      return null;
+    }
+    List<T> models = snapshot.select(equalities, memberships);
+    replica.answered(null != models);
+    ifThen(null != models && orderBySQL.length() > 0, () -> models
+        .sort(ShardMerger.modelComparator(modelClass, orderBySQL.toString(),
+            Comparator.naturalOrder())));
+    return models;
+  }
+
+  private List<T> loadTable() {
+    String sql = "SELECT * FROM " + this.tableName() + " ORDER BY "
+        + DatabaseCache.getPKColumn(modelClass);
+    List<Sql2o> databases = this.isScatter(modelClass)
+        ? shards().databases() : Collections.singletonList(target());
+    List<T> models = new ArrayList<>();
+    databases.forEach(database -> models
+        .addAll(this.fetchList(database, modelClass, sql, DatabaseUtils.EMPTY_ARG)));
+    return models;
+  }
+
+  /**
+   * Reload the replicas of the tables a statement wrote, inside a transaction once it has
+   * committed. The transaction itself reads those models from the database meanwhile.
+   */
+  private void invalidateReplicas(String sql) {
+    Set<String> tables = ResultCache.writeTables(sql);
+    List<Replica<?>> replicas = db().replicas().ofTables(tables,
+        type -> DatabaseCache.getTableName(type, db().tablePrefix()));
+    Transaction transaction = this.transaction();
+    // also for replicas not created yet, their first load does not read through the transaction
+    ifThen(null != transaction && !transaction.isCompleted(),
+        () -> transaction.writtenTables(tables));
+    for (Replica<?> replica : replicas) {
+      if (null == transaction || transaction.isCompleted()) {
+        replica.invalidate();
+      } else {
+        transaction.written(replica.modelClass());
+        transaction.afterCommit(replica::invalidate);
+      }
+    }
+  }
+
+  /**
+   * Evict the entity caches of the tables a statement wrote, all of them when the tables are not
+   * known, inside a transaction once it has committed. The transaction loads the rows of those
+   * tables again.
+   */
+  private void invalidateEntities(String sql) {
+    EntityCaches caches = db().entityCaches();
+    Set<String> tables = ResultCache.writeTables(sql);
+    Function<Class<?>, String> tableName = type -> DatabaseCache.getTableName(type,
+        db().tablePrefix());
+    Transaction transaction = this.transaction();
+    if (null == transaction || transaction.isCompleted()) {
+      caches.ofTables(tables, tableName).forEach(EntityCache::invalidateAll);
+      return;
+    }
+    transaction.forget(tables, tableName);
+    caches.ofTables(tables, tableName).forEach(cache -> transaction.written(cache.modelClass()));
+    // also the caches created meanwhile, they may hold rows read before the commit
+    transaction.afterCommit(() -> caches.ofTables(tables, tableName)
+        .forEach(EntityCache::invalidateAll));
+  }
+
+  private boolean isPrimaryKey(String column) {
+    return column.equalsIgnoreCase(DatabaseCache.getPKColumn(modelClass));
+  }
+
+  /**
+   * Evict cached results that read the table a statement wrote, inside a transaction once it has
+   * committed.
+   */
+  private void invalidateResults(String sql) {
+    ResultCache cache = db().resultCache();
+    Set<String> tables = ResultCache.writeTables(sql);
+    Transaction transaction = this.transaction();
+    ifThen(null == transaction || transaction.isCompleted(), () -> cache.invalidate(tables),
+        () -> transaction.afterCommit(() -> cache.invalidate(tables)));
+  }
+
+  /**
+   * Run a statement changing rows of the model and invalidate their cached copies.
+   *
+   * @param id primary key of the only row changed, null when any row may have changed
+   */
+  private int write(String sql, List<Object> params, Object id) {
+    int rows = this.execute(sql, params);
+    this.afterWrite(id);
+    return rows;
+  }
+
+  /**
+   * Invalidate cached rows after a write, inside a transaction once it has committed.
+   */
+  private void afterWrite(Object id) {
+    Transaction transaction = this.transaction();
+    ifThen(null != transaction && null != modelClass,
+        () -> transaction.forget(modelClass, null == id ? null : cacheKey(id)));
+    EntityCache<T> cache = null != modelClass ? db().entityCache(modelClass) : null;
+    if (null == cache) {
+      return;
+    }
+    Runnable invalidate = () -> ifThen(null == id, cache::invalidateAll,
+        () -> cache.invalidate(id));
+    if (null == transaction) {
+      invalidate.run();
+      return;
+    }
+    transaction.written(modelClass);
+    transaction.afterCommit(invalidate);
+  }
+
+  /**
+   * Entity cache for a lookup by primary key, null when the query has its own conditions or
+   * columns, or when the transaction has changed the model.
+   */
+  private EntityCache<T> readCache() {
+    if (!this.isPlain()) {
+      return null;
+    }
+    Transaction transaction = this.transaction();
+    if (null != transaction && (transaction.hasWritten(modelClass)
+        || transaction.hasWrittenTable(ResultCache.normalize(this.tableName())))) {
+      return null;
+    }
+    return db().entityCache(modelClass);
+  }
+
+  /**
+   * A row already loaded in the transaction, else from the entity cache.
+   */
+  private T lookup(Transaction transaction, EntityCache<T> cache, Object id) {
+    T model = null != transaction ? transaction.identity(modelClass, cacheKey(id)) : null;
+    return ifReturn(null == model && null != cache,
+        () -> this.identify(transaction, cache.get(id)),
+        () -> model);
+  }
+
+  /**
+   * The instance of the row in the identity map of the transaction, registering the model when
+   * the row was not loaded before.
+   */
+  private <S> S identify(Transaction transaction, S model) {
+    if (null == transaction || null == model) {
+      return model;
+    }
+    Object id = primaryKey(model);
+    return ifReturn(null == id, () -> model,
+        () -> transaction.identify(model.getClass(), cacheKey(id), model));
+  }
+
+  /**
+   * Spilled rows are decoded on each access, they are not kept in the identity map.
+   */
+  private <S> List<S> identify(Transaction transaction, List<S> models) {
+    return ifReturn(null == transaction || models.isEmpty() || models instanceof SpilledList,
+        () -> models,
+        () -> models.stream().map(model -> this.identify(transaction, model)).collect(toList()));
+  }
+
+  static Object primaryKey(Object model) {
+    return DatabaseUtils.invokeMethod(model,
+        getGetterName(DatabaseCache.getPKField(model.getClass())), DatabaseUtils.EMPTY_ARG);
+  }
+
+  /**
+   * No conditions and all columns: a lookup by primary key can be answered by identity.
+   */
+  private boolean isPlain() {
+    return conditionSQL.length() == 0 && this.isFullRow();
+  }
+
+  private boolean isFullRow() {
+    return null == selectColumns && excludedColumns.isEmpty();
+  }
+
+  /**
+   * Integral ids of any width name the same row.
+   */
+  static Object cacheKey(Object id) {
+    return id instanceof Integer || id instanceof Short || id instanceof Byte
+        ? (Object) ((Number) id).longValue() : id;
   }
 
   private void setArguments(Object[] args) {
@@ -908,7 +1898,7 @@ public class Query<T extends DataModel> {
     SQLParams sqlParams = SQLParams.builder()
         .modelClass(this.modelClass)
         .selectColumns(this.selectColumns)
-        .tableName(this.tableName)
+        .tableName(this.tableName())
         .pkName(this.primaryKeyColumn)
         .conditionSQL(this.conditionSQL)
         .excludedColumns(this.excludedColumns)
@@ -917,18 +1907,18 @@ public class Query<T extends DataModel> {
 
     ifThen(addOrderBy, () -> sqlParams.setOrderBy(this.orderBySQL.toString()));
 
-    return DatabaseWrapper.of().dialect().select(sqlParams);
+    return db().dialect().select(sqlParams);
   }
 
 
   private String buildCountSQL() {
     SQLParams sqlParams = SQLParams.builder()
         .modelClass(this.modelClass)
-        .tableName(this.tableName)
+        .tableName(this.tableName())
         .pkName(this.primaryKeyColumn)
         .conditionSQL(this.conditionSQL)
         .build();
-    return DatabaseWrapper.of().dialect().count(sqlParams);
+    return db().dialect().count(sqlParams);
   }
 
 
@@ -936,7 +1926,7 @@ public class Query<T extends DataModel> {
     SQLParams sqlParams = SQLParams.builder()
         .modelClass(this.modelClass)
         .selectColumns(this.selectColumns)
-        .tableName(this.tableName)
+        .tableName(this.tableName())
         .pkName(this.primaryKeyColumn)
         .conditionSQL(this.conditionSQL)
         .excludedColumns(this.excludedColumns)
@@ -944,7 +1934,7 @@ public class Query<T extends DataModel> {
         .orderBy(this.orderBySQL.toString())
         .pageRow(pageRow)
         .build();
-    return DatabaseWrapper.of().dialect().paginate(sqlParams);
+    return db().dialect().paginate(sqlParams);
   }
 
   private <S extends DataModel> String buildInsertSQL(S model,
@@ -953,11 +1943,11 @@ public class Query<T extends DataModel> {
         .model(model)
         .columnValues(columnValues)
         .modelClass(this.modelClass)
-        .tableName(this.tableName)
+        .tableName(this.tableName())
         .pkName(this.primaryKeyColumn)
         .build();
 
-    return DatabaseWrapper.of().dialect().insert(sqlParams);
+    return db().dialect().insert(sqlParams);
   }
 
   private <S extends DataModel> String buildInsertOrUpdateOnDuplicateSQL(S model,
@@ -966,11 +1956,11 @@ public class Query<T extends DataModel> {
         .model(model)
         .columnValues(columnValues)
         .modelClass(this.modelClass)
-        .tableName(this.tableName)
+        .tableName(this.tableName())
         .pkName(this.primaryKeyColumn)
         .build();
 
-    return DatabaseWrapper.of().dialect().insertOnDuplicate(sqlParams);
+    return db().dialect().insertOnDuplicate(sqlParams);
   }
 
   private <S extends DataModel> String buildUpdateSQL(S model,
@@ -978,24 +1968,24 @@ public class Query<T extends DataModel> {
     SQLParams sqlParams = SQLParams.builder()
         .model(model)
         .modelClass(this.modelClass)
-        .tableName(this.tableName)
+        .tableName(this.tableName())
         .pkName(this.primaryKeyColumn)
         .updateColumns(updateColumns)
         .conditionSQL(this.conditionSQL)
         .build();
 
-    return DatabaseWrapper.of().dialect().update(sqlParams);
+    return db().dialect().update(sqlParams);
   }
 
   private <S extends DataModel> String buildDeleteSQL(S model) {
     SQLParams sqlParams = SQLParams.builder()
         .model(model)
         .modelClass(this.modelClass)
-        .tableName(this.tableName)
+        .tableName(this.tableName())
         .pkName(this.primaryKeyColumn)
         .conditionSQL(this.conditionSQL)
         .build();
-    return DatabaseWrapper.of().dialect().delete(sqlParams);
+    return db().dialect().delete(sqlParams);
   }
 
   public Query<T> useSQL() {
@@ -1008,13 +1998,293 @@ public class Query<T extends DataModel> {
     ifNullThrow(this.modelClass, new DatabaseWrapperException(ErrorCode.FROM_NOT_NULL));
   }
 
-  private Connection getConn() {
-    Connection connection = localConnection.get();
-    return ifNotNullReturn(connection, connection, getSql2o().open());
+  /**
+   * Connection for one statement, inside a transaction it is taken from the transaction and must
+   * be given back with {@link #closeConn(Connection)}.
+   */
+  private Connection getConn(Sql2o database) {
+    Transaction transaction = this.transaction();
+    DatabaseWrapper statistics = db().isEnableSQLStatistic() ? db() : null;
+    long start = null != statistics ? System.nanoTime() : 0;
+    long mark = this.mark();
+    Object flight = FlightEvents.get().begin(Kind.CONNECTION_OPEN);
+    Connection conn = ifReturn(null != transaction,
+        () -> transaction.acquire(database),
+        database::open);
+    try {
+      ifNotNullThen(statistics, () -> statistics.metrics().connection(System.nanoTime() - start));
+    } catch (RuntimeException e) {
+      // a failing listener must not keep the connection
+      ifThen(null != transaction, transaction::release, conn::close);
+      throw e;
+    }
+    if (null != flight) {
+      FlightEvents.get().connection(flight, null != transaction);
+    }
+    ConnectionTracker tracker = db().connectionTracker();
+    if (null != tracker && null == transaction) {
+      tracker.checkout(conn);
+    }
+    this.lap(Phase.CONNECTION, mark);
+    return conn;
+  }
+
+  /**
+   * Begin a profile when the query or the database asks for one.
+   *
+   * @return start of the first phase, 0 when not profiling
+   */
+  private long startProfile() {
+    this.readFlight = FlightEvents.get().begin(Kind.READ);
+    boolean profiling = null != profileConsumer || null != db().phaseProfiler()
+        || null != readFlight;
+    this.profile = profiling ? new QueryProfile() : null;
+    return this.mark();
+  }
+
+  private long mark() {
+    return null != profile ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Add the time since the mark to the phase.
+   *
+   * @return the mark of the next phase
+   */
+  private long lap(Phase phase, long mark) {
+    QueryProfile current = this.profile;
+    if (null == current || 0 == mark) {
+      return 0;
+    }
+    long now = System.nanoTime();
+    current.add(phase, now - mark);
+    return now;
+  }
+
+  /**
+   * Run statements of their own, like joins, as one phase so their parts are not counted twice.
+   */
+  private <R> R phase(Phase phase, Supplier<R> body) {
+    QueryProfile current = this.profile;
+    if (null == current) {
+      return body.get();
+    }
+    long start = System.nanoTime();
+    this.profile = null;
+    try {
+      return body.get();
+    } finally {
+      this.profile = current;
+      current.add(phase, System.nanoTime() - start);
+    }
+  }
+
+  private void finishProfile(Operation operation, String shape) {
+    QueryProfile current = this.profile;
+    if (null == current) {
+      return;
+    }
+    this.profile = null;
+    if (null == shape) {
+      return;
+    }
+    current.finish(operation, shape);
+    Consumer<QueryProfile> consumer = this.profileConsumer;
+    this.profileConsumer = null;
+    ifNotNullThen(consumer, () -> consumer.accept(current));
+    PhaseProfiler profiler = db().phaseProfiler();
+    ifNotNullThen(profiler, () -> profiler.record(current));
+    Object flight = this.readFlight;
+    this.readFlight = null;
+    ifNotNullThen(flight, () -> FlightEvents.get().read(flight, current, modelClass));
+  }
+
+  /**
+   * Run a statement and record it in the statistics of the database, see {@link QueryMetrics}. A
+   * listener failure reaches the caller when the statement succeeded, and is added as suppressed to
+   * the failure of the statement otherwise.
+   */
+  private <R> R measured(Operation operation, String sql, Object[] params, Supplier<R> statement) {
+    return this.measured(operation, sql, params, statement, Query::rowCount);
+  }
+
+  private <R> R measured(Operation operation, String sql, Object[] params, Supplier<R> statement,
+      ToLongFunction<R> rows) {
+    DatabaseWrapper database = db();
+    boolean statistics = database.isEnableSQLStatistic();
+    Object flight = FlightEvents.get().begin(Kind.STATEMENT);
+    if (!statistics && null == flight) {
+      return statement.get();
+    }
+    long start = System.nanoTime();
+    R result = null;
+    Throwable error = null;
+    try {
+      result = statement.get();
+      return result;
+    } catch (RuntimeException | Error e) {
+      error = e;
+      throw e;
+    } finally {
+      long count = null == error && null != result ? rows.applyAsLong(result) : 0;
+      try {
+        if (null != flight) {
+          FlightEvents.get().statement(flight, operation, sql, modelClass, count, error);
+        }
+        if (statistics) {
+          database.metrics().statement(operation, sql, params, modelClass, count,
+              System.nanoTime() - start, error);
+        }
+      } catch (RuntimeException e) {
+        if (null == error) {
+          throw e;
+        }
+        error.addSuppressed(e);
+      }
+    }
+  }
+
+  private static long rowCount(Object result) {
+    return result instanceof Collection ? ((Collection<?>) result).size() : 1;
+  }
+
+  private Transaction transaction() {
+    return detached ? null : ifNotNullReturn(transaction, Transaction::current);
+  }
+
+  private Query<T> detached() {
+    this.detached = true;
+    return this;
+  }
+
+  /**
+   * Run a terminal operation on the async executor. The database and the transaction of the
+   * caller go with it, so work started inside atomic() keeps using the transaction's connections.
+   */
+  private <R> CompletableFuture<R> async(Supplier<R> operation) {
+    DatabaseWrapper database = db();
+    Transaction transaction = this.transaction();
+    return CompletableFuture.supplyAsync(() -> database.call(
+        () -> null == transaction ? operation.get() : transaction.call(operation)),
+        database.asyncExecutor());
+  }
+
+  private DatabaseWrapper db() {
+    return ifNotNullReturn(db, DatabaseWrapper::of);
+  }
+
+  private String tableName() {
+    return DatabaseCache.getTableName(modelClass, db().tablePrefix());
+  }
+
+  private Sql2o target() {
+    return ifNotNullReturn(shard, () -> {
+      Sql2o database = ifNotNullReturn(sql2o, () -> db().getSql2o());
+      ifNullThrow(database, new DatabaseWrapperException("SQL2O instance not is null."));
+      return database;
+    });
+  }
+
+  private org.sql2o.Query createQuery(Connection conn, String sql, Object[] params) {
+    ConnectionTracker tracker = db().connectionTracker();
+    if (null != tracker) {
+      tracker.statement(conn);
+    }
+    return conn.createQuery(toNamedParameters(sql))
+        .withParams(null == params ? DatabaseUtils.EMPTY_ARG : params);
+  }
+
+  /**
+   * sql2o binds {@code withParams} by the names p1..pn, so positional placeholders are renamed.
+   * Quoted strings and identifiers, comments and the {@code ??} escape of a literal question mark
+   * are kept as they are.
+   */
+  static String toNamedParameters(String sql) {
+    if (sql.indexOf('?') < 0) {
+      return sql;
+    }
+    StringBuilder named = new StringBuilder(sql.length() + 16);
+    int pos = 1;
+    int length = sql.length();
+    for (int i = 0; i < length; i++) {
+      char c = sql.charAt(i);
+      int end = i;
+      if (c == '\'' || c == '"' || c == '`') {
+        end = sql.indexOf(c, i + 1);
+      } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+        end = sql.indexOf('\n', i);
+      } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+        end = sql.indexOf("*/", i + 2);
+        end = end < 0 ? end : end + 1;
+      } else if (c == '?' && i + 1 < length && sql.charAt(i + 1) == '?') {
+        end = i + 1;
+      } else if (c == '?') {
+        named.append(":p").append(pos++);
+        continue;
+      }
+      end = end < 0 ? length - 1 : end;
+      named.append(sql, i, end + 1);
+      i = end;
+    }
+    return named.toString();
+  }
+
+  /**
+   * Run a statement on every shard, in parallel outside of a transaction. The shard threads run
+   * in the database of the caller, resolved for this call only, and the fan-out is one execute
+   * phase of the profile, which they do not touch.
+   */
+  private <R> List<R> scatter(Function<Sql2o, R> statement) {
+    DatabaseWrapper database = db();
+    boolean parallel = null == this.transaction();
+    return this.phase(Phase.EXECUTE, () -> shards().scatter(
+        shard -> database.call(() -> statement.apply(shard)), parallel));
+  }
+
+  private Shards shards() {
+    Shards shards = db().shards();
+    ifNullThrow(shards, new DatabaseWrapperException("Shards are not configured."));
+    return shards;
+  }
+
+  private boolean isSharded(Class<?> type) {
+    return null != type && null != DatabaseCache.getShardKeyColumn(type)
+        && null != db().shards();
+  }
+
+  /**
+   * Statements on a sharded model without a routed shard go to every shard.
+   */
+  private boolean isScatter(Class<?> type) {
+    return null == shard && this.isSharded(type);
+  }
+
+  private void routeByPrimaryKey(Object id) {
+    ifThen(this.isScatter(modelClass) && null != id
+            && primaryKeyColumn.equals(DatabaseCache.getShardKeyColumn(modelClass)),
+        () -> this.shard(id));
+  }
+
+  private <S extends DataModel> void routeByModel(S model) {
+    if (!this.isScatter(modelClass)) {
+      return;
+    }
+    Object shardKey = this.shardKeyValue(model);
+    ifNotNullThen(shardKey, () -> this.shard(shardKey));
+  }
+
+  private <S extends DataModel> Object shardKeyValue(S model) {
+    return this.columnValue(model, DatabaseCache.getShardKeyColumn(model.getClass()));
+  }
+
+  private <S extends DataModel> Object columnValue(S model, String column) {
+    String fieldName = computeModelColumnMappings(model.getClass())
+        .getOrDefault(column, DatabaseUtils.toCamelName(column));
+    return DatabaseUtils.invokeMethod(model, getGetterName(fieldName), DatabaseUtils.EMPTY_ARG);
   }
 
   public Query<T> bindSQL2o(Sql2o sql2o) {
-    Query.sql2o = sql2o;
+    this.sql2o = sql2o;
     return this;
   }
 
@@ -1023,7 +2293,10 @@ public class Query<T extends DataModel> {
         joinParams.size() == 0) {
       return;
     }
-    models.stream().filter(Objects::nonNull).forEach(this::setJoin);
+    this.phase(Phase.JOIN, () -> {
+      models.stream().filter(Objects::nonNull).forEach(this::setJoin);
+      return null;
+    });
   }
 
   private void setJoin(T model) {
@@ -1034,7 +2307,8 @@ public class Query<T extends DataModel> {
             getGetterName(joinParam.getOnLeft()),
             DatabaseUtils.EMPTY_ARG);
 
-        String sql = "SELECT * FROM " + DatabaseCache.getTableName(joinParam.getJoinModel()) +
+        String sql = "SELECT * FROM " + DatabaseCache
+            .getTableName(joinParam.getJoinModel(), db().tablePrefix()) +
             " WHERE " + joinParam.getOnRight() + " = ?";
 
         Field field = model.getClass()
@@ -1044,14 +2318,22 @@ public class Query<T extends DataModel> {
           if (DatabaseUtils.isNotEmpty(joinParam.getOrderBy())) {
             sql += " ORDER BY " + joinParam.getOrderBy();
           }
-          List<? extends DataModel> list = this
-              .queryList(joinParam.getJoinModel(), sql, new Object[]{leftValue});
+          List<? extends DataModel> list = this.identify(this.transaction(), this
+              .queryList(joinParam.getJoinModel(), sql, new Object[]{leftValue}));
           DatabaseUtils
               .invokeMethod(model, getSetterName(joinParam.getFieldName()), new Object[]{list});
         }
 
         if (field.getType().equals(joinParam.getJoinModel())) {
-          Object joinObject = this.queryOne(joinParam.getJoinModel(), sql, new Object[]{leftValue});
+          Transaction transaction = this.transaction();
+          boolean byPrimaryKey = joinParam.getOnRight()
+              .equals(DatabaseCache.getPKColumn(joinParam.getJoinModel()));
+          Object joinObject = null != transaction && byPrimaryKey && null != leftValue
+              ? transaction.identity(joinParam.getJoinModel(), cacheKey(leftValue)) : null;
+          if (null == joinObject) {
+            joinObject = this.identify(transaction,
+                this.queryOne(joinParam.getJoinModel(), sql, new Object[]{leftValue}));
+          }
           DatabaseUtils.invokeMethod(model, getSetterName(joinParam.getFieldName()),
               new Object[]{joinObject});
         }
@@ -1062,8 +2344,23 @@ public class Query<T extends DataModel> {
   }
 
   private void closeConn(Connection connection) {
-    ifThen(localConnection.get() == null && connection != null,
-        () -> connection.close());
+    if (null == connection) {
+      return;
+    }
+    Transaction transaction = this.transaction();
+    if (null != transaction) {
+      transaction.release();
+      return;
+    }
+    ConnectionTracker tracker = db().connectionTracker();
+    if (null != tracker) {
+      tracker.checkin(connection);
+    }
+    Object flight = FlightEvents.get().begin(Kind.CONNECTION_CLOSE);
+    connection.close();
+    if (null != flight) {
+      FlightEvents.get().connection(flight, false);
+    }
   }
 
   private void clean(Connection conn) {
@@ -1074,8 +2371,16 @@ public class Query<T extends DataModel> {
     this.paramValues.clear();
     this.excludedColumns.clear();
     this.updateColumns.clear();
-
-    ifThen(localConnection.get() == null && conn != null,
+    this.shard = null;
+    this.cacheTtl = null;
+    this.coalesce = false;
+    this.equalities.clear();
+    this.lastColumn = null;
+    this.memberships.clear();
+    this.disjunctive = false;
+    this.keysTracked = false;
+
+    ifThen(this.transaction() == null && conn != null,
         () -> conn.close());
   }
 
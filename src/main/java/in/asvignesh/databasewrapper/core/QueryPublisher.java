@@ -0,0 +1,244 @@
+package in.asvignesh.databasewrapper.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.sql2o.ResultSetIterable;
+
+/**
+ * Cold publisher over a database cursor. Every subscriber runs the query on its own cursor, rows
+ * are read only as they are requested, at most {@code batchSize} per turn on the executor, and the
+ * cursor and its connection are released on complete, error or cancel.
+ * <p>
+ * When the connection is shared, e.g. with the other statements of a transaction, each batch is
+ * read while holding its lock and emitted after releasing it.
+ * <p>
+ * On Java 9+ use {@code org.reactivestreams.FlowAdapters.toFlowPublisher} for a
+ * {@code java.util.concurrent.Flow.Publisher}.
+ */
+public class QueryPublisher<T> implements Publisher<T> {
+
+  public static final int DEFAULT_BATCH_SIZE = 128;
+
+  private final Executor executor;
+  private final int batchSize;
+  private final Supplier<ResultSetIterable<T>> cursor;
+  private final Consumer<T> onRow;
+  private final Lock lock;
+
+  /**
+   * @param executor executor reading the cursor
+   * @param batchSize maximum number of rows read per turn on the executor
+   * @param cursor opens the cursor, called once per subscriber
+   * @param onRow applied to each row before it is emitted, e.g. join loading, may be null
+   */
+  public QueryPublisher(Executor executor, int batchSize,
+      Supplier<ResultSetIterable<T>> cursor, Consumer<T> onRow) {
+    this(executor, batchSize, cursor, onRow, null);
+  }
+
+  /**
+   * @param lock held while the cursor is opened, read and closed, null when the connection is not
+   * shared
+   */
+  public QueryPublisher(Executor executor, int batchSize,
+      Supplier<ResultSetIterable<T>> cursor, Consumer<T> onRow, Lock lock) {
+    this.executor = executor;
+    this.batchSize = Math.max(batchSize, 1);
+    this.cursor = cursor;
+    this.onRow = onRow;
+    this.lock = lock;
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super T> subscriber) {
+    if (null == subscriber) {
+      throw new NullPointerException("subscriber not be null.");
+    }
+    RowSubscription subscription = new RowSubscription(subscriber);
+    subscriber.onSubscribe(subscription);
+  }
+
+  private class RowSubscription implements Subscription, Runnable {
+
+    private final Subscriber<? super T> subscriber;
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicBoolean done = new AtomicBoolean();
+
+    private volatile boolean cancelled;
+    private volatile Throwable invalidRequest;
+
+    // confined to the drain, which never runs concurrently with itself
+    private ResultSetIterable<T> rows;
+    private Iterator<T> iterator;
+
+    RowSubscription(Subscriber<? super T> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        invalidRequest = new IllegalArgumentException(
+            "Non-positive request " + n + " (reactive streams rule 3.9)");
+      } else {
+        demand.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE
+            : current + add);
+      }
+      this.schedule();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      this.schedule();
+    }
+
+    private void schedule() {
+      if (wip.getAndIncrement() == 0) {
+        executor.execute(this);
+      }
+    }
+
+    @Override
+    public void run() {
+      int missed = wip.get();
+      while (true) {
+        if (this.drain()) {
+          // batch is full while demand remains, give the executor thread back and continue later
+          executor.execute(this);
+          return;
+        }
+        missed = wip.addAndGet(-missed);
+        if (missed == 0) {
+          return;
+        }
+      }
+    }
+
+    /**
+     * @return true when the batch limit was reached with demand left
+     */
+    private boolean drain() {
+      if (done.get()) {
+        return false;
+      }
+      if (cancelled) {
+        this.terminate(null, false);
+        return false;
+      }
+      if (null != invalidRequest) {
+        this.terminate(invalidRequest, false);
+        return false;
+      }
+      List<T> batch = new ArrayList<>();
+      boolean exhausted = false;
+      Throwable failure = null;
+      this.lock();
+      try {
+        if (null == iterator) {
+          rows = cursor.get();
+          iterator = rows.iterator();
+        }
+        int wanted = (int) Math.min(demand.get(), batchSize);
+        while (batch.size() < wanted && iterator.hasNext()) {
+          T row = iterator.next();
+          if (null != onRow) {
+            onRow.accept(row);
+          }
+          batch.add(row);
+        }
+        exhausted = !iterator.hasNext();
+      } catch (Throwable e) {
+        failure = e;
+      } finally {
+        this.unlock();
+      }
+      if (null != failure) {
+        this.terminate(failure, false);
+        return false;
+      }
+      for (T row : batch) {
+        if (cancelled) {
+          return false;
+        }
+        demand.decrementAndGet();
+        if (!this.emit(row)) {
+          return false;
+        }
+      }
+      if (!cancelled && exhausted) {
+        this.terminate(null, true);
+        return false;
+      }
+      return batch.size() == batchSize && demand.get() > 0 && !cancelled;
+    }
+
+    /**
+     * A subscriber throwing from onNext broke rule 2.13, the subscription is cancelled without
+     * signalling it anything further.
+     *
+     * @return false when the subscriber threw
+     */
+    private boolean emit(T row) {
+      try {
+        subscriber.onNext(row);
+        return true;
+      } catch (Throwable e) {
+        cancelled = true;
+        this.terminate(null, false);
+        return false;
+      }
+    }
+
+    private void terminate(Throwable error, boolean complete) {
+      if (!done.compareAndSet(false, true)) {
+        return;
+      }
+      this.lock();
+      try {
+        if (null != rows) {
+          rows.close();
+        }
+      } catch (Exception e) {
+        error = null == error ? e : error;
+      } finally {
+        rows = null;
+        iterator = null;
+        this.unlock();
+      }
+      if (cancelled) {
+        return;
+      }
+      if (null != error) {
+        subscriber.onError(error);
+      } else if (complete) {
+        subscriber.onComplete();
+      }
+    }
+
+    private void lock() {
+      if (null != lock) {
+        lock.lock();
+      }
+    }
+
+    private void unlock() {
+      if (null != lock) {
+        lock.unlock();
+      }
+    }
+  }
+
+}
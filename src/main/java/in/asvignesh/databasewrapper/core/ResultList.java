@@ -4,14 +4,17 @@ package in.asvignesh.databasewrapper.core;
 import in.asvignesh.databasewrapper.DataModel;
 import in.asvignesh.databasewrapper.page.Page;
 import in.asvignesh.databasewrapper.page.PageRow;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import org.reactivestreams.Publisher;
 
 public class ResultList<T> {
 
   private final Class<T> type;
   private final String sql;
   private final Object[] params;
+  private Duration cacheTtl;
 
   public ResultList(Class<T> type, String sql, Object[] params) {
     this.type = type;
@@ -19,25 +22,53 @@ public class ResultList<T> {
     this.params = params;
   }
 
+  /**
+   * Serve the results from the result cache of the database, see {@link Query#cached(Duration)}.
+   *
+   * @param ttl how long a result may be served
+   * @return ResultList
+   */
+  public ResultList<T> cached(Duration ttl) {
+    this.cacheTtl = ttl;
+    return this;
+  }
+
   public T one() {
-    return new Query<>().useSQL().queryOne(type, sql, params);
+    return this.query().queryOne(type, sql, params);
   }
 
   public List<T> all() {
-    return new Query<>().useSQL().queryList(type, sql, params);
+    return this.query().queryList(type, sql, params);
+  }
+
+  /**
+   * Stream the rows to subscribers as they request them, see {@link QueryPublisher}.
+   *
+   * @return Publisher
+   */
+  public Publisher<T> publisher() {
+    return this.publisher(QueryPublisher.DEFAULT_BATCH_SIZE);
+  }
+
+  public Publisher<T> publisher(int batchSize) {
+    return this.query().publisher(type, sql, params, batchSize);
   }
 
   public List<Map<String, Object>> maps() {
-    return new Query<>().useSQL().queryListMap(sql, params);
+    return this.query().queryListMap(sql, params);
   }
 
   public <S extends DataModel> Page<S> page(PageRow pageRow) {
     Class<S> modelType = (Class<S>) type;
-    return new Query<>(modelType).useSQL().page(sql, params, pageRow);
+    return new Query<>(modelType).useSQL().cached(cacheTtl).page(sql, params, pageRow);
   }
 
   public <S extends DataModel> Page<S> page(int page, int limit) {
     return this.page(new PageRow(page, limit));
   }
 
+  private <S extends DataModel> Query<S> query() {
+    return new Query<S>().useSQL().cached(cacheTtl);
+  }
+
 }
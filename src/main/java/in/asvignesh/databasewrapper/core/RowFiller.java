@@ -0,0 +1,216 @@
+package in.asvignesh.databasewrapper.core;
+
+import static in.asvignesh.databasewrapper.core.DatabaseCache.computeModelColumnMappings;
+import static in.asvignesh.databasewrapper.core.DatabaseCache.computeModelFields;
+import static in.asvignesh.databasewrapper.core.DatabaseCache.getSetterName;
+
+import com.blade.reflectasm.MethodAccess;
+import in.asvignesh.databasewrapper.exception.DatabaseWrapperException;
+import in.asvignesh.databasewrapper.utils.DatabaseUtils;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.sql2o.converters.Converter;
+import org.sql2o.converters.ConverterException;
+import org.sql2o.quirks.Quirks;
+
+/**
+ * Fills one model instance from each row, see {@link Query#forEachReusing}. The setters are
+ * resolved once per result set, and the common column types are read with typed getters instead
+ * of the converters.
+ * <p>
+ * Setters of long, int, double and boolean fields are called through typed method handles, so
+ * their values are not boxed. Wrapper fields hold references and take a box per value outside of
+ * the small-value caches.
+ */
+class RowFiller<T> {
+
+  private static final List<Class<?>> TYPED = Arrays.asList(String.class, Long.class, long.class,
+      Integer.class, int.class, Double.class, double.class, Boolean.class, boolean.class,
+      BigDecimal.class, Timestamp.class);
+
+  private static final List<Class<?>> PRIMITIVES = Arrays.asList(long.class, int.class,
+      double.class, boolean.class);
+
+  private static final Map<Class<?>, Object> DEFAULTS = new HashMap<>();
+
+  static {
+    DEFAULTS.put(long.class, 0L);
+    DEFAULTS.put(int.class, 0);
+    DEFAULTS.put(double.class, 0D);
+    DEFAULTS.put(float.class, 0F);
+    DEFAULTS.put(short.class, (short) 0);
+    DEFAULTS.put(byte.class, (byte) 0);
+    DEFAULTS.put(char.class, '\0');
+    DEFAULTS.put(boolean.class, false);
+  }
+
+  private final Class<T> modelClass;
+  private final Quirks quirks;
+  private final T model;
+  private final Object[] argument = new Object[1];
+  private MethodAccess access;
+  private int[] columns;
+  private int[] setters;
+  private Class<?>[] types;
+  private Converter<?>[] converters;
+  private MethodHandle[] handles;
+
+  RowFiller(Class<T> modelClass, Quirks quirks) {
+    this.modelClass = modelClass;
+    this.quirks = quirks;
+    try {
+      Constructor<T> constructor = modelClass.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      this.model = constructor.newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new DatabaseWrapperException("Create " + modelClass.getName() + " error", e);
+    }
+  }
+
+  /**
+   * @param resultSet result set positioned on a row
+   * @return the same model instance holding the row
+   */
+  T fill(ResultSet resultSet) throws SQLException {
+    if (null == setters) {
+      this.plan(resultSet.getMetaData());
+    }
+    for (int i = 0; i < setters.length; i++) {
+      if (null != handles[i]) {
+        this.setPrimitive(resultSet, i);
+        continue;
+      }
+      argument[0] = this.read(resultSet, i);
+      if (null == argument[0] && types[i].isPrimitive()) {
+        argument[0] = DEFAULTS.get(types[i]);
+      }
+      access.invoke(model, setters[i], argument);
+    }
+    return model;
+  }
+
+  private void plan(ResultSetMetaData metaData) throws SQLException {
+    Map<String, String> mappings = computeModelColumnMappings(modelClass);
+    Map<String, Field> fields = new HashMap<>();
+    for (Field field : computeModelFields(modelClass)) {
+      fields.put(field.getName(), field);
+    }
+    this.access = DatabaseCache.METHOD_ACCESS_MAP.computeIfAbsent(modelClass,
+        type -> MethodAccess.get(type, Arrays.asList(type.getDeclaredMethods())));
+    int count = metaData.getColumnCount();
+    int[] columns = new int[count];
+    int[] setters = new int[count];
+    Class<?>[] types = new Class<?>[count];
+    MethodHandle[] handles = new MethodHandle[count];
+    int planned = 0;
+    for (int column = 1; column <= count; column++) {
+      String label = metaData.getColumnLabel(column);
+      String fieldName = mappings.getOrDefault(label, mappings.getOrDefault(
+          label.toLowerCase(Locale.ROOT), DatabaseUtils.toCamelName(label.toLowerCase(Locale.ROOT))));
+      Field field = fields.get(fieldName);
+      if (null == field) {
+        continue;
+      }
+      columns[planned] = column;
+      setters[planned] = access.getIndex(getSetterName(fieldName), field.getType());
+      handles[planned] = PRIMITIVES.contains(field.getType())
+          ? this.handle(getSetterName(fieldName), field.getType()) : null;
+      types[planned++] = field.getType();
+    }
+    this.columns = Arrays.copyOf(columns, planned);
+    this.types = Arrays.copyOf(types, planned);
+    this.converters = new Converter<?>[planned];
+    for (int i = 0; i < planned; i++) {
+      converters[i] = TYPED.contains(types[i]) ? null : quirks.converterOf(types[i]);
+    }
+    this.setters = Arrays.copyOf(setters, planned);
+    this.handles = Arrays.copyOf(handles, planned);
+  }
+
+  /**
+   * Setter handle typed (Object, primitive) void, so that invokeExact takes the primitive value.
+   */
+  private MethodHandle handle(String setterName, Class<?> type) {
+    try {
+      Method setter = modelClass.getDeclaredMethod(setterName, type);
+      setter.setAccessible(true);
+      return MethodHandles.lookup().unreflect(setter)
+          .asType(MethodType.methodType(void.class, Object.class, type));
+    } catch (ReflectiveOperationException e) {
+      throw new DatabaseWrapperException("Resolve " + setterName + " error", e);
+    }
+  }
+
+  /**
+   * Read a long, int, double or boolean column and pass it to the setter unboxed, SQL NULL reads
+   * as 0 or false.
+   */
+  private void setPrimitive(ResultSet resultSet, int i) throws SQLException {
+    Object target = model;
+    MethodHandle handle = handles[i];
+    int column = columns[i];
+    Class<?> type = types[i];
+    try {
+      if (type == long.class) {
+        handle.invokeExact(target, resultSet.getLong(column));
+      } else if (type == int.class) {
+        handle.invokeExact(target, resultSet.getInt(column));
+      } else if (type == double.class) {
+        handle.invokeExact(target, resultSet.getDouble(column));
+      } else {
+        handle.invokeExact(target, resultSet.getBoolean(column));
+      }
+    } catch (SQLException | RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new DatabaseWrapperException("Set column " + column + " error", e);
+    }
+  }
+
+  private Object read(ResultSet resultSet, int i) throws SQLException {
+    int column = columns[i];
+    Class<?> type = types[i];
+    Object value;
+    if (type == String.class) {
+      return resultSet.getString(column);
+    } else if (type == Long.class || type == long.class) {
+      value = resultSet.getLong(column);
+    } else if (type == Integer.class || type == int.class) {
+      value = resultSet.getInt(column);
+    } else if (type == Double.class || type == double.class) {
+      value = resultSet.getDouble(column);
+    } else if (type == Boolean.class || type == boolean.class) {
+      value = resultSet.getBoolean(column);
+    } else if (type == BigDecimal.class) {
+      return resultSet.getBigDecimal(column);
+    } else if (type == Timestamp.class) {
+      return resultSet.getTimestamp(column);
+    } else {
+      Object raw = resultSet.getObject(column);
+      if (null == raw || null == converters[i]) {
+        return raw;
+      }
+      try {
+        return converters[i].convert(raw);
+      } catch (ConverterException e) {
+        throw new DatabaseWrapperException("Convert column " + column + " error", e);
+      }
+    }
+    return resultSet.wasNull() ? null : value;
+  }
+
+}
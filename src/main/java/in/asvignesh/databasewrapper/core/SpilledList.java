@@ -0,0 +1,230 @@
+package in.asvignesh.databasewrapper.core;
+
+import in.asvignesh.databasewrapper.core.cache.ModelState;
+import in.asvignesh.databasewrapper.core.cache.RowCodec;
+import in.asvignesh.databasewrapper.exception.DatabaseWrapperException;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Result list whose rows beyond the in-heap budget live in a memory-mapped temp file, see
+ * {@link in.asvignesh.databasewrapper.DatabaseWrapper#spillAfter(int, long)}. Spilled rows are
+ * decoded on every access, so each read returns a new instance and changes to it are not kept.
+ * The list is read-only; the mapping is released when the list is garbage collected.
+ */
+public class SpilledList<T> extends AbstractList<T> implements RandomAccess {
+
+  private static final long SEGMENT_BYTES = 1L << 30;
+
+  private final Class<T> type;
+  private final List<T> head;
+  private final long[] offsets;
+  private final int spilled;
+  private final long[] segmentStarts;
+  private final ByteBuffer[] segments;
+  private final Map<Integer, T> kept;
+  private final long bytes;
+
+  private SpilledList(Class<T> type, List<T> head, SpillFile<T> file) {
+    this.type = type;
+    this.head = head;
+    this.offsets = file.offsets;
+    this.spilled = file.count;
+    this.segmentStarts = file.segmentStarts();
+    this.segments = file.segments;
+    this.kept = file.kept;
+    this.bytes = file.position;
+  }
+
+  /**
+   * Read the rows, keeping them on the heap until either budget is exceeded.
+   *
+   * @param type model class type
+   * @param rows rows as they are fetched
+   * @param maxRows rows kept on the heap, 0 for no limit
+   * @param maxBytes estimated bytes kept on the heap, 0 for no limit
+   * @param directory directory of the temp file, null for the default one
+   * @return the rows, a SpilledList when they did not fit
+   */
+  public static <T> List<T> collect(Class<T> type, Iterable<T> rows, int maxRows, long maxBytes,
+      Path directory) {
+    List<T> head = new ArrayList<>();
+    long heapBytes = 0;
+    SpillFile<T> file = null;
+    Iterator<T> iterator = rows.iterator();
+    try {
+      while (iterator.hasNext()) {
+        T row = iterator.next();
+        if (null == file) {
+          boolean fits = (maxRows <= 0 || head.size() < maxRows)
+              && (maxBytes <= 0 || heapBytes < maxBytes);
+          if (fits) {
+            head.add(row);
+            heapBytes += maxBytes > 0 ? estimateBytes(ModelState.capture(row)) : 0;
+            continue;
+          }
+          file = new SpillFile<>(directory);
+        }
+        file.append(row);
+      }
+      return null == file ? head : new SpilledList<>(type, head, file.finish());
+    } catch (IOException e) {
+      throw new DatabaseWrapperException("Spill rows error", e);
+    } finally {
+      if (null != file) {
+        file.discard();
+      }
+    }
+  }
+
+  @Override
+  public T get(int index) {
+    if (index < 0 || index >= this.size()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size());
+    }
+    if (index < head.size()) {
+      return head.get(index);
+    }
+    int row = index - head.size();
+    long offset = offsets[row];
+    if (offset < 0) {
+      return kept.get(row);
+    }
+    int segment = Arrays.binarySearch(segmentStarts, offset);
+    segment = segment >= 0 ? segment : -segment - 2;
+    ByteBuffer buffer = segments[segment].duplicate();
+    buffer.position((int) (offset - segmentStarts[segment]));
+    return ModelState.restore(type, RowCodec.readRow(buffer));
+  }
+
+  @Override
+  public int size() {
+    return head.size() + spilled;
+  }
+
+  /**
+   * Rows held in the temp file.
+   */
+  public int spilledRows() {
+    return spilled;
+  }
+
+  public long spilledBytes() {
+    return bytes;
+  }
+
+  /**
+   * Rough heap footprint of a captured row.
+   */
+  static long estimateBytes(Object[] state) {
+    long bytes = 16 + 8L * state.length;
+    for (Object value : state) {
+      if (value instanceof String) {
+        bytes += 40 + 2L * ((String) value).length();
+      } else if (value instanceof byte[]) {
+        bytes += 16 + ((byte[]) value).length;
+      } else if (null != value) {
+        bytes += 24;
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Temp file the rows are appended to, mapped once complete.
+   */
+  private static class SpillFile<T> {
+
+    private final Path path;
+    private final FileChannel channel;
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream row = new ByteArrayOutputStream(256);
+    private final DataOutputStream rowOut = new DataOutputStream(row);
+    private final List<Long> starts = new ArrayList<>();
+    private final Map<Integer, T> kept = new HashMap<>();
+    private long[] offsets = new long[1024];
+    private ByteBuffer[] segments;
+    private int count;
+    private long position;
+
+    SpillFile(Path directory) throws IOException {
+      Path dir = null != directory ? directory : Paths.get(System.getProperty("java.io.tmpdir"));
+      this.path = Files.createTempFile(dir, "databasewrapper-spill-", ".bin");
+      this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      OutputStream stream = Channels.newOutputStream(channel);
+      this.out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+      this.starts.add(0L);
+    }
+
+    void append(T model) throws IOException {
+      if (count == offsets.length) {
+        offsets = Arrays.copyOf(offsets, count * 2);
+      }
+      Object[] state = ModelState.capture(model);
+      if (!RowCodec.encodable(state)) {
+        kept.put(count, model);
+        offsets[count++] = -1;
+        return;
+      }
+      row.reset();
+      RowCodec.writeRow(rowOut, state);
+      // a row never straddles two mappings
+      if (position + row.size() - starts.get(starts.size() - 1) > SEGMENT_BYTES) {
+        starts.add(position);
+      }
+      row.writeTo(out);
+      offsets[count++] = position;
+      position += row.size();
+    }
+
+    SpillFile<T> finish() throws IOException {
+      out.flush();
+      segments = new ByteBuffer[starts.size()];
+      for (int i = 0; i < segments.length; i++) {
+        long end = i + 1 < segments.length ? starts.get(i + 1) : position;
+        segments[i] = channel.map(MapMode.READ_ONLY, starts.get(i), end - starts.get(i));
+      }
+      return this;
+    }
+
+    long[] segmentStarts() {
+      return starts.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Close and remove the file, mapped segments stay readable.
+     */
+    void discard() {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        // nothing left to write
+      }
+      try {
+        Files.deleteIfExists(path);
+      } catch (IOException e) {
+        path.toFile().deleteOnExit();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,335 @@
+package in.asvignesh.databasewrapper.core;
+
+import static in.asvignesh.databasewrapper.utils.Functions.ifThen;
+import static in.asvignesh.databasewrapper.utils.Functions.ifThrow;
+
+import in.asvignesh.databasewrapper.core.cache.ResultCache;
+import in.asvignesh.databasewrapper.exception.DatabaseWrapperException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+
+/**
+ * A transaction as a plain object. It can be handed to other threads, bound to a query with
+ * {@link Query#in(Transaction)} or made current for a block with {@link #run(Runnable)}. Each
+ * database joins the transaction on first use; statements from different threads take turns on
+ * its connections. The thread-local current transaction used by
+ * {@link in.asvignesh.databasewrapper.DatabaseWrapper#atomic(Runnable)} is a thin adapter on top.
+ * <p>
+ * Rows loaded by primary key are kept in an identity map while the transaction runs, so that
+ * loading the same row again yields the same instance.
+ * <p>
+ * Locks are {@link ReentrantLock}s rather than monitors, so a virtual thread blocked in JDBC while
+ * holding one does not pin its carrier thread.
+ */
+public class Transaction {
+
+  private static final ThreadLocal<Transaction> CURRENT = new ThreadLocal<>();
+
+  private final Map<Sql2o, Connection> connections = new LinkedHashMap<>(4);
+  private final ReentrantLock lock = new ReentrantLock();
+  private final List<Runnable> afterCommit = new ArrayList<>(4);
+  private final Set<Class<?>> written = new HashSet<>(4);
+  private final Set<String> writtenTables = new HashSet<>(4);
+  private boolean writtenUnknown;
+  private final Map<Class<?>, Map<Object, Object>> identities = new HashMap<>(4);
+  private volatile boolean completed;
+
+  /**
+   * Start a new transaction, it is not bound to any thread.
+   *
+   * @return Transaction
+   */
+  public static Transaction begin() {
+    return new Transaction();
+  }
+
+  /**
+   * The transaction bound to the current thread.
+   *
+   * @return Transaction, null when there is none
+   */
+  public static Transaction current() {
+    return CURRENT.get();
+  }
+
+  static void bind(Transaction transaction) {
+    CURRENT.set(transaction);
+  }
+
+  static void unbind() {
+    CURRENT.remove();
+  }
+
+  /**
+   * Run code with this transaction as the current one of the calling thread.
+   *
+   * @param runnable the code snippet to execute.
+   */
+  public void run(Runnable runnable) {
+    this.call(() -> {
+      runnable.run();
+      return null;
+    });
+  }
+
+  /**
+   * Run code with this transaction as the current one of the calling thread.
+   *
+   * @param supplier the code snippet to execute.
+   * @return result of the supplier
+   */
+  public <R> R call(Supplier<R> supplier) {
+    Transaction previous = CURRENT.get();
+    CURRENT.set(this);
+    try {
+      return supplier.get();
+    } finally {
+      ifThen(null == previous, CURRENT::remove, () -> CURRENT.set(previous));
+    }
+  }
+
+  /**
+   * Wrap code so that it runs in this transaction on whatever thread executes it.
+   *
+   * @param runnable the code snippet to execute.
+   * @return Runnable
+   */
+  public Runnable wrap(Runnable runnable) {
+    return () -> this.run(runnable);
+  }
+
+  public void commit() {
+    List<Runnable> hooks;
+    lock.lock();
+    try {
+      this.checkActive();
+      connections.values().forEach(Connection::commit);
+      connections.clear();
+      completed = true;
+      hooks = new ArrayList<>(afterCommit);
+      this.discard();
+    } finally {
+      lock.unlock();
+    }
+    hooks.forEach(Runnable::run);
+  }
+
+  public void rollback() {
+    lock.lock();
+    try {
+      connections.values().forEach(Connection::rollback);
+      connections.clear();
+      completed = true;
+      this.discard();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Release the connections, a transaction that was neither committed nor rolled back is rolled
+   * back.
+   */
+  public void close() {
+    lock.lock();
+    try {
+      List<Connection> open = new ArrayList<>(connections.values());
+      connections.clear();
+      completed = true;
+      this.discard();
+      open.forEach(connection -> ifThen(connection.isRollbackOnClose(), connection::close));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public boolean isCompleted() {
+    return completed;
+  }
+
+  /**
+   * Run code once this transaction has committed, it is dropped on rollback.
+   *
+   * @param runnable the code snippet to execute.
+   */
+  public void afterCommit(Runnable runnable) {
+    lock.lock();
+    try {
+      this.checkActive();
+      afterCommit.add(runnable);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Whether a statement of this transaction changed rows of the model, its cached rows are then
+   * not visible to the transaction.
+   */
+  public boolean hasWritten(Class<?> modelClass) {
+    lock.lock();
+    try {
+      return written.contains(modelClass);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * The instance of a row already loaded in this transaction.
+   */
+  @SuppressWarnings("unchecked")
+  <T> T identity(Class<T> modelClass, Object id) {
+    lock.lock();
+    try {
+      Map<Object, Object> models = identities.get(modelClass);
+      return null == models ? null : (T) models.get(id);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Register a loaded row.
+   *
+   * @return the instance loaded before for the same primary key, else the given model
+   */
+  @SuppressWarnings("unchecked")
+  <T> T identify(Class<?> modelClass, Object id, T model) {
+    lock.lock();
+    try {
+      Object known = identities.computeIfAbsent(modelClass, type -> new HashMap<>())
+          .putIfAbsent(id, model);
+      return null == known ? model : (T) known;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Drop a row from the identity map, all rows of the model when id is null.
+   */
+  void forget(Class<?> modelClass, Object id) {
+    lock.lock();
+    try {
+      Map<Object, Object> models = identities.get(modelClass);
+      ifThen(null != models, () -> ifThen(null == id, models::clear, () -> models.remove(id)));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Drop the rows of the models stored in the tables, of every model when no table is named.
+   *
+   * @param tables normalized table names
+   * @param tableName table of a model class
+   */
+  void forget(Set<String> tables, Function<Class<?>, String> tableName) {
+    lock.lock();
+    try {
+      identities.forEach((type, models) -> ifThen(tables.isEmpty()
+          || tables.contains(ResultCache.normalize(tableName.apply(type))), models::clear));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void written(Class<?> modelClass) {
+    lock.lock();
+    try {
+      written.add(modelClass);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Record the tables a statement wrote, empty when they are not known.
+   */
+  void writtenTables(Set<String> tables) {
+    lock.lock();
+    try {
+      writtenTables.addAll(tables);
+      writtenUnknown |= tables.isEmpty();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Whether a statement of this transaction may have written the table.
+   */
+  boolean hasWrittenTable(String table) {
+    lock.lock();
+    try {
+      return writtenUnknown || writtenTables.contains(table);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Take the connection of a database for one statement, every acquire must be followed by
+   * {@link #release()}.
+   */
+  Connection acquire(Sql2o database) {
+    lock.lock();
+    try {
+      this.checkActive();
+      return connections.computeIfAbsent(database, Sql2o::beginTransaction);
+    } catch (RuntimeException e) {
+      lock.unlock();
+      throw e;
+    }
+  }
+
+  void release() {
+    lock.unlock();
+  }
+
+  /**
+   * The connection of a database without taking turns, for cursors that outlive one call. They
+   * take turns with {@link #lock()} around each read instead.
+   */
+  Connection connection(Sql2o database) {
+    lock.lock();
+    try {
+      this.checkActive();
+      return connections.computeIfAbsent(database, Sql2o::beginTransaction);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Lock the statements of this transaction take turns on.
+   */
+  Lock lock() {
+    return lock;
+  }
+
+  private void discard() {
+    afterCommit.clear();
+    written.clear();
+    writtenTables.clear();
+    writtenUnknown = false;
+    identities.clear();
+  }
+
+  private void checkActive() {
+    ifThrow(completed, new DatabaseWrapperException("Transaction already completed."));
+  }
+
+}
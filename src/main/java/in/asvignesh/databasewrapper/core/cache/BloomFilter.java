@@ -0,0 +1,106 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free bloom filter. Keys hash by their string form, lower-cased and without trailing
+ * spaces, so that keys a database compares as equal (5 and "5", case-insensitive collations) are
+ * never told apart.
+ */
+public class BloomFilter {
+
+  private final AtomicLongArray bits;
+  private final long bitSize;
+  private final int hashes;
+
+  private BloomFilter(long bitSize, int hashes) {
+    this.bits = new AtomicLongArray((int) ((bitSize + 63) >>> 6));
+    this.bitSize = bitSize;
+    this.hashes = hashes;
+  }
+
+  /**
+   * @param expectedKeys expected number of keys
+   * @param fpp target false positive probability
+   * @param maxBytes upper bound of the bit array
+   * @return BloomFilter
+   */
+  public static BloomFilter create(long expectedKeys, double fpp, long maxBytes) {
+    long keys = Math.max(expectedKeys, 1);
+    double ln2 = Math.log(2);
+    long optimal = (long) Math.ceil(-keys * Math.log(fpp) / (ln2 * ln2));
+    long limit = Math.min(maxBytes * 8, (long) Integer.MAX_VALUE << 6);
+    long bitSize = Math.max(64, Math.min(optimal, limit));
+    int hashes = (int) Math.max(1, Math.min(16, Math.round((double) bitSize / keys * ln2)));
+    return new BloomFilter(bitSize, hashes);
+  }
+
+  public void add(Object key) {
+    long h1 = hash(key);
+    long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+    for (int i = 0; i < hashes; i++) {
+      long bit = Long.remainderUnsigned(h1 + i * h2, bitSize);
+      int word = (int) (bit >>> 6);
+      long mask = 1L << bit;
+      long current = bits.get(word);
+      while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+        current = bits.get(word);
+      }
+    }
+  }
+
+  public boolean mightContain(Object key) {
+    long h1 = hash(key);
+    long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+    for (int i = 0; i < hashes; i++) {
+      long bit = Long.remainderUnsigned(h1 + i * h2, bitSize);
+      if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public long bitSize() {
+    return bitSize;
+  }
+
+  public int hashes() {
+    return hashes;
+  }
+
+  /**
+   * @param keys number of keys added
+   * @return expected false positive probability at that many keys
+   */
+  public double expectedFpp(long keys) {
+    return Math.pow(1 - Math.exp(-(double) hashes * keys / bitSize), hashes);
+  }
+
+  private static long hash(Object key) {
+    String text = key instanceof BigDecimal
+        ? ((BigDecimal) key).stripTrailingZeros().toPlainString() : key.toString();
+    int end = text.length();
+    while (end > 0 && text.charAt(end - 1) == ' ') {
+      end--;
+    }
+    text = text.substring(0, end).toLowerCase(Locale.ROOT);
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < text.length(); i++) {
+      hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+    }
+    return mix(hash);
+  }
+
+  private static long mix(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return key;
+  }
+
+}
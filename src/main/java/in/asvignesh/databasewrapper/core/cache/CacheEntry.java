@@ -0,0 +1,21 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+/**
+ * A cached model state with its expiry.
+ */
+class CacheEntry {
+
+  final Object[] state;
+  final long expiresAt;
+  volatile boolean referenced;
+
+  CacheEntry(Object[] state, long expiresAt) {
+    this.state = state;
+    this.expiresAt = expiresAt;
+  }
+
+  boolean isExpired(long now) {
+    return expiresAt != 0 && now >= expiresAt;
+  }
+
+}
@@ -0,0 +1,258 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import in.asvignesh.databasewrapper.core.DatabaseCache;
+import in.asvignesh.databasewrapper.exception.DatabaseWrapperException;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.function.Function;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Warm-start files of the entity caches and replicas, so that a restarted process does not begin
+ * with empty caches. The file is written aside and moved in place, and read back through a
+ * read-only memory map.
+ * <p>
+ * Each model section carries a fingerprint of the model fields and is skipped when the model has
+ * changed since. Cache entries keep their expiry and are dropped once expired, entries that never
+ * expire are not read back since nothing tells how stale they are; replica rows are served only
+ * until the reload started on warm start completes.
+ */
+@UtilityClass
+public class CacheFiles {
+
+  private static final int MAGIC = 0x44425743;
+  private static final int FORMAT = 1;
+  private static final byte END = 0;
+  private static final byte ENTITIES = 1;
+  private static final byte REPLICA = 2;
+
+  /**
+   * @param file file to write
+   * @param caches entity caches
+   * @param replicas replicas
+   * @return number of cache entries and replica rows written
+   */
+  public static int save(Path file, EntityCaches caches, Replicas replicas) {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    int[] count = new int[1];
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT);
+      out.writeLong(System.currentTimeMillis());
+      caches.forEach(cache -> count[0] += writeSection(out, ENTITIES, cache.modelClass(),
+          body -> writeEntities(body, cache)));
+      replicas.forEach(replica -> count[0] += writeSection(out, REPLICA, replica.modelClass(),
+          body -> writeReplica(body, replica)));
+      out.writeByte(END);
+    } catch (IOException e) {
+      throw new DatabaseWrapperException("Write cache file " + file + " error", e);
+    }
+    try {
+      try {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      throw new DatabaseWrapperException("Write cache file " + file + " error", e);
+    }
+    return count[0];
+  }
+
+  /**
+   * @param file file written by {@link #save}
+   * @param maxAge file age above which nothing is loaded, null for no limit
+   * @param caches entity cache of a model class, null when not cached
+   * @param replicas replica of a model class, null when not replicated
+   * @return number of cache entries and replica rows loaded, 0 when the file is missing, too old or
+   * not a cache file
+   */
+  public static int load(Path file, Duration maxAge, Function<Class<?>, EntityCache<?>> caches,
+      Function<Class<?>, Replica<?>> replicas) {
+    if (!Files.isRegularFile(file)) {
+      return 0;
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer in = channel.map(MapMode.READ_ONLY, 0, channel.size());
+      if (in.remaining() < 16 || in.getInt() != MAGIC || in.getInt() != FORMAT) {
+        return 0;
+      }
+      long savedAt = in.getLong();
+      if (null != maxAge && System.currentTimeMillis() - savedAt > maxAge.toMillis()) {
+        return 0;
+      }
+      int count = 0;
+      while (in.hasRemaining()) {
+        byte kind = in.get();
+        if (kind == END) {
+          break;
+        }
+        String className = (String) RowCodec.readValue(in);
+        long fingerprint = in.getLong();
+        int length = in.getInt();
+        ByteBuffer body = in.slice();
+        body.limit(length);
+        in.position(in.position() + length);
+
+        Class<?> type = modelClass(className);
+        if (null == type || fingerprint(type) != fingerprint) {
+          continue;
+        }
+        try {
+          if (kind == ENTITIES) {
+            count += readEntities(body, caches.apply(type));
+          } else if (kind == REPLICA) {
+            count += readReplica(body, replicas.apply(type));
+          }
+        } catch (RuntimeException e) {
+          // a section that cannot be read back is left to the database
+        }
+      }
+      return count;
+    } catch (IOException | RuntimeException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Hash of the field names and types of a model, a section is only read back into the same.
+   */
+  static long fingerprint(Class<?> modelClass) {
+    long hash = 0xcbf29ce484222325L;
+    StringBuilder shape = new StringBuilder(DatabaseCache.getPKColumn(modelClass));
+    for (Field field : DatabaseCache.computeModelFields(modelClass)) {
+      shape.append(';').append(field.getName()).append(':').append(field.getType().getName());
+    }
+    for (byte b : shape.toString().getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b;
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  private static int writeSection(DataOutputStream out, byte kind, Class<?> modelClass,
+      SectionWriter writer) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      int count = writer.write(new DataOutputStream(bytes));
+      if (count == 0) {
+        return 0;
+      }
+      out.writeByte(kind);
+      RowCodec.writeValue(out, modelClass.getName());
+      out.writeLong(fingerprint(modelClass));
+      out.writeInt(bytes.size());
+      bytes.writeTo(out);
+      return count;
+    } catch (IOException e) {
+      throw new DatabaseWrapperException("Write cache file error", e);
+    }
+  }
+
+  private static int writeEntities(DataOutputStream out, EntityCache<?> cache)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream entries = new DataOutputStream(bytes);
+    int[] count = new int[1];
+    IOException[] failure = new IOException[1];
+    cache.forEach((id, state, expiresAt) -> {
+      if (null != failure[0] || !RowCodec.encodable(id) || !RowCodec.encodable(state)) {
+        return;
+      }
+      try {
+        RowCodec.writeValue(entries, id);
+        entries.writeLong(expiresAt);
+        RowCodec.writeRow(entries, state);
+        count[0]++;
+      } catch (IOException e) {
+        failure[0] = e;
+      }
+    });
+    if (null != failure[0]) {
+      throw failure[0];
+    }
+    out.writeInt(count[0]);
+    bytes.writeTo(out);
+    return count[0];
+  }
+
+  private static int writeReplica(DataOutputStream out, Replica<?> replica) throws IOException {
+    ReplicaSnapshot<?> snapshot = replica.current();
+    if (null == snapshot) {
+      return 0;
+    }
+    Object[][] rows = snapshot.rows();
+    for (Object[] row : rows) {
+      if (!RowCodec.encodable(row)) {
+        return 0;
+      }
+    }
+    out.writeLong(replica.loadedAt());
+    out.writeInt(rows.length);
+    for (Object[] row : rows) {
+      RowCodec.writeRow(out, row);
+    }
+    return rows.length;
+  }
+
+  private static int readEntities(ByteBuffer in, EntityCache<?> cache) {
+    if (null == cache) {
+      return 0;
+    }
+    long generation = cache.generation();
+    int entries = in.getInt();
+    int count = 0;
+    for (int i = 0; i < entries; i++) {
+      Object id = RowCodec.readValue(in);
+      long expiresAt = in.getLong();
+      Object[] state = RowCodec.readRow(in);
+      if (expiresAt > 0) {
+        cache.restore(id, state, expiresAt, generation);
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static int readReplica(ByteBuffer in, Replica<?> replica) {
+    if (null == replica) {
+      return 0;
+    }
+    long loadedAt = in.getLong();
+    Object[][] rows = new Object[in.getInt()][];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = RowCodec.readRow(in);
+    }
+    replica.warm(rows, loadedAt);
+    return rows.length;
+  }
+
+  private static Class<?> modelClass(String className) {
+    try {
+      return Class.forName(className, false, Thread.currentThread().getContextClassLoader());
+    } catch (ClassNotFoundException | LinkageError e) {
+      return null;
+    }
+  }
+
+  private interface SectionWriter {
+
+    int write(DataOutputStream out) throws IOException;
+  }
+
+}
@@ -0,0 +1,72 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one cache.
+ */
+public class CacheStats {
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder puts = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+
+  void hit() {
+    hits.increment();
+  }
+
+  void miss() {
+    misses.increment();
+  }
+
+  void put() {
+    puts.increment();
+  }
+
+  void eviction() {
+    evictions.increment();
+  }
+
+  void invalidation() {
+    invalidations.increment();
+  }
+
+  public long hits() {
+    return hits.sum();
+  }
+
+  public long misses() {
+    return misses.sum();
+  }
+
+  public long puts() {
+    return puts.sum();
+  }
+
+  public long evictions() {
+    return evictions.sum();
+  }
+
+  public long invalidations() {
+    return invalidations.sum();
+  }
+
+  /**
+   * @return hits / (hits + misses), 0 before the first lookup
+   */
+  public double hitRate() {
+    long hit = hits.sum();
+    long total = hit + misses.sum();
+    return total == 0 ? 0 : (double) hit / total;
+  }
+
+  @Override
+  public String toString() {
+    return "CacheStats(hits=" + hits() + ", misses=" + misses() + ", hitRate=" + hitRate()
+        + ", puts=" + puts() + ", evictions=" + evictions() + ", invalidations="
+        + invalidations() + ")";
+  }
+
+}
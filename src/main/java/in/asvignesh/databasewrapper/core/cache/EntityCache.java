@@ -0,0 +1,210 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import static in.asvignesh.databasewrapper.utils.Functions.ifThen;
+
+import in.asvignesh.databasewrapper.annotation.Cacheable;
+import in.asvignesh.databasewrapper.core.DatabaseCache;
+import java.lang.reflect.Field;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rows of one {@link Cacheable} model by primary key. Models are stored as captured field values
+ * and every read returns a new instance, so callers may modify what they get.
+ * <p>
+ * Numeric primary keys go to a primitive long-keyed store, other keys to a concurrent map.
+ * <p>
+ * A row read from the database is only put if no invalidation happened since the read started
+ * (see {@link #generation()}), so a read racing a committed write cannot bring the old row back.
+ */
+public class EntityCache<T> {
+
+  private final Class<T> modelClass;
+  private final int maxSize;
+  private final long ttlMillis;
+  private final CacheStats stats = new CacheStats();
+  private final LongKeyStore longKeys;
+  private final Map<Object, CacheEntry> objectKeys;
+  private final AtomicLong generation = new AtomicLong();
+
+  public EntityCache(Class<T> modelClass, int maxSize, long ttlMillis) {
+    this.modelClass = modelClass;
+    this.maxSize = maxSize;
+    this.ttlMillis = ttlMillis;
+    if (isIntegral(primaryKeyType(modelClass))) {
+      this.longKeys = new LongKeyStore(maxSize, stats);
+      this.objectKeys = null;
+    } else {
+      this.longKeys = null;
+      this.objectKeys = new ConcurrentHashMap<>(Math.min(maxSize, 1024));
+    }
+  }
+
+  public EntityCache(Class<T> modelClass, Cacheable cacheable) {
+    this(modelClass, cacheable.maxSize(), cacheable.ttlSeconds() * 1000);
+  }
+
+  /**
+   * @param id primary key
+   * @return a copy of the cached model, null when absent or expired
+   */
+  public T get(Object id) {
+    if (!this.accepts(id)) {
+      return null;
+    }
+    CacheEntry entry = null != longKeys ? longKeys.get(((Number) id).longValue())
+        : objectKeys.get(id);
+    if (null == entry || entry.isExpired(System.currentTimeMillis())) {
+      stats.miss();
+      return null;
+    }
+    entry.referenced = true;
+    stats.hit();
+    return ModelState.restore(modelClass, entry.state);
+  }
+
+  /**
+   * Counter bumped by every invalidation, taken before reading the row that is put.
+   */
+  public long generation() {
+    return generation.get();
+  }
+
+  /**
+   * @param id primary key
+   * @param model model read from the database
+   * @param generation {@link #generation()} taken before the read
+   */
+  public void put(Object id, T model, long generation) {
+    if (!this.accepts(id) || null == model || generation != this.generation.get()) {
+      return;
+    }
+    long expiresAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0;
+    CacheEntry entry = new CacheEntry(ModelState.capture(model), expiresAt);
+    if (null != longKeys) {
+      longKeys.put(((Number) id).longValue(), entry);
+    } else {
+      if (objectKeys.size() >= maxSize && !objectKeys.containsKey(id)) {
+        this.evictObjectKey();
+      }
+      objectKeys.put(id, entry);
+    }
+    stats.put();
+  }
+
+  /**
+   * Drop one row, a key the cache cannot resolve drops every row.
+   */
+  public void invalidate(Object id) {
+    generation.incrementAndGet();
+    if (!this.accepts(id)) {
+      this.invalidateAll();
+      return;
+    }
+    if (null != longKeys) {
+      longKeys.remove(((Number) id).longValue());
+    } else {
+      objectKeys.remove(id);
+    }
+    stats.invalidation();
+  }
+
+  public void invalidateAll() {
+    generation.incrementAndGet();
+    if (null != longKeys) {
+      longKeys.clear();
+    } else {
+      objectKeys.clear();
+    }
+    stats.invalidation();
+  }
+
+  /**
+   * Visit every unexpired entry, for snapshots.
+   */
+  void forEach(EntryConsumer consumer) {
+    long now = System.currentTimeMillis();
+    if (null != longKeys) {
+      longKeys.forEach((key, entry) -> ifThen(!entry.isExpired(now),
+          () -> consumer.accept(key, entry.state, entry.expiresAt)));
+    } else {
+      objectKeys.forEach((key, entry) -> ifThen(!entry.isExpired(now),
+          () -> consumer.accept(key, entry.state, entry.expiresAt)));
+    }
+  }
+
+  /**
+   * Put an entry read back from a snapshot. It keeps the expiry it had when it was saved and is
+   * dropped when already expired or when the cache was invalidated since the generation was taken.
+   */
+  void restore(Object id, Object[] state, long expiresAt, long generation) {
+    if (!this.accepts(id) || generation != this.generation.get()
+        || new CacheEntry(state, expiresAt).isExpired(System.currentTimeMillis())) {
+      return;
+    }
+    if (null != longKeys) {
+      longKeys.put(((Number) id).longValue(), new CacheEntry(state, expiresAt));
+    } else if (objectKeys.size() < maxSize) {
+      objectKeys.putIfAbsent(id, new CacheEntry(state, expiresAt));
+    }
+  }
+
+  public int size() {
+    return null != longKeys ? longKeys.size() : objectKeys.size();
+  }
+
+  public CacheStats stats() {
+    return stats;
+  }
+
+  public Class<T> modelClass() {
+    return modelClass;
+  }
+
+  private boolean accepts(Object id) {
+    return null != id && (null == longKeys || id instanceof Number);
+  }
+
+  /**
+   * Second-chance scan over the map, as the long store does per stripe.
+   */
+  private void evictObjectKey() {
+    long now = System.currentTimeMillis();
+    for (int pass = 0; pass < 2; pass++) {
+      Iterator<CacheEntry> it = objectKeys.values().iterator();
+      while (it.hasNext()) {
+        CacheEntry entry = it.next();
+        if (entry.referenced && !entry.isExpired(now)) {
+          entry.referenced = false;
+          continue;
+        }
+        it.remove();
+        stats.eviction();
+        return;
+      }
+    }
+  }
+
+  interface EntryConsumer {
+
+    void accept(Object id, Object[] state, long expiresAt);
+  }
+
+  private static Class<?> primaryKeyType(Class<?> modelClass) {
+    String pkField = DatabaseCache.getPKField(modelClass);
+    for (Field field : DatabaseCache.computeModelFields(modelClass)) {
+      if (field.getName().equals(pkField)) {
+        return field.getType();
+      }
+    }
+    return Object.class;
+  }
+
+  private static boolean isIntegral(Class<?> type) {
+    return type == long.class || type == Long.class || type == int.class
+        || type == Integer.class || type == short.class || type == Short.class;
+  }
+
+}
@@ -0,0 +1,64 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import in.asvignesh.databasewrapper.annotation.Cacheable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The entity caches of one database, created on first use for models annotated with
+ * {@link Cacheable}.
+ */
+public class EntityCaches {
+
+  private final Map<Class<?>, Optional<EntityCache<?>>> caches = new ConcurrentHashMap<>(8);
+
+  /**
+   * @param modelClass model class type
+   * @return cache of the model, null when the model is not {@link Cacheable}
+   */
+  @SuppressWarnings("unchecked")
+  public <T> EntityCache<T> of(Class<T> modelClass) {
+    Optional<EntityCache<?>> cache = caches.get(modelClass);
+    if (null == cache) {
+      cache = caches.computeIfAbsent(modelClass, type -> Optional
+          .ofNullable(type.getAnnotation(Cacheable.class))
+          .map(cacheable -> new EntityCache<>(modelClass, cacheable)));
+    }
+    return (EntityCache<T>) cache.orElse(null);
+  }
+
+  /**
+   * Caches of the models stored in the tables, all caches when no table is named.
+   *
+   * @param tables normalized table names
+   * @param tableName table of a model class
+   * @return caches a write to the tables affects
+   */
+  public List<EntityCache<?>> ofTables(Collection<String> tables,
+      Function<Class<?>, String> tableName) {
+    List<EntityCache<?>> affected = new ArrayList<>();
+    caches.forEach((type, cache) -> cache
+        .filter(c -> tables.isEmpty()
+            || tables.contains(ResultCache.normalize(tableName.apply(type))))
+        .ifPresent(affected::add));
+    return affected;
+  }
+
+  /**
+   * Visit the caches created so far.
+   */
+  public void forEach(Consumer<EntityCache<?>> consumer) {
+    caches.values().forEach(cache -> cache.ifPresent(consumer));
+  }
+
+  public void invalidateAll() {
+    caches.values().forEach(cache -> cache.ifPresent(EntityCache::invalidateAll));
+  }
+
+}
@@ -0,0 +1,254 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import static in.asvignesh.databasewrapper.utils.Functions.ifNotNullThen;
+
+import in.asvignesh.databasewrapper.annotation.BloomGuard;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Bloom filter guard of one {@link BloomGuard} model. Until the first build completes, and after
+ * a write the guard could not follow, every key passes.
+ * <p>
+ * Keys added while a build is running, or while there is no usable filter, are journaled and
+ * replayed into the next build, so a key whose insert commits while the table is being read is not
+ * lost. Outside of those windows nothing is journaled, the keys only go to the filter.
+ * <p>
+ * A key written by a transaction is not visible to the scan of a build until the transaction
+ * commits, so it is replayed into every build that starts while the transaction is open.
+ */
+public class KeyGuard {
+
+  /**
+   * Streams every key of the guarded column to the consumer.
+   */
+  public interface KeySource {
+
+    void forEach(Consumer<Object> consumer);
+  }
+
+  private static final long RETRY_MILLIS = 1000;
+
+  private final String column;
+  private final BloomGuard settings;
+  private final KeySource source;
+  private final Executor executor;
+  private final AtomicBoolean building = new AtomicBoolean();
+  private final AtomicLong resets = new AtomicLong();
+  private final LongAdder checks = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder falsePositives = new LongAdder();
+  private final LongAdder adds = new LongAdder();
+  private final LongAdder builds = new LongAdder();
+  private volatile BloomFilter filter;
+  private volatile BloomFilter next;
+  private volatile Queue<Object> journal = new ConcurrentLinkedQueue<>();
+  private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+  private volatile boolean stale = true;
+  private volatile long builtAt;
+  private volatile long failedAt;
+  private volatile long keyCount;
+
+  public KeyGuard(String column, BloomGuard settings, KeySource source, Executor executor) {
+    this.column = column;
+    this.settings = settings;
+    this.source = source;
+    this.executor = executor;
+  }
+
+  public String column() {
+    return column;
+  }
+
+  /**
+   * @param key value of the guarded column
+   * @return false when no row can have the key
+   */
+  public boolean mightContain(Object key) {
+    BloomFilter current = this.filter;
+    long rebuildMillis = settings.rebuildSeconds() * 1000;
+    long now = System.currentTimeMillis();
+    boolean due = stale || null == current
+        || (rebuildMillis > 0 && now - builtAt > rebuildMillis);
+    if (due && now - failedAt > RETRY_MILLIS) {
+      this.rebuildAsync();
+    }
+    if (stale || null == current) {
+      return true;
+    }
+    checks.increment();
+    if (current.mightContain(key)) {
+      return true;
+    }
+    rejected.increment();
+    return false;
+  }
+
+  /**
+   * Whether lookups are answered by the filter.
+   */
+  public boolean isReady() {
+    return !stale && null != filter;
+  }
+
+  /**
+   * Record a key written through the wrapper.
+   */
+  public void add(Object key) {
+    if (null == key) {
+      return;
+    }
+    BloomFilter building = this.next;
+    if (null != building || !this.isReady()) {
+      journal.add(key);
+    }
+    BloomFilter current = this.filter;
+    ifNotNullThen(current, () -> current.add(key));
+    ifNotNullThen(building, () -> building.add(key));
+    adds.increment();
+  }
+
+  /**
+   * Record a key written by a transaction that has not committed yet.
+   *
+   * @param key value of the guarded column
+   * @param open whether the writing transaction is still running
+   */
+  public void add(Object key, BooleanSupplier open) {
+    if (null == key) {
+      return;
+    }
+    // registered before the filters see the key, so no build can miss it
+    pending.add(new Pending(key, open));
+    this.add(key);
+  }
+
+  /**
+   * Stop answering until the next build, for writes whose keys are unknown.
+   */
+  public void reset() {
+    resets.incrementAndGet();
+    stale = true;
+  }
+
+  /**
+   * A key the filter let through was not found.
+   */
+  public void falsePositive() {
+    falsePositives.increment();
+  }
+
+  /**
+   * Build the filter from the table on the calling thread.
+   */
+  public void rebuild() {
+    if (!building.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      long resetsBefore = resets.get();
+      long expected = Math.max(settings.expectedKeys(), keyCount + keyCount / 4);
+      BloomFilter built = BloomFilter.create(expected, settings.fpp(), settings.maxBytes());
+      // published before the journal is swapped, so a key added in between reaches the build
+      this.next = built;
+      Queue<Object> replay = this.journal;
+      this.journal = new ConcurrentLinkedQueue<>();
+      // a transaction that ended before the scan left its rows to the table
+      pending.removeIf(entry -> !entry.open.getAsBoolean());
+      long[] count = new long[1];
+      source.forEach(key -> {
+        if (null != key) {
+          built.add(key);
+          count[0]++;
+        }
+      });
+      replay.forEach(built::add);
+      pending.forEach(entry -> built.add(entry.key));
+      this.filter = built;
+      this.keyCount = count[0];
+      this.builtAt = System.currentTimeMillis();
+      // a reset during the build may concern rows the scan has already passed
+      if (resets.get() == resetsBefore) {
+        this.stale = false;
+      }
+      builds.increment();
+    } catch (RuntimeException e) {
+      failedAt = System.currentTimeMillis();
+      throw e;
+    } finally {
+      this.next = null;
+      building.set(false);
+    }
+  }
+
+  public void rebuildAsync() {
+    if (!building.get()) {
+      executor.execute(this::rebuild);
+    }
+  }
+
+  public long checks() {
+    return checks.sum();
+  }
+
+  /**
+   * Lookups answered without a query.
+   */
+  public long rejected() {
+    return rejected.sum();
+  }
+
+  public long falsePositives() {
+    return falsePositives.sum();
+  }
+
+  public long adds() {
+    return adds.sum();
+  }
+
+  public long builds() {
+    return builds.sum();
+  }
+
+  public long keyCount() {
+    return keyCount;
+  }
+
+  public long memoryBytes() {
+    BloomFilter current = this.filter;
+    return null == current ? 0 : current.bitSize() / 8;
+  }
+
+  /**
+   * False positive probability expected from the key count of the last build.
+   */
+  public double expectedFpp() {
+    BloomFilter current = this.filter;
+    return null == current ? 1 : current.expectedFpp(keyCount + adds.sum());
+  }
+
+  @Override
+  public String toString() {
+    return "KeyGuard(column=" + column + ", ready=" + isReady() + ", keys=" + keyCount
+        + ", bytes=" + memoryBytes() + ", checks=" + checks() + ", rejected=" + rejected()
+        + ", falsePositives=" + falsePositives() + ", expectedFpp=" + expectedFpp() + ")";
+  }
+
+  private static class Pending {
+
+    private final Object key;
+    private final BooleanSupplier open;
+
+    Pending(Object key, BooleanSupplier open) {
+      this.key = key;
+      this.open = open;
+    }
+  }
+
+}
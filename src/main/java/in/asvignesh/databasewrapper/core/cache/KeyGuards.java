@@ -0,0 +1,53 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import in.asvignesh.databasewrapper.annotation.BloomGuard;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The key guards of one database, created on first use for models annotated with
+ * {@link BloomGuard}.
+ */
+public class KeyGuards {
+
+  private final Map<Class<?>, Optional<KeyGuard>> guards = new ConcurrentHashMap<>(8);
+
+  /**
+   * @param modelClass model class type
+   * @param factory creates the guard from the annotation
+   * @return guard of the model, null when the model is not {@link BloomGuard}
+   */
+  public KeyGuard of(Class<?> modelClass, Function<BloomGuard, KeyGuard> factory) {
+    Optional<KeyGuard> guard = guards.get(modelClass);
+    if (null == guard) {
+      guard = guards.computeIfAbsent(modelClass, type -> Optional
+          .ofNullable(type.getAnnotation(BloomGuard.class))
+          .map(factory));
+    }
+    return guard.orElse(null);
+  }
+
+  /**
+   * @param modelClass model class type
+   * @return guard of the model, null when it was not used yet or the model is not guarded
+   */
+  public KeyGuard get(Class<?> modelClass) {
+    return guards.getOrDefault(modelClass, Optional.empty()).orElse(null);
+  }
+
+  /**
+   * Guards of the models stored in a table, for writes that only name the table.
+   */
+  public void resetTable(String table, Function<Class<?>, String> tableName) {
+    guards.forEach((type, guard) -> guard
+        .filter(g -> ResultCache.normalize(tableName.apply(type)).equals(table))
+        .ifPresent(KeyGuard::reset));
+  }
+
+  public void resetAll() {
+    guards.values().forEach(guard -> guard.ifPresent(KeyGuard::reset));
+  }
+
+}
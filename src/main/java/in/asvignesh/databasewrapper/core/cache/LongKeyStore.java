@@ -0,0 +1,221 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Entries keyed by a primitive long: lock-striped open-addressing tables with linear probing, so
+ * numeric primary keys are neither boxed nor wrapped in map nodes. When a stripe is full, a clock
+ * hand evicts an entry that was not read since the hand last passed it.
+ */
+class LongKeyStore {
+
+  private static final int SEGMENT_BITS = 4;
+
+  /**
+   * Each stripe holds maxSize / 16 rounded up, so the total may exceed maxSize by a few entries.
+   */
+  private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+  private final CacheStats stats;
+
+  LongKeyStore(int maxSize, CacheStats stats) {
+    this.stats = stats;
+    int perSegment = Math.max((maxSize + segments.length - 1) / segments.length, 1);
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment(perSegment);
+    }
+  }
+
+  CacheEntry get(long key) {
+    long hash = mix(key);
+    return segment(hash).get(key, hash);
+  }
+
+  void put(long key, CacheEntry entry) {
+    long hash = mix(key);
+    segment(hash).put(key, hash, entry);
+  }
+
+  void remove(long key) {
+    long hash = mix(key);
+    segment(hash).remove(key, hash);
+  }
+
+  void clear() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size;
+    }
+    return size;
+  }
+
+  /**
+   * Visit every entry, for snapshots.
+   */
+  void forEach(LongEntryConsumer consumer) {
+    for (Segment segment : segments) {
+      segment.forEach(consumer);
+    }
+  }
+
+  private Segment segment(long hash) {
+    return segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+  }
+
+  private static long mix(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return key;
+  }
+
+  interface LongEntryConsumer {
+
+    void accept(long key, CacheEntry entry);
+  }
+
+  private class Segment {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int maxSize;
+    private final int mask;
+    private final long[] keys;
+    private final CacheEntry[] entries;
+    private int size;
+    private int hand;
+
+    Segment(int maxSize) {
+      this.maxSize = maxSize;
+      int capacity = Integer.highestOneBit(Math.max(maxSize * 2 - 1, 1)) << 1;
+      this.mask = capacity - 1;
+      this.keys = new long[capacity];
+      this.entries = new CacheEntry[capacity];
+    }
+
+    CacheEntry get(long key, long hash) {
+      lock.lock();
+      try {
+        int slot = this.find(key, hash);
+        return slot < 0 ? null : entries[slot];
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void put(long key, long hash, CacheEntry entry) {
+      lock.lock();
+      try {
+        int slot = this.find(key, hash);
+        if (slot >= 0) {
+          entries[slot] = entry;
+          return;
+        }
+        if (size >= maxSize) {
+          this.evict();
+        }
+        slot = (int) hash & mask;
+        while (null != entries[slot]) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        entries[slot] = entry;
+        size++;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void remove(long key, long hash) {
+      lock.lock();
+      try {
+        int slot = this.find(key, hash);
+        if (slot >= 0) {
+          this.delete(slot);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void clear() {
+      lock.lock();
+      try {
+        java.util.Arrays.fill(entries, null);
+        size = 0;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void forEach(LongEntryConsumer consumer) {
+      lock.lock();
+      try {
+        for (int i = 0; i < entries.length; i++) {
+          if (null != entries[i]) {
+            consumer.accept(keys[i], entries[i]);
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private int find(long key, long hash) {
+      int slot = (int) hash & mask;
+      while (null != entries[slot]) {
+        if (keys[slot] == key) {
+          return slot;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return -1;
+    }
+
+    private void evict() {
+      long now = System.currentTimeMillis();
+      while (true) {
+        hand = (hand + 1) & mask;
+        CacheEntry entry = entries[hand];
+        if (null == entry) {
+          continue;
+        }
+        if (entry.referenced && !entry.isExpired(now)) {
+          entry.referenced = false;
+          continue;
+        }
+        this.delete(hand);
+        stats.eviction();
+        return;
+      }
+    }
+
+    /**
+     * Backward-shift deletion keeps every probe chain free of holes.
+     */
+    private void delete(int slot) {
+      int hole = slot;
+      int next = (hole + 1) & mask;
+      while (null != entries[next]) {
+        int home = (int) mix(keys[next]) & mask;
+        boolean movable = hole <= next ? (home <= hole || home > next)
+            : (home <= hole && home > next);
+        if (movable) {
+          keys[hole] = keys[next];
+          entries[hole] = entries[next];
+          hole = next;
+        }
+        next = (next + 1) & mask;
+      }
+      entries[hole] = null;
+      size--;
+    }
+  }
+
+}
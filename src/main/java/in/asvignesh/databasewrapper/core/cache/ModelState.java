@@ -0,0 +1,83 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import static in.asvignesh.databasewrapper.core.DatabaseCache.computeModelFields;
+import static in.asvignesh.databasewrapper.core.DatabaseCache.getGetterName;
+import static in.asvignesh.databasewrapper.core.DatabaseCache.getSetterName;
+
+import in.asvignesh.databasewrapper.exception.DatabaseWrapperException;
+import in.asvignesh.databasewrapper.utils.DatabaseUtils;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Column field values of a model, caches keep these instead of the model so that every reader
+ * gets its own instance. Dates and byte arrays are copied both ways, other values are shared.
+ */
+@UtilityClass
+public class ModelState {
+
+  private static final Map<Class<?>, Constructor<?>> CONSTRUCTORS = new ConcurrentHashMap<>(8);
+
+  /**
+   * @param model model
+   * @return values of the model fields, in {@code DatabaseCache.computeModelFields} order
+   */
+  public static Object[] capture(Object model) {
+    List<Field> fields = computeModelFields(model.getClass());
+    Object[] state = new Object[fields.size()];
+    for (int i = 0; i < state.length; i++) {
+      state[i] = copy(DatabaseUtils.invokeMethod(model, getGetterName(fields.get(i).getName()),
+          DatabaseUtils.EMPTY_ARG));
+    }
+    return state;
+  }
+
+  /**
+   * @param modelClass model class type
+   * @param state values from {@link #capture(Object)}
+   * @return new model instance holding the values
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T restore(Class<T> modelClass, Object[] state) {
+    T model = newInstance(modelClass);
+    List<Field> fields = computeModelFields(modelClass);
+    for (int i = 0; i < state.length; i++) {
+      if (null != state[i]) {
+        DatabaseUtils.invokeMethod(model, getSetterName(fields.get(i).getName()),
+            new Object[]{copy(state[i])});
+      }
+    }
+    return model;
+  }
+
+  private static Object copy(Object value) {
+    if (value instanceof Date) {
+      return ((Date) value).clone();
+    }
+    return value instanceof byte[] ? ((byte[]) value).clone() : value;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T newInstance(Class<T> modelClass) {
+    Constructor<?> constructor = CONSTRUCTORS.computeIfAbsent(modelClass, type -> {
+      try {
+        Constructor<?> noArgs = type.getDeclaredConstructor();
+        noArgs.setAccessible(true);
+        return noArgs;
+      } catch (NoSuchMethodException e) {
+        throw new DatabaseWrapperException(type.getName() + " needs a no-arg constructor", e);
+      }
+    });
+    try {
+      return (T) constructor.newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new DatabaseWrapperException("Create " + modelClass.getName() + " error", e);
+    }
+  }
+
+}
@@ -0,0 +1,211 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import in.asvignesh.databasewrapper.annotation.Replicated;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * In-memory copy of one {@link Replicated} table. The first read loads it on the calling thread,
+ * later reloads run on the executor while the previous snapshot keeps serving. After a write the
+ * replica is not used until a reload started after the write has completed.
+ */
+public class Replica<T> {
+
+  private static final long RETRY_MILLIS = 1000;
+
+  private final Class<T> modelClass;
+  private final Replicated settings;
+  private final Set<String> indexes;
+  private final Supplier<List<T>> loader;
+  private final Executor executor;
+  private final ReentrantLock loadLock = new ReentrantLock();
+  private final AtomicBoolean loading = new AtomicBoolean();
+  private final AtomicLong writes = new AtomicLong();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder declined = new LongAdder();
+  private final LongAdder loads = new LongAdder();
+  private volatile ReplicaSnapshot<T> snapshot;
+  private volatile boolean dirty;
+  private volatile long loadedAt;
+  private volatile long failedAt;
+
+  /**
+   * @param modelClass model class type
+   * @param primaryKey primary key column, always indexed
+   * @param settings annotation of the model
+   * @param loader reads every row of the table
+   * @param executor runs the reloads
+   */
+  public Replica(Class<T> modelClass, String primaryKey, Replicated settings,
+      Supplier<List<T>> loader, Executor executor) {
+    this.modelClass = modelClass;
+    this.settings = settings;
+    this.indexes = new LinkedHashSet<>();
+    this.indexes.add(primaryKey);
+    this.indexes.addAll(Arrays.asList(settings.indexes()));
+    this.loader = loader;
+    this.executor = executor;
+  }
+
+  public Class<T> modelClass() {
+    return modelClass;
+  }
+
+  /**
+   * @return snapshot to answer from, null when the database has to be read
+   */
+  public ReplicaSnapshot<T> snapshot() {
+    ReplicaSnapshot<T> current = this.snapshot;
+    long now = System.currentTimeMillis();
+    if (null == current) {
+      if (now - failedAt < RETRY_MILLIS) {
+        return null;
+      }
+      try {
+        this.load();
+      } catch (RuntimeException e) {
+        return null;
+      }
+      current = this.snapshot;
+    }
+    long refreshMillis = settings.refreshSeconds() * 1000;
+    if (dirty || (refreshMillis > 0 && now - loadedAt > refreshMillis)) {
+      if (now - failedAt > RETRY_MILLIS) {
+        this.loadAsync();
+      }
+    }
+    return dirty ? null : current;
+  }
+
+  /**
+   * Count a query answered from the snapshot, or one the snapshot could not answer.
+   */
+  public void answered(boolean hit) {
+    (hit ? hits : declined).increment();
+  }
+
+  /**
+   * Stop answering until the table is reloaded, for writes to the table.
+   */
+  public void invalidate() {
+    writes.incrementAndGet();
+    dirty = true;
+    if (null != snapshot) {
+      this.loadAsync();
+    }
+  }
+
+  /**
+   * Load the table on the calling thread.
+   */
+  public void load() {
+    loadLock.lock();
+    try {
+      long writesBefore = writes.get();
+      ReplicaSnapshot<T> loaded = ReplicaSnapshot.of(modelClass, loader.get(), indexes,
+          settings.exactStrings());
+      this.snapshot = loaded;
+      this.loadedAt = System.currentTimeMillis();
+      // a write during the load may concern rows already read
+      if (writes.get() == writesBefore) {
+        this.dirty = false;
+      }
+      loads.increment();
+    } catch (RuntimeException e) {
+      failedAt = System.currentTimeMillis();
+      throw e;
+    } finally {
+      loadLock.unlock();
+    }
+  }
+
+  /**
+   * Serve rows read back from a snapshot until the reload this starts completes. Ignored once the
+   * replica was loaded from the database.
+   *
+   * @param rows captured row states
+   * @param loadedAt when the rows were read from the database
+   */
+  void warm(Object[][] rows, long loadedAt) {
+    loadLock.lock();
+    try {
+      if (null != snapshot) {
+        return;
+      }
+      this.snapshot = ReplicaSnapshot.of(modelClass, rows, indexes, settings.exactStrings());
+      this.loadedAt = loadedAt;
+    } finally {
+      loadLock.unlock();
+    }
+    this.loadAsync();
+  }
+
+  /**
+   * Current rows, null when not loaded.
+   */
+  ReplicaSnapshot<T> current() {
+    return snapshot;
+  }
+
+  /**
+   * Time the current rows were read from the database.
+   */
+  long loadedAt() {
+    return loadedAt;
+  }
+
+  public void loadAsync() {
+    if (!loading.compareAndSet(false, true)) {
+      return;
+    }
+    executor.execute(() -> {
+      try {
+        this.load();
+      } finally {
+        loading.set(false);
+      }
+    });
+  }
+
+  public boolean isReady() {
+    return null != snapshot && !dirty;
+  }
+
+  public int size() {
+    ReplicaSnapshot<T> current = this.snapshot;
+    return null == current ? 0 : current.size();
+  }
+
+  /**
+   * Queries answered without reading the database.
+   */
+  public long hits() {
+    return hits.sum();
+  }
+
+  /**
+   * Queries on the model the snapshot could not answer.
+   */
+  public long declined() {
+    return declined.sum();
+  }
+
+  public long loads() {
+    return loads.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "Replica(model=" + modelClass.getSimpleName() + ", ready=" + isReady() + ", rows="
+        + size() + ", hits=" + hits() + ", declined=" + declined() + ", loads=" + loads() + ")";
+  }
+
+}
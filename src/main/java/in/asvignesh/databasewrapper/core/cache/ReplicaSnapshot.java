@@ -0,0 +1,357 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import in.asvignesh.databasewrapper.core.DatabaseCache;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable copy of a replicated table. Integral columns are indexed by sorted primitive keys,
+ * string columns by hash; other declared columns are scanned. A condition whose value cannot be
+ * compared the way the database would (other types, mixed types) makes {@link #select} decline,
+ * so the query goes to the database. Strings are only compared when the snapshot was created with
+ * exact strings, since the collation of the column may ignore case or trailing spaces.
+ */
+public class ReplicaSnapshot<T> {
+
+  private final Class<T> modelClass;
+  private final Object[][] rows;
+  private final Map<String, Integer> columns;
+  private final Map<String, ColumnIndex> indexes;
+  private final Class<?>[] types;
+  private final boolean exactStrings;
+
+  private ReplicaSnapshot(Class<T> modelClass, Object[][] rows, Map<String, Integer> columns,
+      Map<String, ColumnIndex> indexes, Class<?>[] types, boolean exactStrings) {
+    this.modelClass = modelClass;
+    this.rows = rows;
+    this.columns = columns;
+    this.indexes = indexes;
+    this.types = types;
+    this.exactStrings = exactStrings;
+  }
+
+  /**
+   * @param modelClass model class type
+   * @param models every row of the table
+   * @param indexedColumns columns to index
+   * @param exactStrings whether strings compare and sort exactly in the database too
+   * @return ReplicaSnapshot
+   */
+  public static <T> ReplicaSnapshot<T> of(Class<T> modelClass, List<T> models,
+      Collection<String> indexedColumns, boolean exactStrings) {
+    Object[][] rows = new Object[models.size()][];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = ModelState.capture(models.get(i));
+    }
+    return of(modelClass, rows, indexedColumns, exactStrings);
+  }
+
+  static <T> ReplicaSnapshot<T> of(Class<T> modelClass, Object[][] rows,
+      Collection<String> indexedColumns, boolean exactStrings) {
+    Map<String, Integer> columns = new HashMap<>(16);
+    List<Field> fields = DatabaseCache.computeModelFields(modelClass);
+    Class<?>[] types = new Class<?>[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      columns.put(lower(DatabaseCache.getColumnName(fields.get(i))), i);
+      columns.putIfAbsent(lower(fields.get(i).getName()), i);
+      types[i] = fields.get(i).getType();
+    }
+    Map<String, ColumnIndex> indexes = new HashMap<>(8);
+    for (String column : indexedColumns) {
+      Integer field = columns.get(lower(column));
+      if (null != field) {
+        ColumnIndex index = ColumnIndex.build(rows, field, exactStrings);
+        if (null != index) {
+          indexes.put(lower(column), index);
+        }
+      }
+    }
+    return new ReplicaSnapshot<>(modelClass, rows, columns, indexes, types, exactStrings);
+  }
+
+  public int size() {
+    return rows.length;
+  }
+
+  /**
+   * Captured states of the rows, for snapshots; not to be modified.
+   */
+  Object[][] rows() {
+    return rows;
+  }
+
+  /**
+   * Rows matching every condition, in load order.
+   *
+   * @param equalities lower-cased column to value
+   * @param memberships lower-cased column to the values of an IN
+   * @return new model instances, null when a condition cannot be answered from memory
+   */
+  public List<T> select(Map<String, Object> equalities, Map<String, Object[]> memberships) {
+    if (!exactStrings && (this.hasText(equalities.values().toArray())
+        || memberships.values().stream().anyMatch(this::hasText))) {
+      return null;
+    }
+    int[] candidates = null;
+    for (Map.Entry<String, Object> equality : equalities.entrySet()) {
+      ColumnIndex index = indexes.get(equality.getKey());
+      int[] found = null == index ? null : index.rows(equality.getValue());
+      candidates = narrower(candidates, found);
+    }
+    for (Map.Entry<String, Object[]> membership : memberships.entrySet()) {
+      ColumnIndex index = indexes.get(membership.getKey());
+      if (null == index) {
+        continue;
+      }
+      int[] union = new int[0];
+      for (Object value : membership.getValue()) {
+        int[] found = index.rows(value);
+        if (null == found) {
+          union = null;
+          break;
+        }
+        union = concat(union, found);
+      }
+      if (null != union) {
+        union = distinct(union);
+      }
+      candidates = narrower(candidates, union);
+    }
+
+    List<T> result = new ArrayList<>();
+    int count = null == candidates ? rows.length : candidates.length;
+    for (int i = 0; i < count; i++) {
+      Object[] row = rows[null == candidates ? i : candidates[i]];
+      Boolean matches = this.matches(row, equalities, memberships);
+      if (null == matches) {
+        return null;
+      }
+      if (matches) {
+        result.add(ModelState.restore(modelClass, row));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Whether rows can be sorted here by the columns of a plain ORDER BY, which fails for string
+   * columns unless strings compare exactly.
+   *
+   * @param orderBy column names, each optionally followed by ASC or DESC
+   */
+  public boolean sortable(String orderBy) {
+    for (String order : orderBy.split(",")) {
+      String column = order.trim().split("\\s+")[0];
+      Integer field = columns.get(lower(column.substring(column.lastIndexOf('.') + 1)));
+      if (null == field || (!exactStrings && CharSequence.class.isAssignableFrom(types[field]))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean hasText(Object[] values) {
+    for (Object value : values) {
+      if (value instanceof CharSequence) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Boolean matches(Object[] row, Map<String, Object> equalities,
+      Map<String, Object[]> memberships) {
+    for (Map.Entry<String, Object> equality : equalities.entrySet()) {
+      Integer field = columns.get(equality.getKey());
+      Boolean same = null == field ? null : same(row[field], equality.getValue());
+      if (null == same || !same) {
+        return same;
+      }
+    }
+    for (Map.Entry<String, Object[]> membership : memberships.entrySet()) {
+      Integer field = columns.get(membership.getKey());
+      if (null == field) {
+        return null;
+      }
+      boolean any = false;
+      for (Object value : membership.getValue()) {
+        Boolean same = same(row[field], value);
+        if (null == same) {
+          return null;
+        }
+        any |= same;
+      }
+      if (!any) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * SQL equality of a stored value and a parameter, null when it cannot be told here.
+   */
+  static Boolean same(Object stored, Object wanted) {
+    if (null == stored || null == wanted) {
+      return null == wanted ? null : false;
+    }
+    if (stored instanceof Number && wanted instanceof Number) {
+      Long left = integral(stored);
+      Long right = integral(wanted);
+      if (null != left && null != right) {
+        return left.equals(right);
+      }
+      return new BigDecimal(stored.toString()).compareTo(new BigDecimal(wanted.toString())) == 0;
+    }
+    if (stored instanceof String && wanted instanceof String) {
+      return stored.equals(wanted);
+    }
+    if (stored instanceof Boolean && wanted instanceof Boolean) {
+      return stored.equals(wanted);
+    }
+    return null;
+  }
+
+  static Long integral(Object value) {
+    if (value instanceof Long || value instanceof Integer || value instanceof Short
+        || value instanceof Byte) {
+      return ((Number) value).longValue();
+    }
+    return null;
+  }
+
+  private static int[] narrower(int[] current, int[] found) {
+    if (null == found) {
+      return current;
+    }
+    return null == current || found.length < current.length ? found : current;
+  }
+
+  /**
+   * Sort row ids and drop the repeated ones, a row matching several values of an IN is selected
+   * once.
+   */
+  private static int[] distinct(int[] ids) {
+    Arrays.sort(ids);
+    int size = 0;
+    for (int i = 0; i < ids.length; i++) {
+      if (i == 0 || ids[i] != ids[i - 1]) {
+        ids[size++] = ids[i];
+      }
+    }
+    return size == ids.length ? ids : Arrays.copyOf(ids, size);
+  }
+
+  private static int[] concat(int[] a, int[] b) {
+    int[] joined = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, joined, a.length, b.length);
+    return joined;
+  }
+
+  private static String lower(String column) {
+    return column.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Row ids by column value.
+   */
+  private abstract static class ColumnIndex {
+
+    /**
+     * @return ids of the rows holding the value, null when the value cannot be looked up here
+     */
+    abstract int[] rows(Object value);
+
+    static ColumnIndex build(Object[][] rows, int field, boolean exactStrings) {
+      boolean integral = true;
+      boolean text = true;
+      for (Object[] row : rows) {
+        Object value = row[field];
+        integral &= null == value || null != integral(value);
+        text &= null == value || value instanceof String;
+      }
+      if (integral) {
+        return new LongIndex(rows, field);
+      }
+      return text && exactStrings ? new TextIndex(rows, field) : null;
+    }
+  }
+
+  /**
+   * Distinct keys sorted in a long array, the rows of keys[i] are ids[starts[i]..starts[i+1]).
+   */
+  private static class LongIndex extends ColumnIndex {
+
+    private final long[] keys;
+    private final int[] starts;
+    private final int[] ids;
+
+    LongIndex(Object[][] rows, int field) {
+      long[][] pairs = new long[rows.length][];
+      int size = 0;
+      for (int i = 0; i < rows.length; i++) {
+        Long key = integral(rows[i][field]);
+        if (null != key) {
+          pairs[size++] = new long[]{key, i};
+        }
+      }
+      long[][] sorted = Arrays.copyOf(pairs, size);
+      Arrays.sort(sorted, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0])
+          : Long.compare(a[1], b[1]));
+      long[] distinct = new long[size];
+      int[] firsts = new int[size + 1];
+      this.ids = new int[size];
+      int keyCount = 0;
+      for (int i = 0; i < size; i++) {
+        if (i == 0 || sorted[i][0] != sorted[i - 1][0]) {
+          distinct[keyCount] = sorted[i][0];
+          firsts[keyCount++] = i;
+        }
+        ids[i] = (int) sorted[i][1];
+      }
+      firsts[keyCount] = size;
+      this.keys = Arrays.copyOf(distinct, keyCount);
+      this.starts = Arrays.copyOf(firsts, keyCount + 1);
+    }
+
+    @Override
+    int[] rows(Object value) {
+      Long key = integral(value);
+      if (null == key) {
+        return null;
+      }
+      int slot = Arrays.binarySearch(keys, key);
+      return slot < 0 ? new int[0] : Arrays.copyOfRange(ids, starts[slot], starts[slot + 1]);
+    }
+  }
+
+  private static class TextIndex extends ColumnIndex {
+
+    private final Map<String, int[]> ids = new HashMap<>();
+
+    TextIndex(Object[][] rows, int field) {
+      for (int i = 0; i < rows.length; i++) {
+        Object value = rows[i][field];
+        if (null != value) {
+          int[] known = ids.getOrDefault(value, new int[0]);
+          int[] grown = Arrays.copyOf(known, known.length + 1);
+          grown[known.length] = i;
+          ids.put((String) value, grown);
+        }
+      }
+    }
+
+    @Override
+    int[] rows(Object value) {
+      return value instanceof String ? ids.getOrDefault(value, new int[0]) : null;
+    }
+  }
+
+}
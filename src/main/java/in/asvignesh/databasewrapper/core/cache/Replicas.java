@@ -0,0 +1,74 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import in.asvignesh.databasewrapper.annotation.Replicated;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The replicas of one database, created on first use for models annotated with
+ * {@link Replicated}.
+ */
+public class Replicas {
+
+  private final Map<Class<?>, Optional<Replica<?>>> replicas = new ConcurrentHashMap<>(8);
+
+  /**
+   * @param modelClass model class type
+   * @param factory creates the replica from the annotation
+   * @return replica of the model, null when the model is not {@link Replicated}
+   */
+  @SuppressWarnings("unchecked")
+  public <T> Replica<T> of(Class<T> modelClass, Function<Replicated, Replica<T>> factory) {
+    Optional<Replica<?>> replica = replicas.get(modelClass);
+    if (null == replica) {
+      replica = replicas.computeIfAbsent(modelClass, type -> Optional
+          .ofNullable(type.getAnnotation(Replicated.class))
+          .map(factory));
+    }
+    return (Replica<T>) replica.orElse(null);
+  }
+
+  /**
+   * @param modelClass model class type
+   * @return replica of the model, null when it was not used yet or the model is not replicated
+   */
+  @SuppressWarnings("unchecked")
+  public <T> Replica<T> get(Class<T> modelClass) {
+    return (Replica<T>) replicas.getOrDefault(modelClass, Optional.empty()).orElse(null);
+  }
+
+  /**
+   * Replicas of the models stored in the tables, all replicas when no table is named.
+   *
+   * @param tables normalized table names
+   * @param tableName table of a model class
+   * @return replicas a write to the tables affects
+   */
+  public List<Replica<?>> ofTables(Collection<String> tables,
+      Function<Class<?>, String> tableName) {
+    List<Replica<?>> affected = new ArrayList<>();
+    replicas.forEach((type, replica) -> replica
+        .filter(r -> tables.isEmpty()
+            || tables.contains(ResultCache.normalize(tableName.apply(type))))
+        .ifPresent(affected::add));
+    return affected;
+  }
+
+  /**
+   * Visit the replicas created so far.
+   */
+  public void forEach(Consumer<Replica<?>> consumer) {
+    replicas.values().forEach(replica -> replica.ifPresent(consumer));
+  }
+
+  public void invalidateAll() {
+    replicas.values().forEach(replica -> replica.ifPresent(Replica::invalidate));
+  }
+
+}
@@ -0,0 +1,240 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Results of queries marked {@code cached}, keyed by SQL and parameters and tagged with the
+ * tables they read. A write to a table evicts every result tagged with it.
+ * <p>
+ * The cache is bounded by weight, roughly the number of cells held: a model row weighs its column
+ * count, a map row its size, a scalar one. The least recently used results go first. Rows are kept
+ * as a {@link Snapshot} and every hit returns new instances.
+ */
+public class ResultCache {
+
+  private static final Pattern READ_TABLES = Pattern
+      .compile("\\b(?:FROM|JOIN)\\s+([`\"\\[\\]\\w.]+)", Pattern.CASE_INSENSITIVE);
+
+  private static final Pattern WRITE_TABLE = Pattern.compile(
+      "^\\s*(?:INSERT\\s+(?:IGNORE\\s+)?INTO|REPLACE\\s+INTO|MERGE\\s+INTO|UPDATE|DELETE\\s+FROM"
+          + "|TRUNCATE\\s+(?:TABLE\\s+)?|ALTER\\s+TABLE|DROP\\s+TABLE(?:\\s+IF\\s+EXISTS)?)"
+          + "\\s+([`\"\\[\\]\\w.]+)", Pattern.CASE_INSENSITIVE);
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+  private final Map<String, Set<Object>> keysByTable = new HashMap<>(16);
+  private final AtomicLong generation = new AtomicLong();
+  private final CacheStats stats = new CacheStats();
+  private final long maxWeight;
+  private long weight;
+
+  public ResultCache(long maxWeight) {
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * @param key query key
+   * @param found receives whether the key was cached, so a cached null can be told apart
+   * @return a copy of the cached result
+   */
+  public Object get(Object key, boolean[] found) {
+    Entry entry;
+    lock.lock();
+    try {
+      entry = entries.get(key);
+      if (null != entry && System.currentTimeMillis() >= entry.expiresAt) {
+        this.remove(key);
+        entry = null;
+      }
+    } finally {
+      lock.unlock();
+    }
+    found[0] = null != entry;
+    if (null == entry) {
+      stats.miss();
+      return null;
+    }
+    stats.hit();
+    return Snapshot.thaw(entry.value);
+  }
+
+  /**
+   * Counter bumped by every invalidation, taken before running the query that is put.
+   */
+  public long generation() {
+    return generation.get();
+  }
+
+  /**
+   * @param key query key
+   * @param value query result
+   * @param tables tables the query read
+   * @param ttlMillis time to live
+   * @param generation {@link #generation()} taken before the query ran
+   */
+  public void put(Object key, Object value, Set<String> tables, long ttlMillis,
+      long generation) {
+    int[] valueWeight = new int[1];
+    Object frozen = Snapshot.freeze(value, valueWeight);
+    if (valueWeight[0] > maxWeight) {
+      return;
+    }
+    lock.lock();
+    try {
+      if (generation != this.generation.get()) {
+        return;
+      }
+      this.remove(key);
+      entries.put(key, new Entry(frozen, valueWeight[0], tables,
+          System.currentTimeMillis() + ttlMillis));
+      tables.forEach(table -> keysByTable.computeIfAbsent(table, t -> new HashSet<>()).add(key));
+      weight += valueWeight[0];
+      stats.put();
+      Iterator<Map.Entry<Object, Entry>> eldest = entries.entrySet().iterator();
+      while (weight > maxWeight && eldest.hasNext()) {
+        Map.Entry<Object, Entry> evicted = eldest.next();
+        eldest.remove();
+        this.unlink(evicted.getKey(), evicted.getValue());
+        stats.eviction();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Evict the results that read any of the tables, all results when no table is known.
+   */
+  public void invalidate(Collection<String> tables) {
+    if (tables.isEmpty()) {
+      this.invalidateAll();
+      return;
+    }
+    lock.lock();
+    try {
+      generation.incrementAndGet();
+      for (String table : tables) {
+        Set<Object> keys = keysByTable.remove(table);
+        if (null != keys) {
+          new ArrayList<>(keys).forEach(this::remove);
+        }
+      }
+      stats.invalidation();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void invalidateAll() {
+    lock.lock();
+    try {
+      generation.incrementAndGet();
+      entries.clear();
+      keysByTable.clear();
+      weight = 0;
+      stats.invalidation();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int size() {
+    lock.lock();
+    try {
+      return entries.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long weight() {
+    lock.lock();
+    try {
+      return weight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long maxWeight() {
+    return maxWeight;
+  }
+
+  public CacheStats stats() {
+    return stats;
+  }
+
+  /**
+   * Tables named after FROM and JOIN in a query.
+   */
+  public static Set<String> readTables(String sql) {
+    Set<String> tables = new LinkedHashSet<>(4);
+    Matcher matcher = READ_TABLES.matcher(sql);
+    while (matcher.find()) {
+      tables.add(normalize(matcher.group(1)));
+    }
+    return tables;
+  }
+
+  /**
+   * The table changed by a statement, empty when the statement is not recognized, which callers
+   * treat as every table.
+   */
+  public static Set<String> writeTables(String sql) {
+    Matcher matcher = WRITE_TABLE.matcher(sql);
+    return matcher.find() ? Collections.singleton(normalize(matcher.group(1)))
+        : Collections.emptySet();
+  }
+
+  public static String normalize(String table) {
+    String name = table.replaceAll("[`\"\\[\\]]", "");
+    return name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+  }
+
+  private void remove(Object key) {
+    Entry entry = entries.remove(key);
+    if (null != entry) {
+      this.unlink(key, entry);
+    }
+  }
+
+  private void unlink(Object key, Entry entry) {
+    weight -= entry.weight;
+    for (String table : entry.tables) {
+      Set<Object> keys = keysByTable.get(table);
+      if (null != keys && keys.remove(key) && keys.isEmpty()) {
+        keysByTable.remove(table);
+      }
+    }
+  }
+
+  private static class Entry {
+
+    private final Object value;
+    private final int weight;
+    private final Set<String> tables;
+    private final long expiresAt;
+
+    Entry(Object value, int weight, Set<String> tables, long expiresAt) {
+      this.value = value;
+      this.weight = weight;
+      this.tables = tables;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+}
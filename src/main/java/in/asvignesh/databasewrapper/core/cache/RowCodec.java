@@ -0,0 +1,283 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import in.asvignesh.databasewrapper.exception.DatabaseWrapperException;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Compact binary form of captured model states (see {@link ModelState}): each value is a type tag
+ * followed by its bytes. Only the value types JDBC maps columns to are supported, check rows with
+ * {@link #encodable(Object[])} first.
+ */
+@UtilityClass
+public class RowCodec {
+
+  private static final byte NULL = 0;
+  private static final byte LONG = 1;
+  private static final byte INTEGER = 2;
+  private static final byte SHORT = 3;
+  private static final byte BYTE = 4;
+  private static final byte DOUBLE = 5;
+  private static final byte FLOAT = 6;
+  private static final byte BOOLEAN = 7;
+  private static final byte STRING = 8;
+  private static final byte BIG_DECIMAL = 9;
+  private static final byte BIG_INTEGER = 10;
+  private static final byte DATE = 11;
+  private static final byte TIMESTAMP = 12;
+  private static final byte SQL_DATE = 13;
+  private static final byte TIME = 14;
+  private static final byte LOCAL_DATE = 15;
+  private static final byte LOCAL_DATE_TIME = 16;
+  private static final byte LOCAL_TIME = 17;
+  private static final byte INSTANT = 18;
+  private static final byte BYTES = 19;
+  private static final byte CHARACTER = 20;
+  private static final byte ENUM = 21;
+
+  public static boolean encodable(Object[] row) {
+    for (Object value : row) {
+      if (!encodable(value)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public static boolean encodable(Object value) {
+    return null == value || tag(value) != -1;
+  }
+
+  public static void writeRow(DataOutput out, Object[] row) throws IOException {
+    out.writeInt(row.length);
+    for (Object value : row) {
+      writeValue(out, value);
+    }
+  }
+
+  public static Object[] readRow(ByteBuffer in) {
+    Object[] row = new Object[in.getInt()];
+    for (int i = 0; i < row.length; i++) {
+      row[i] = readValue(in);
+    }
+    return row;
+  }
+
+  public static void writeValue(DataOutput out, Object value) throws IOException {
+    byte tag = null == value ? NULL : tag(value);
+    if (tag == -1) {
+      throw new DatabaseWrapperException("Cannot encode " + value.getClass().getName());
+    }
+    out.writeByte(tag);
+    switch (tag) {
+      case NULL:
+        break;
+      case LONG:
+        out.writeLong((Long) value);
+        break;
+      case INTEGER:
+        out.writeInt((Integer) value);
+        break;
+      case SHORT:
+        out.writeShort((Short) value);
+        break;
+      case BYTE:
+        out.writeByte((Byte) value);
+        break;
+      case DOUBLE:
+        out.writeDouble((Double) value);
+        break;
+      case FLOAT:
+        out.writeFloat((Float) value);
+        break;
+      case BOOLEAN:
+        out.writeBoolean((Boolean) value);
+        break;
+      case STRING:
+        writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+        break;
+      case BIG_DECIMAL:
+        out.writeInt(((BigDecimal) value).scale());
+        writeBytes(out, ((BigDecimal) value).unscaledValue().toByteArray());
+        break;
+      case BIG_INTEGER:
+        writeBytes(out, ((BigInteger) value).toByteArray());
+        break;
+      case TIMESTAMP:
+        out.writeLong(((Timestamp) value).getTime());
+        out.writeInt(((Timestamp) value).getNanos());
+        break;
+      case DATE:
+      case SQL_DATE:
+      case TIME:
+        out.writeLong(((Date) value).getTime());
+        break;
+      case LOCAL_DATE:
+        out.writeLong(((LocalDate) value).toEpochDay());
+        break;
+      case LOCAL_DATE_TIME:
+        out.writeLong(((LocalDateTime) value).toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(((LocalDateTime) value).getNano());
+        break;
+      case LOCAL_TIME:
+        out.writeLong(((LocalTime) value).toNanoOfDay());
+        break;
+      case INSTANT:
+        out.writeLong(((Instant) value).getEpochSecond());
+        out.writeInt(((Instant) value).getNano());
+        break;
+      case BYTES:
+        writeBytes(out, (byte[]) value);
+        break;
+      case CHARACTER:
+        out.writeChar((Character) value);
+        break;
+      default:
+        writeBytes(out, ((Enum<?>) value).getDeclaringClass().getName()
+            .getBytes(StandardCharsets.UTF_8));
+        writeBytes(out, ((Enum<?>) value).name().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  public static Object readValue(ByteBuffer in) {
+    byte tag = in.get();
+    switch (tag) {
+      case NULL:
+        return null;
+      case LONG:
+        return in.getLong();
+      case INTEGER:
+        return in.getInt();
+      case SHORT:
+        return in.getShort();
+      case BYTE:
+        return in.get();
+      case DOUBLE:
+        return in.getDouble();
+      case FLOAT:
+        return in.getFloat();
+      case BOOLEAN:
+        return in.get() != 0;
+      case STRING:
+        return readString(in);
+      case BIG_DECIMAL:
+        int scale = in.getInt();
+        return new BigDecimal(new BigInteger(readBytes(in)), scale);
+      case BIG_INTEGER:
+        return new BigInteger(readBytes(in));
+      case DATE:
+        return new Date(in.getLong());
+      case TIMESTAMP:
+        Timestamp timestamp = new Timestamp(in.getLong());
+        timestamp.setNanos(in.getInt());
+        return timestamp;
+      case SQL_DATE:
+        return new java.sql.Date(in.getLong());
+      case TIME:
+        return new Time(in.getLong());
+      case LOCAL_DATE:
+        return LocalDate.ofEpochDay(in.getLong());
+      case LOCAL_DATE_TIME:
+        return LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC);
+      case LOCAL_TIME:
+        return LocalTime.ofNanoOfDay(in.getLong());
+      case INSTANT:
+        return Instant.ofEpochSecond(in.getLong(), in.getInt());
+      case BYTES:
+        return readBytes(in);
+      case CHARACTER:
+        return in.getChar();
+      case ENUM:
+        return readEnum(readString(in), readString(in));
+      default:
+        throw new DatabaseWrapperException("Unknown value tag " + tag);
+    }
+  }
+
+  private static byte tag(Object value) {
+    Class<?> type = value.getClass();
+    if (type == Long.class) {
+      return LONG;
+    } else if (type == Integer.class) {
+      return INTEGER;
+    } else if (type == Short.class) {
+      return SHORT;
+    } else if (type == Byte.class) {
+      return BYTE;
+    } else if (type == Double.class) {
+      return DOUBLE;
+    } else if (type == Float.class) {
+      return FLOAT;
+    } else if (type == Boolean.class) {
+      return BOOLEAN;
+    } else if (type == String.class) {
+      return STRING;
+    } else if (type == BigDecimal.class) {
+      return BIG_DECIMAL;
+    } else if (type == BigInteger.class) {
+      return BIG_INTEGER;
+    } else if (type == Date.class) {
+      return DATE;
+    } else if (type == Timestamp.class) {
+      return TIMESTAMP;
+    } else if (type == java.sql.Date.class) {
+      return SQL_DATE;
+    } else if (type == Time.class) {
+      return TIME;
+    } else if (type == LocalDate.class) {
+      return LOCAL_DATE;
+    } else if (type == LocalDateTime.class) {
+      return LOCAL_DATE_TIME;
+    } else if (type == LocalTime.class) {
+      return LOCAL_TIME;
+    } else if (type == Instant.class) {
+      return INSTANT;
+    } else if (type == byte[].class) {
+      return BYTES;
+    } else if (type == Character.class) {
+      return CHARACTER;
+    } else if (value instanceof Enum) {
+      return ENUM;
+    }
+    return -1;
+  }
+
+  private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte[] readBytes(ByteBuffer in) {
+    byte[] bytes = new byte[in.getInt()];
+    in.get(bytes);
+    return bytes;
+  }
+
+  private static String readString(ByteBuffer in) {
+    return new String(readBytes(in), StandardCharsets.UTF_8);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Object readEnum(String type, String name) {
+    try {
+      Class enumType = Class.forName(type, false, Thread.currentThread().getContextClassLoader());
+      return Enum.valueOf(enumType, name);
+    } catch (ClassNotFoundException e) {
+      throw new DatabaseWrapperException("Unknown enum " + type, e);
+    }
+  }
+
+}
@@ -0,0 +1,99 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import in.asvignesh.databasewrapper.exception.DatabaseWrapperException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical reads running at the same time: the first caller runs the query, the others
+ * wait for it and each get their own copy of its result. The result is only copied when some
+ * caller joined.
+ */
+public class SingleFlight {
+
+  private final Map<Object, Flight> inFlight = new ConcurrentHashMap<>(16);
+  private final LongAdder executions = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+
+  /**
+   * @param key query key
+   * @param loader runs the query
+   * @return result of the loader, a copy of it for callers that joined a running execution
+   */
+  @SuppressWarnings("unchecked")
+  public <R> R run(Object key, Supplier<R> loader) {
+    Flight created = new Flight();
+    Flight flight = inFlight.compute(key, (k, running) -> {
+      if (null == running) {
+        return created;
+      }
+      running.waiters++;
+      return running;
+    });
+    if (flight != created) {
+      coalesced.increment();
+      return (R) Snapshot.thaw(await(flight));
+    }
+    executions.increment();
+    R result;
+    try {
+      result = loader.get();
+    } catch (RuntimeException | Error e) {
+      inFlight.remove(key, flight);
+      flight.completeExceptionally(e);
+      throw e;
+    }
+    // no caller can join once the flight is removed
+    inFlight.remove(key, flight);
+    flight.complete(flight.waiters > 0 ? Snapshot.freeze(result, new int[1]) : null);
+    return result;
+  }
+
+  /**
+   * Number of queries run on behalf of one or more callers.
+   */
+  public long executions() {
+    return executions.sum();
+  }
+
+  /**
+   * Number of callers served by a query another caller ran.
+   */
+  public long coalesced() {
+    return coalesced.sum();
+  }
+
+  public int inFlight() {
+    return inFlight.size();
+  }
+
+  private static Object await(Flight flight) {
+    try {
+      return flight.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new DatabaseWrapperException(cause);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "SingleFlight(executions=" + executions() + ", coalesced=" + coalesced() + ")";
+  }
+
+  private static class Flight extends CompletableFuture<Object> {
+
+    private volatile int waiters;
+  }
+
+}
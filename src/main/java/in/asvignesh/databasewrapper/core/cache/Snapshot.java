@@ -0,0 +1,124 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import in.asvignesh.databasewrapper.page.Page;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query results held as captured values, so that one result can be handed to many callers as
+ * separate copies.
+ */
+final class Snapshot {
+
+  private static final Object NULL = new Object();
+
+  private Snapshot() {
+  }
+
+  /**
+   * @param value query result: a list, page, map, model or scalar
+   * @param weight receives the weight of the value, see {@link ResultCache}
+   */
+  static Object freeze(Object value, int[] weight) {
+    if (null == value) {
+      weight[0] += 1;
+      return NULL;
+    }
+    if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      Object[] rows = new Object[list.size()];
+      for (int i = 0; i < rows.length; i++) {
+        rows[i] = freeze(list.get(i), weight);
+      }
+      weight[0] += 1;
+      return new FrozenList(rows);
+    }
+    if (value instanceof Page) {
+      Page<?> page = (Page<?>) value;
+      return new FrozenPage(page.getTotalRows(), page.getPageNum(), page.getLimit(),
+          null == page.getRows() ? null : (FrozenList) freeze(page.getRows(), weight));
+    }
+    if (value instanceof Map) {
+      weight[0] += Math.max(((Map<?, ?>) value).size(), 1);
+      return Collections.unmodifiableMap(new LinkedHashMap<>((Map<?, ?>) value));
+    }
+    if (isModel(value.getClass())) {
+      Object[] state = ModelState.capture(value);
+      weight[0] += Math.max(state.length, 1);
+      return new FrozenModel(value.getClass(), state);
+    }
+    weight[0] += 1;
+    return value;
+  }
+
+  static Object thaw(Object value) {
+    if (value == NULL) {
+      return null;
+    }
+    if (value instanceof FrozenList) {
+      return thawList((FrozenList) value);
+    }
+    if (value instanceof FrozenPage) {
+      FrozenPage frozen = (FrozenPage) value;
+      Page<Object> page = new Page<>(frozen.totalRows, frozen.pageNum, frozen.limit);
+      page.setRows(null == frozen.rows ? null : thawList(frozen.rows));
+      return page;
+    }
+    if (value instanceof FrozenModel) {
+      return ModelState.restore(((FrozenModel) value).type, ((FrozenModel) value).state);
+    }
+    return value;
+  }
+
+  private static List<Object> thawList(FrozenList frozen) {
+    List<Object> list = new ArrayList<>(frozen.rows.length);
+    for (Object row : frozen.rows) {
+      list.add(thaw(row));
+    }
+    return list;
+  }
+
+  private static boolean isModel(Class<?> type) {
+    return !type.isPrimitive() && !type.isEnum() && !type.isArray()
+        && !type.getName().startsWith("java.");
+  }
+
+  private static class FrozenList {
+
+    private final Object[] rows;
+
+    FrozenList(Object[] rows) {
+      this.rows = rows;
+    }
+  }
+
+  private static class FrozenPage {
+
+    private final long totalRows;
+    private final int pageNum;
+    private final int limit;
+    private final FrozenList rows;
+
+    FrozenPage(long totalRows, int pageNum, int limit, FrozenList rows) {
+      this.totalRows = totalRows;
+      this.pageNum = pageNum;
+      this.limit = limit;
+      this.rows = rows;
+    }
+  }
+
+  private static class FrozenModel {
+
+    private final Class<?> type;
+    private final Object[] state;
+
+    FrozenModel(Class<?> type, Object[] state) {
+      this.type = type;
+      this.state = state;
+    }
+  }
+
+}
@@ -0,0 +1,28 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Finds the application code that ran a statement.
+ */
+@UtilityClass
+public class CallSites {
+
+  private static final String PACKAGE = "in.asvignesh.databasewrapper.";
+
+  /**
+   * @return first frame of the calling thread outside this library and the JDK, null when there is
+   * none
+   */
+  public static StackTraceElement of() {
+    for (StackTraceElement frame : new Throwable().getStackTrace()) {
+      String type = frame.getClassName();
+      if (!type.startsWith(PACKAGE) && !type.startsWith("java.") && !type.startsWith("sun.")
+          && !type.startsWith("jdk.")) {
+        return frame;
+      }
+    }
+    return null;
+  }
+
+}
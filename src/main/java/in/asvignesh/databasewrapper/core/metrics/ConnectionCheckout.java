@@ -0,0 +1,72 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Getter;
+
+/**
+ * One connection taken from the pool by a query, see {@link ConnectionTracker}.
+ */
+public class ConnectionCheckout {
+
+  /**
+   * Application code that took the connection.
+   */
+  @Getter
+  private final StackTraceElement callSite;
+  @Getter
+  private final String thread;
+  /**
+   * Epoch millis of the checkout.
+   */
+  @Getter
+  private final long acquiredAt;
+  @Getter
+  private final long startNanos;
+  private volatile long returnedNanos;
+  private final AtomicInteger statements = new AtomicInteger();
+  private final AtomicBoolean reported = new AtomicBoolean();
+
+  ConnectionCheckout(StackTraceElement callSite, String thread) {
+    this.callSite = callSite;
+    this.thread = thread;
+    this.acquiredAt = System.currentTimeMillis();
+    this.startNanos = System.nanoTime();
+  }
+
+  /**
+   * Time the connection has been held so far, or was held once returned.
+   */
+  public long getHoldNanos() {
+    long returned = this.returnedNanos;
+    return (0 != returned ? returned : System.nanoTime()) - startNanos;
+  }
+
+  public int getStatements() {
+    return statements.get();
+  }
+
+  public boolean isReturned() {
+    return 0 != returnedNanos;
+  }
+
+  void statement() {
+    statements.incrementAndGet();
+  }
+
+  void returned() {
+    this.returnedNanos = System.nanoTime();
+  }
+
+  boolean report() {
+    return reported.compareAndSet(false, true);
+  }
+
+  @Override
+  public String toString() {
+    return "ConnectionCheckout(callSite=" + callSite + ", thread=" + thread + ", holdMillis="
+        + getHoldNanos() / 1_000_000 + ", statements=" + getStatements() + ", returned="
+        + isReturned() + ")";
+  }
+
+}
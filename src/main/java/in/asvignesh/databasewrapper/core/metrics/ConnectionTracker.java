@@ -0,0 +1,188 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Tracks the connections queries take from the pool: where they were taken, how long they are
+ * held and how many statements run on them, with a hold time histogram per call site. A checkout
+ * held past the threshold is reported once, when it is returned or when {@link #sweep()} finds it
+ * still open, so connections that are never returned show up too. Opt in with
+ * {@link in.asvignesh.databasewrapper.DatabaseWrapper#trackConnections(ConnectionTracker)}; the
+ * connection of a transaction is held until it ends and is not tracked here. The connection of a
+ * query publisher is checked out until its cursor is closed.
+ */
+public class ConnectionTracker {
+
+  public static final String OTHER_CALL_SITES = "(other)";
+
+  private final Map<Object, ConnectionCheckout> open = new ConcurrentHashMap<>(64);
+  private final Map<String, LatencyHistogram> holdTimes = new ConcurrentHashMap<>(64);
+  private final AtomicLong checkouts = new AtomicLong();
+  private final AtomicLong overdue = new AtomicLong();
+  private long thresholdNanos = Duration.ofSeconds(5).toNanos();
+  private int maxCallSites = 1000;
+  private Consumer<ConnectionCheckout> consumer;
+  private ScheduledExecutorService watcher;
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * @param threshold hold time from which a checkout is reported, 5 seconds by default
+   * @return ConnectionTracker
+   */
+  public ConnectionTracker threshold(Duration threshold) {
+    this.thresholdNanos = threshold.toNanos();
+    return this;
+  }
+
+  /**
+   * @param maxCallSites call sites with a histogram of their own, 1000 by default
+   * @return ConnectionTracker
+   */
+  public ConnectionTracker maxCallSites(int maxCallSites) {
+    this.maxCallSites = maxCallSites;
+    return this;
+  }
+
+  /**
+   * @param consumer called with every checkout held past the threshold
+   * @return ConnectionTracker
+   */
+  public ConnectionTracker onOverdue(Consumer<ConnectionCheckout> consumer) {
+    this.consumer = consumer;
+    return this;
+  }
+
+  /**
+   * Run {@link #sweep()} periodically on a daemon thread.
+   *
+   * @param interval time between sweeps
+   * @return ConnectionTracker
+   */
+  public ConnectionTracker watch(Duration interval) {
+    lock.lock();
+    try {
+      if (null != watcher) {
+        return this;
+      }
+      watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "databasewrapper-connection-tracker");
+        thread.setDaemon(true);
+        return thread;
+      });
+      watcher.scheduleWithFixedDelay(this::sweep, interval.toNanos(), interval.toNanos(),
+          TimeUnit.NANOSECONDS);
+      return this;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void checkout(Object connection) {
+    checkouts.incrementAndGet();
+    open.put(connection, new ConnectionCheckout(CallSites.of(), Thread.currentThread().getName()));
+  }
+
+  public void statement(Object connection) {
+    ConnectionCheckout checkout = open.get(connection);
+    if (null != checkout) {
+      checkout.statement();
+    }
+  }
+
+  public void checkin(Object connection) {
+    ConnectionCheckout checkout = open.remove(connection);
+    if (null == checkout) {
+      return;
+    }
+    checkout.returned();
+    long held = checkout.getHoldNanos();
+    this.histogram(checkout.getCallSite()).record(held);
+    if (held >= thresholdNanos) {
+      this.report(checkout);
+    }
+  }
+
+  /**
+   * Report the open checkouts held past the threshold that were not reported yet.
+   *
+   * @return the checkouts reported
+   */
+  public List<ConnectionCheckout> sweep() {
+    List<ConnectionCheckout> found = new ArrayList<>();
+    for (ConnectionCheckout checkout : open.values()) {
+      if (checkout.getHoldNanos() >= thresholdNanos && this.report(checkout)) {
+        found.add(checkout);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Connections currently held, the longest held first.
+   */
+  public List<ConnectionCheckout> open() {
+    List<ConnectionCheckout> held = new ArrayList<>(open.values());
+    held.sort((a, b) -> Long.compare(a.getStartNanos(), b.getStartNanos()));
+    return held;
+  }
+
+  /**
+   * Hold time histograms keyed by call site.
+   */
+  public Map<String, LatencyHistogram> holdTimes() {
+    return Collections.unmodifiableMap(holdTimes);
+  }
+
+  public long checkouts() {
+    return checkouts.get();
+  }
+
+  /**
+   * Checkouts reported as held past the threshold.
+   */
+  public long overdue() {
+    return overdue.get();
+  }
+
+  private boolean report(ConnectionCheckout checkout) {
+    if (!checkout.report()) {
+      return false;
+    }
+    overdue.incrementAndGet();
+    if (null != consumer) {
+      consumer.accept(checkout);
+    }
+    return true;
+  }
+
+  private LatencyHistogram histogram(StackTraceElement callSite) {
+    String key = null == callSite ? OTHER_CALL_SITES : callSite.toString();
+    LatencyHistogram histogram = holdTimes.get(key);
+    if (null == histogram) {
+      key = holdTimes.size() < maxCallSites ? key : OTHER_CALL_SITES;
+      histogram = holdTimes.computeIfAbsent(key, any -> new LatencyHistogram());
+    }
+    return histogram;
+  }
+
+  @Override
+  public String toString() {
+    return "ConnectionTracker(checkouts=" + checkouts() + ", open=" + open.size() + ", overdue="
+        + overdue() + ", callSites=" + holdTimes.entrySet().stream()
+        .map(entry -> entry.getKey() + "=" + entry.getValue())
+        .collect(Collectors.joining(", ", "[", "]")) + ")";
+  }
+
+}
@@ -0,0 +1,101 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Normalizes statements so that every call of the same query has the same text: string and
+ * number literals become "?", runs of whitespace a single space and IN lists of any length
+ * "IN (...)". The fingerprints of the first statements seen are cached, the wrapper renders the
+ * same text for every call of a query.
+ */
+@UtilityClass
+public class Fingerprint {
+
+  private static final int MAX_CACHED = 10000;
+  private static final Map<String, String> CACHE = new ConcurrentHashMap<>(256);
+
+  private static final Pattern IN_LIST =
+      Pattern.compile("(?i)\\bIN \\(\\?(?: ?, ?\\?)*\\)");
+
+  /**
+   * @param sql statement
+   * @return its fingerprint, null for null
+   */
+  public static String of(String sql) {
+    if (null == sql) {
+      return null;
+    }
+    String cached = CACHE.get(sql);
+    if (null != cached) {
+      return cached;
+    }
+    String fingerprint = normalize(sql);
+    if (CACHE.size() < MAX_CACHED) {
+      CACHE.put(sql, fingerprint);
+    }
+    return fingerprint;
+  }
+
+  private static String normalize(String sql) {
+    StringBuilder builder = new StringBuilder(sql.length());
+    boolean space = false;
+    int length = sql.length();
+    for (int i = 0; i < length; i++) {
+      char c = sql.charAt(i);
+      if (Character.isWhitespace(c)) {
+        space = builder.length() > 0;
+        continue;
+      }
+      if (space) {
+        builder.append(' ');
+        space = false;
+      }
+      if ('\'' == c) {
+        i = endOfString(sql, i);
+        builder.append('?');
+      } else if (Character.isDigit(c) && !afterIdentifier(builder)) {
+        while (i + 1 < length && isNumberPart(sql.charAt(i + 1))) {
+          i++;
+        }
+        builder.append('?');
+      } else {
+        builder.append(c);
+      }
+    }
+    String fingerprint = builder.toString();
+    return fingerprint.indexOf('(') < 0 ? fingerprint
+        : IN_LIST.matcher(fingerprint).replaceAll("IN (...)");
+  }
+
+  private static int endOfString(String sql, int start) {
+    int i = start + 1;
+    while (i < sql.length()) {
+      if ('\'' == sql.charAt(i)) {
+        if (i + 1 < sql.length() && '\'' == sql.charAt(i + 1)) {
+          i += 2;
+          continue;
+        }
+        return i;
+      }
+      i++;
+    }
+    return sql.length() - 1;
+  }
+
+  private static boolean afterIdentifier(StringBuilder builder) {
+    if (builder.length() == 0) {
+      return false;
+    }
+    char previous = builder.charAt(builder.length() - 1);
+    return Character.isLetterOrDigit(previous) || '_' == previous || '$' == previous
+        || '"' == previous || '`' == previous;
+  }
+
+  private static boolean isNumberPart(char c) {
+    return Character.isLetterOrDigit(c) || '.' == c;
+  }
+
+}
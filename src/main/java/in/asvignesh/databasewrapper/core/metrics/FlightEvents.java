@@ -0,0 +1,64 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+/**
+ * Bridge to JDK Flight Recorder events for statements, reads, transactions and connections. The
+ * events are defined in the jfr source set, compiled for Java 11, and loaded when the runtime has
+ * Flight Recorder; otherwise this no-op implementation is used. {@link #begin(Kind)} returns null
+ * while the event type is not recorded, so nothing is allocated unless a recording wants it.
+ */
+public class FlightEvents {
+
+  /**
+   * Event types, named "in.asvignesh.databasewrapper.&lt;Name&gt;" in recordings.
+   */
+  public enum Kind {
+    STATEMENT, READ, TRANSACTION, CONNECTION_OPEN, CONNECTION_CLOSE
+  }
+
+  private static final String IMPLEMENTATION =
+      "in.asvignesh.databasewrapper.jfr.JfrFlightEvents";
+
+  private static final FlightEvents INSTANCE = load();
+
+  public static FlightEvents get() {
+    return INSTANCE;
+  }
+
+  /**
+   * Start timing an event.
+   *
+   * @param kind event type
+   * @return the started event, null when the type is not recorded
+   */
+  public Object begin(Kind kind) {
+    return null;
+  }
+
+  public void statement(Object event, Operation operation, String sql, Class<?> modelClass,
+      long rows, Throwable error) {
+  }
+
+  public void read(Object event, QueryProfile profile, Class<?> modelClass) {
+  }
+
+  public void transaction(Object event, boolean committed) {
+  }
+
+  /**
+   * Commit a CONNECTION_OPEN or CONNECTION_CLOSE event.
+   *
+   * @param transactional whether the connection was taken from a transaction instead of the pool
+   */
+  public void connection(Object event, boolean transactional) {
+  }
+
+  private static FlightEvents load() {
+    try {
+      Class.forName("jdk.jfr.Event", false, FlightEvents.class.getClassLoader());
+      return (FlightEvents) Class.forName(IMPLEMENTATION).getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+      return new FlightEvents();
+    }
+  }
+
+}
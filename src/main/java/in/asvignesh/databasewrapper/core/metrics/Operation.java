@@ -0,0 +1,32 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+/**
+ * Kinds of statements the statistics are kept by.
+ */
+public enum Operation {
+
+  SELECT, COUNT, PAGE, INSERT, UPDATE, DELETE, BATCH, OTHER;
+
+  /**
+   * @param sql statement
+   * @return the operation of the statement, by its leading keyword
+   */
+  public static Operation of(String sql) {
+    int start = 0;
+    while (start < sql.length() && Character.isWhitespace(sql.charAt(start))) {
+      start++;
+    }
+    if (sql.regionMatches(true, start, "SELECT", 0, 6)) {
+      return sql.regionMatches(true, start, "SELECT COUNT(", 0, 13) ? COUNT : SELECT;
+    } else if (sql.regionMatches(true, start, "INSERT", 0, 6)
+        || sql.regionMatches(true, start, "REPLACE", 0, 7)) {
+      return INSERT;
+    } else if (sql.regionMatches(true, start, "UPDATE", 0, 6)) {
+      return UPDATE;
+    } else if (sql.regionMatches(true, start, "DELETE", 0, 6)) {
+      return DELETE;
+    }
+    return OTHER;
+  }
+
+}
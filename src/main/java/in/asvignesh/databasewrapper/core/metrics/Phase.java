@@ -0,0 +1,33 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+/**
+ * Parts of a read timed by a {@link QueryProfile}.
+ */
+public enum Phase {
+
+  /**
+   * Building the SQL.
+   */
+  RENDER,
+  /**
+   * Obtaining connections, from the pool or from the transaction.
+   */
+  CONNECTION,
+  /**
+   * The count query of a page.
+   */
+  COUNT,
+  /**
+   * Running the statement until the first row can be read.
+   */
+  EXECUTE,
+  /**
+   * Reading the rows into models.
+   */
+  MAPPING,
+  /**
+   * Loading the joined models.
+   */
+  JOIN
+
+}
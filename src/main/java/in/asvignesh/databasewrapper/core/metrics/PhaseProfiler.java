@@ -0,0 +1,110 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phase histograms per statement shape, fed with the {@link QueryProfile} of every read of a
+ * database, see
+ * {@link in.asvignesh.databasewrapper.DatabaseWrapper#phaseProfiler(PhaseProfiler)}. A shape is the
+ * operation and the {@link Fingerprint} of the statement, like
+ * "PAGE SELECT * FROM users WHERE age IN (...)". Shapes beyond the
+ * limit are added up under {@link #OTHER_SHAPES}.
+ */
+public class PhaseProfiler {
+
+  public static final String OTHER_SHAPES = "(other)";
+
+  private static final Phase[] PHASES = Phase.values();
+
+  private final int maxShapes;
+  private final Map<String, Shape> shapes = new ConcurrentHashMap<>(64);
+
+  public PhaseProfiler() {
+    this(1000);
+  }
+
+  public PhaseProfiler(int maxShapes) {
+    this.maxShapes = maxShapes;
+  }
+
+  public void record(QueryProfile profile) {
+    String key = profile.operation() + " " + Fingerprint.of(profile.shape());
+    Shape shape = shapes.get(key);
+    if (null == shape) {
+      key = shapes.size() < maxShapes ? key : OTHER_SHAPES;
+      shape = shapes.computeIfAbsent(key, any -> new Shape());
+    }
+    shape.total.record(profile.totalNanos());
+    for (Phase phase : PHASES) {
+      shape.phases[phase.ordinal()].record(profile.nanos(phase));
+    }
+  }
+
+  public Set<String> shapes() {
+    return Collections.unmodifiableSet(shapes.keySet());
+  }
+
+  /**
+   * @param shape statement shape
+   * @return histogram of the whole read, null when the shape was not seen
+   */
+  public LatencyHistogram total(String shape) {
+    Shape found = shapes.get(shape);
+    return null == found ? null : found.total;
+  }
+
+  /**
+   * @param shape statement shape
+   * @return histogram of each phase, empty when the shape was not seen
+   */
+  public Map<Phase, LatencyHistogram> phases(String shape) {
+    Map<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+    Shape found = shapes.get(shape);
+    if (null != found) {
+      for (Phase phase : PHASES) {
+        phases.put(phase, found.phases[phase.ordinal()]);
+      }
+    }
+    return phases;
+  }
+
+  public void reset() {
+    shapes.clear();
+  }
+
+  /**
+   * Mean microseconds per phase of every shape.
+   */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    shapes.forEach((sql, shape) -> {
+      builder.append(sql).append(": count=").append(shape.total.count())
+          .append(", meanMicros=").append(TimeUnit.NANOSECONDS.toMicros(shape.total.meanNanos()));
+      for (Phase phase : PHASES) {
+        builder.append(", ").append(phase).append('=')
+            .append(TimeUnit.NANOSECONDS.toMicros(shape.phases[phase.ordinal()].meanNanos()));
+      }
+      builder.append('\n');
+    });
+    return builder.toString();
+  }
+
+  private static class Shape {
+
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final LatencyHistogram[] phases = new LatencyHistogram[PHASES.length];
+
+    Shape() {
+      for (int i = 0; i < phases.length; i++) {
+        phases[i] = new LatencyHistogram();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,27 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+/**
+ * Notified of the statements and transactions of a database while SQL statistics are enabled, on
+ * the thread that ran them. An exception thrown by a listener reaches the caller of the query
+ * after the other listeners were notified; when the statement itself failed, its exception does,
+ * with the listener's one suppressed.
+ */
+public interface QueryListener {
+
+  default void onStatement(StatementEvent event) {
+  }
+
+  /**
+   * @param elapsedNanos time taken to obtain a connection for a statement
+   */
+  default void onConnection(long elapsedNanos) {
+  }
+
+  /**
+   * @param elapsedNanos time from the start of the transaction to its end
+   * @param committed false when rolled back
+   */
+  default void onTransaction(long elapsedNanos, boolean committed) {
+  }
+
+}
@@ -0,0 +1,272 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+import in.asvignesh.databasewrapper.exception.DatabaseWrapperException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Statement, connection and transaction statistics of one database, recorded while
+ * {@link in.asvignesh.databasewrapper.DatabaseWrapper#enableSQLStatistic(boolean)} is on, and the
+ * {@link QueryListener}s they are passed on to. Recording takes no lock; an event object is only
+ * created when listeners are registered.
+ */
+public class QueryMetrics {
+
+  private static final Operation[] OPERATIONS = Operation.values();
+
+  private final LatencyHistogram[] latency = new LatencyHistogram[OPERATIONS.length];
+  private final LongAdder[] rows = new LongAdder[OPERATIONS.length];
+  private final LongAdder[] errors = new LongAdder[OPERATIONS.length];
+  private final LatencyHistogram connections = new LatencyHistogram();
+  private final LatencyHistogram transactions = new LatencyHistogram();
+  private final LongAdder commits = new LongAdder();
+  private final LongAdder rollbacks = new LongAdder();
+  private final StatementStatistics statistics = new StatementStatistics();
+  private final List<QueryListener> listeners = new CopyOnWriteArrayList<>();
+
+  public QueryMetrics() {
+    for (int i = 0; i < OPERATIONS.length; i++) {
+      latency[i] = new LatencyHistogram();
+      rows[i] = new LongAdder();
+      errors[i] = new LongAdder();
+    }
+  }
+
+  public void addListener(QueryListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(QueryListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Record a statement and pass it on to the listeners.
+   */
+  public void statement(Operation operation, String sql, Object[] params, Class<?> modelClass,
+      long rowCount, long elapsedNanos, Throwable error) {
+    int i = operation.ordinal();
+    latency[i].record(elapsedNanos);
+    rows[i].add(rowCount);
+    if (null != error) {
+      errors[i].increment();
+    }
+    statistics.record(operation, sql, modelClass, rowCount, elapsedNanos, error);
+    if (!listeners.isEmpty()) {
+      StatementEvent event = new StatementEvent(operation, sql, params, modelClass, rowCount,
+          elapsedNanos, error);
+      this.dispatch(listener -> listener.onStatement(event));
+    }
+  }
+
+  public void connection(long elapsedNanos) {
+    connections.record(elapsedNanos);
+    this.dispatch(listener -> listener.onConnection(elapsedNanos));
+  }
+
+  public void transaction(long elapsedNanos, boolean committed) {
+    transactions.record(elapsedNanos);
+    (committed ? commits : rollbacks).increment();
+    this.dispatch(listener -> listener.onTransaction(elapsedNanos, committed));
+  }
+
+  /**
+   * Pass an event to every listener, then throw the first listener failure with the others
+   * suppressed.
+   */
+  private void dispatch(Consumer<QueryListener> event) {
+    RuntimeException failure = null;
+    for (QueryListener listener : listeners) {
+      try {
+        event.accept(listener);
+      } catch (RuntimeException e) {
+        if (null == failure) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (null != failure) {
+      throw failure;
+    }
+  }
+
+  public LatencyHistogram latency(Operation operation) {
+    return latency[operation.ordinal()];
+  }
+
+  public long rows(Operation operation) {
+    return rows[operation.ordinal()].sum();
+  }
+
+  public long errors(Operation operation) {
+    return errors[operation.ordinal()].sum();
+  }
+
+  /**
+   * Time taken to obtain connections, from the pool or from the transaction.
+   */
+  public LatencyHistogram connections() {
+    return connections;
+  }
+
+  public LatencyHistogram transactions() {
+    return transactions;
+  }
+
+  public long commits() {
+    return commits.sum();
+  }
+
+  public long rollbacks() {
+    return rollbacks.sum();
+  }
+
+  /**
+   * Totals per statement fingerprint.
+   */
+  public StatementStatistics statistics() {
+    return statistics;
+  }
+
+  public void reset() {
+    for (int i = 0; i < OPERATIONS.length; i++) {
+      latency[i].reset();
+      rows[i].reset();
+      errors[i].reset();
+    }
+    connections.reset();
+    transactions.reset();
+    commits.reset();
+    rollbacks.reset();
+    statistics.reset();
+  }
+
+  /**
+   * Expose the statistics on the platform MBean server.
+   *
+   * @param name value of the name key, e.g. the name of the database
+   * @return the registered name
+   */
+  public ObjectName registerMBean(String name) {
+    try {
+      ObjectName objectName = new ObjectName(
+          "in.asvignesh.databasewrapper:type=QueryMetrics,name=" + ObjectName.quote(name));
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(objectName)) {
+        server.unregisterMBean(objectName);
+      }
+      server.registerMBean(new StandardMBean(new MBean(), QueryMetricsMXBean.class, true),
+          objectName);
+      return objectName;
+    } catch (JMException e) {
+      throw new DatabaseWrapperException("Register MBean " + name + " error", e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("QueryMetrics(");
+    for (Operation operation : OPERATIONS) {
+      LatencyHistogram histogram = latency(operation);
+      if (histogram.count() > 0) {
+        builder.append(operation).append('=').append(histogram).append(", ");
+      }
+    }
+    return builder.append("commits=").append(commits()).append(", rollbacks=")
+        .append(rollbacks()).append(')').toString();
+  }
+
+  private class MBean implements QueryMetricsMXBean {
+
+    @Override
+    public Map<String, Long> getStatements() {
+      return byOperation(operation -> latency(operation).count());
+    }
+
+    @Override
+    public Map<String, Long> getRows() {
+      return byOperation(QueryMetrics.this::rows);
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+      return byOperation(QueryMetrics.this::errors);
+    }
+
+    @Override
+    public Map<String, Long> getMeanMicros() {
+      return byOperation(operation -> micros(latency(operation).meanNanos()));
+    }
+
+    @Override
+    public Map<String, Long> getP50Micros() {
+      return byOperation(operation -> micros(latency(operation).percentileNanos(0.5)));
+    }
+
+    @Override
+    public Map<String, Long> getP99Micros() {
+      return byOperation(operation -> micros(latency(operation).percentileNanos(0.99)));
+    }
+
+    @Override
+    public Map<String, Long> getMaxMicros() {
+      return byOperation(operation -> micros(latency(operation).maxNanos()));
+    }
+
+    @Override
+    public long getConnectionAcquireP99Micros() {
+      return micros(connections.percentileNanos(0.99));
+    }
+
+    @Override
+    public long getTransactions() {
+      return transactions.count();
+    }
+
+    @Override
+    public long getTransactionP99Micros() {
+      return micros(transactions.percentileNanos(0.99));
+    }
+
+    @Override
+    public long getCommits() {
+      return commits();
+    }
+
+    @Override
+    public long getRollbacks() {
+      return rollbacks();
+    }
+
+    @Override
+    public void reset() {
+      QueryMetrics.this.reset();
+    }
+
+    private Map<String, Long> byOperation(ToLongFunction<Operation> value) {
+      Map<String, Long> values = new LinkedHashMap<>();
+      for (Operation operation : OPERATIONS) {
+        values.put(operation.name(), value.applyAsLong(operation));
+      }
+      return values;
+    }
+
+    private long micros(long nanos) {
+      return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+  }
+
+}
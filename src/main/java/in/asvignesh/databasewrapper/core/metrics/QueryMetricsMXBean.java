@@ -0,0 +1,36 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link QueryMetrics}, statement figures are keyed by {@link Operation} name.
+ */
+public interface QueryMetricsMXBean {
+
+  Map<String, Long> getStatements();
+
+  Map<String, Long> getRows();
+
+  Map<String, Long> getErrors();
+
+  Map<String, Long> getMeanMicros();
+
+  Map<String, Long> getP50Micros();
+
+  Map<String, Long> getP99Micros();
+
+  Map<String, Long> getMaxMicros();
+
+  long getConnectionAcquireP99Micros();
+
+  long getTransactions();
+
+  long getTransactionP99Micros();
+
+  long getCommits();
+
+  long getRollbacks();
+
+  void reset();
+
+}
@@ -0,0 +1,64 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Time spent in each {@link Phase} of one read, see
+ * {@link in.asvignesh.databasewrapper.core.Query#profile(java.util.function.Consumer)}. Phases of
+ * a scattered read add up the time of every shard.
+ */
+public class QueryProfile {
+
+  private static final Phase[] PHASES = Phase.values();
+
+  private final long start = System.nanoTime();
+  private final AtomicLongArray nanos = new AtomicLongArray(PHASES.length);
+  private Operation operation;
+  private String shape;
+  private long totalNanos;
+
+  public void add(Phase phase, long elapsedNanos) {
+    nanos.addAndGet(phase.ordinal(), elapsedNanos);
+  }
+
+  /**
+   * Close the profile.
+   *
+   * @param operation kind of read
+   * @param shape statement the read ran
+   */
+  public void finish(Operation operation, String shape) {
+    this.operation = operation;
+    this.shape = shape;
+    this.totalNanos = System.nanoTime() - start;
+  }
+
+  public long nanos(Phase phase) {
+    return nanos.get(phase.ordinal());
+  }
+
+  public long totalNanos() {
+    return totalNanos;
+  }
+
+  public Operation operation() {
+    return operation;
+  }
+
+  public String shape() {
+    return shape;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("QueryProfile(totalMicros=")
+        .append(TimeUnit.NANOSECONDS.toMicros(totalNanos));
+    for (Phase phase : PHASES) {
+      builder.append(", ").append(phase).append('=')
+          .append(TimeUnit.NANOSECONDS.toMicros(nanos(phase)));
+    }
+    return builder.append(", operation=").append(operation).append(", shape=").append(shape).append(')').toString();
+  }
+
+}
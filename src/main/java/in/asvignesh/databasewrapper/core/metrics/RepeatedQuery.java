@@ -0,0 +1,34 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A statement shape that ran more often in one scope than a {@link RepeatedQueryDetector} allows,
+ * typically one query per row of an earlier result.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class RepeatedQuery {
+
+  /**
+   * Name of the scope, e.g. the request.
+   */
+  private final String scope;
+  private final String fingerprint;
+  /**
+   * Model class of the query, null for plain SQL.
+   */
+  private final Class<?> modelClass;
+  /**
+   * Executions in the scope so far.
+   */
+  private final int executions;
+  /**
+   * Application code that ran the execution over the threshold.
+   */
+  private final StackTraceElement callSite;
+
+}
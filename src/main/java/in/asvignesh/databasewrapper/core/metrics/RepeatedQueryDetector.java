@@ -0,0 +1,165 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+import in.asvignesh.databasewrapper.core.Transaction;
+import in.asvignesh.databasewrapper.exception.DatabaseWrapperException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Listener counting the executions of each statement {@link Fingerprint} within a scope, such as
+ * a request, and reporting the shapes that run more than the threshold, like the N+1 queries of a
+ * loop over byId or of a join. Register it with
+ * {@link in.asvignesh.databasewrapper.DatabaseWrapper#addQueryListener(QueryListener)}; statements
+ * outside a scope are not counted.
+ * <pre>
+ * try (RepeatedQueryDetector.Scope scope = detector.open("GET /orders")) {
+ *   ...
+ * }
+ * </pre>
+ */
+public class RepeatedQueryDetector implements QueryListener {
+
+  private final ThreadLocal<Scope> current = new ThreadLocal<>();
+  private final Map<Transaction, Scope> transactions =
+      Collections.synchronizedMap(new WeakHashMap<>());
+  private final AtomicLong detected = new AtomicLong();
+  private int threshold = 10;
+  private boolean failFast;
+  private boolean scopeTransactions;
+  private Consumer<RepeatedQuery> consumer;
+
+  /**
+   * @param threshold executions of one shape allowed per scope, 10 by default
+   * @return RepeatedQueryDetector
+   */
+  public RepeatedQueryDetector threshold(int threshold) {
+    this.threshold = threshold;
+    return this;
+  }
+
+  /**
+   * Throw a {@link DatabaseWrapperException} from the statement over the threshold instead of only
+   * reporting it, for tests.
+   *
+   * @param failFast throw on detection
+   * @return RepeatedQueryDetector
+   */
+  public RepeatedQueryDetector failFast(boolean failFast) {
+    this.failFast = failFast;
+    return this;
+  }
+
+  /**
+   * Give every transaction a scope of its own when no scope is open on the thread.
+   *
+   * @param scopeTransactions scope transactions
+   * @return RepeatedQueryDetector
+   */
+  public RepeatedQueryDetector scopeTransactions(boolean scopeTransactions) {
+    this.scopeTransactions = scopeTransactions;
+    return this;
+  }
+
+  /**
+   * @param consumer called on the statement thread once per shape and scope
+   * @return RepeatedQueryDetector
+   */
+  public RepeatedQueryDetector onRepeat(Consumer<RepeatedQuery> consumer) {
+    this.consumer = consumer;
+    return this;
+  }
+
+  /**
+   * Open a scope on the current thread, it replaces the open one until closed.
+   *
+   * @param name name of the scope, e.g. the request
+   * @return Scope
+   */
+  public Scope open(String name) {
+    Scope scope = new Scope(name, current.get());
+    current.set(scope);
+    return scope;
+  }
+
+  /**
+   * Detections since the detector was created.
+   */
+  public long detected() {
+    return detected.get();
+  }
+
+  @Override
+  public void onStatement(StatementEvent event) {
+    if (null == event.getSql()) {
+      return;
+    }
+    Scope scope = current.get();
+    if (null == scope && scopeTransactions) {
+      Transaction transaction = Transaction.current();
+      scope = null == transaction ? null
+          : transactions.computeIfAbsent(transaction, any -> new Scope("transaction", null));
+    }
+    if (null == scope) {
+      return;
+    }
+    String fingerprint = Fingerprint.of(event.getSql());
+    int executions = scope.counts.computeIfAbsent(fingerprint, any -> new AtomicInteger())
+        .incrementAndGet();
+    if (executions != threshold + 1) {
+      return;
+    }
+    detected.incrementAndGet();
+    RepeatedQuery repeated = new RepeatedQuery(scope.name, fingerprint, event.getModelClass(),
+        executions, CallSites.of());
+    if (null != consumer) {
+      consumer.accept(repeated);
+    }
+    if (failFast) {
+      throw new DatabaseWrapperException("Statement ran more than " + threshold + " times in "
+          + scope.name + " at " + repeated.getCallSite() + ": " + fingerprint);
+    }
+  }
+
+  /**
+   * Executions counted per statement shape, closing it reopens the scope it replaced.
+   */
+  public class Scope implements AutoCloseable {
+
+    private final String name;
+    private final Scope previous;
+    private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>(16);
+
+    Scope(String name, Scope previous) {
+      this.name = name;
+      this.previous = previous;
+    }
+
+    public String name() {
+      return name;
+    }
+
+    /**
+     * @param sql statement
+     * @return executions of its shape in this scope
+     */
+    public int executions(String sql) {
+      AtomicInteger count = counts.get(Fingerprint.of(sql));
+      return null == count ? 0 : count.get();
+    }
+
+    @Override
+    public void close() {
+      if (null == previous) {
+        current.remove();
+      } else {
+        current.set(previous);
+      }
+    }
+  }
+
+}
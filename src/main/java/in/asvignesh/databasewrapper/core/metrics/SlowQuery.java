@@ -0,0 +1,57 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+import java.util.Arrays;
+import lombok.Getter;
+
+/**
+ * A statement captured by the {@link SlowQueryLog}.
+ */
+@Getter
+public class SlowQuery {
+
+  private final long timestamp;
+  private final Operation operation;
+  private final String sql;
+  /**
+   * Parameter values after redaction.
+   */
+  private final Object[] params;
+  private final Class<?> modelClass;
+  private final long rows;
+  private final long elapsedNanos;
+  /**
+   * First caller frame outside the wrapper, null when there is none.
+   */
+  private final StackTraceElement callSite;
+  /**
+   * False when the statement was under the threshold and captured as a sample.
+   */
+  private final boolean slow;
+  /**
+   * Output of EXPLAIN, set asynchronously when the log explains statements.
+   */
+  private volatile String plan;
+
+  SlowQuery(StatementEvent event, Object[] params, StackTraceElement callSite, boolean slow) {
+    this.timestamp = System.currentTimeMillis();
+    this.operation = event.getOperation();
+    this.sql = event.getSql();
+    this.params = params;
+    this.modelClass = event.getModelClass();
+    this.rows = event.getRows();
+    this.elapsedNanos = event.getElapsedNanos();
+    this.callSite = callSite;
+    this.slow = slow;
+  }
+
+  void plan(String plan) {
+    this.plan = plan;
+  }
+
+  @Override
+  public String toString() {
+    return (slow ? "Slow" : "Sampled") + " query " + elapsedNanos / 1_000_000 + "ms, " + rows
+        + " rows: " + sql + " " + Arrays.toString(params) + " at " + callSite;
+  }
+
+}
@@ -0,0 +1,167 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Listener capturing statements over a threshold, and a sample of the others, into a ring of the
+ * most recent ones. Register it with
+ * {@link DatabaseWrapper#addQueryListener(QueryListener)}; it sees statements while SQL statistics
+ * are enabled.
+ */
+public class SlowQueryLog implements QueryListener {
+
+  /**
+   * Rewrites the parameter values kept with a captured statement, e.g. to mask secrets.
+   */
+  public interface Redactor {
+
+    Object[] redact(String sql, Object[] params);
+  }
+
+  private long thresholdNanos = Duration.ofMillis(500).toNanos();
+  private double sampleRate;
+  private Redactor redactor = (sql, params) -> params;
+  private Consumer<SlowQuery> consumer;
+  private DatabaseWrapper explainer;
+  private AtomicReferenceArray<SlowQuery> recent = new AtomicReferenceArray<>(100);
+  private final AtomicLong captured = new AtomicLong();
+
+  /**
+   * @param threshold duration from which a statement is slow, 500ms by default
+   * @return SlowQueryLog
+   */
+  public SlowQueryLog threshold(Duration threshold) {
+    this.thresholdNanos = threshold.toNanos();
+    return this;
+  }
+
+  /**
+   * @param sampleRate share of the statements under the threshold captured too, 0 by default
+   * @return SlowQueryLog
+   */
+  public SlowQueryLog sampleRate(double sampleRate) {
+    this.sampleRate = sampleRate;
+    return this;
+  }
+
+  /**
+   * @param capacity number of recent statements kept, 100 by default
+   * @return SlowQueryLog
+   */
+  public SlowQueryLog capacity(int capacity) {
+    this.recent = new AtomicReferenceArray<>(capacity);
+    return this;
+  }
+
+  public SlowQueryLog redactor(Redactor redactor) {
+    this.redactor = redactor;
+    return this;
+  }
+
+  /**
+   * @param consumer called on the statement thread with every captured statement
+   * @return SlowQueryLog
+   */
+  public SlowQueryLog onCapture(Consumer<SlowQuery> consumer) {
+    this.consumer = consumer;
+    return this;
+  }
+
+  /**
+   * Run EXPLAIN for the statements over the threshold on the async executor of the database, the plan is
+   * set on the {@link SlowQuery} once known.
+   *
+   * @param database database the statements ran on
+   * @return SlowQueryLog
+   */
+  public SlowQueryLog explain(DatabaseWrapper database) {
+    this.explainer = database;
+    return this;
+  }
+
+  @Override
+  public void onStatement(StatementEvent event) {
+    if (null == event.getSql()) {
+      return;
+    }
+    boolean slow = event.getElapsedNanos() >= thresholdNanos;
+    if (!slow && (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+      return;
+    }
+    Object[] params = null == event.getParams() ? null
+        : redactor.redact(event.getSql(), event.getParams().clone());
+    SlowQuery query = new SlowQuery(event, params, CallSites.of(), slow);
+    AtomicReferenceArray<SlowQuery> ring = this.recent;
+    ring.set((int) (captured.getAndIncrement() % ring.length()), query);
+    if (null != consumer) {
+      consumer.accept(query);
+    }
+    DatabaseWrapper database = this.explainer;
+    if (slow && null != database && event.getOperation() != Operation.OTHER) {
+      Object[] values = event.getParams();
+      database.asyncExecutor().execute(() -> query.plan(explain(database, query.getSql(), values)));
+    }
+  }
+
+  /**
+   * @return captured statements, the most recent first
+   */
+  public List<SlowQuery> recent() {
+    AtomicReferenceArray<SlowQuery> ring = this.recent;
+    long last = captured.get();
+    List<SlowQuery> queries = new ArrayList<>(ring.length());
+    for (long i = last - 1; i >= Math.max(0, last - ring.length()); i--) {
+      SlowQuery query = ring.get((int) (i % ring.length()));
+      if (null != query) {
+        queries.add(query);
+      }
+    }
+    return queries;
+  }
+
+  /**
+   * Statements captured since the log was created.
+   */
+  public long captured() {
+    return captured.get();
+  }
+
+  /**
+   * EXPLAIN through plain JDBC, so that it is not itself seen by the listeners.
+   */
+  private static String explain(DatabaseWrapper database, String sql, Object[] params) {
+    try (org.sql2o.Connection sql2oConnection = database.getSql2o().open()) {
+      Connection connection = sql2oConnection.getJdbcConnection();
+      try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+        for (int i = 0; null != params && i < params.length; i++) {
+          statement.setObject(i + 1, params[i]);
+        }
+        StringBuilder plan = new StringBuilder();
+        try (ResultSet resultSet = statement.executeQuery()) {
+          int columns = resultSet.getMetaData().getColumnCount();
+          while (resultSet.next()) {
+            for (int i = 1; i <= columns; i++) {
+              plan.append(i > 1 ? " | " : "").append(resultSet.getString(i));
+            }
+            plan.append('\n');
+          }
+        }
+        return plan.toString().trim();
+      }
+    } catch (SQLException | RuntimeException e) {
+      return "EXPLAIN failed: " + e.getMessage();
+    }
+  }
+
+}
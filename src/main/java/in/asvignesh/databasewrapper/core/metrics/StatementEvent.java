@@ -0,0 +1,32 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * One executed statement, handed to the {@link QueryListener}s on the thread that ran it.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class StatementEvent {
+
+  private final Operation operation;
+  private final String sql;
+  private final Object[] params;
+  /**
+   * Model class of the query, null for plain SQL.
+   */
+  private final Class<?> modelClass;
+  /**
+   * Rows returned or affected.
+   */
+  private final long rows;
+  private final long elapsedNanos;
+  /**
+   * Failure of the statement, null when it succeeded.
+   */
+  private final Throwable error;
+
+}
@@ -0,0 +1,143 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Calls, time, rows and errors per statement {@link Fingerprint}, like pg_stat_statements. The
+ * fingerprints live in an open addressed table filled with compare-and-set and their counters are
+ * striped, so recording takes no lock. Fingerprints beyond the limit are added up under
+ * {@link #OTHER_STATEMENTS}; {@link #reset()} racing with recording may lose a few calls.
+ */
+public class StatementStatistics implements QueryListener {
+
+  public static final String OTHER_STATEMENTS = "(other)";
+
+  private final int maxFingerprints;
+  private final AtomicReferenceArray<Entry> slots;
+  private final AtomicInteger size = new AtomicInteger();
+  private final Entry other = new Entry(OTHER_STATEMENTS, 0);
+
+  public StatementStatistics() {
+    this(5000);
+  }
+
+  public StatementStatistics(int maxFingerprints) {
+    this.maxFingerprints = maxFingerprints;
+    this.slots = new AtomicReferenceArray<>(
+        Integer.highestOneBit(Math.max(maxFingerprints, 1) * 2 - 1) << 1);
+  }
+
+  @Override
+  public void onStatement(StatementEvent event) {
+    this.record(event.getOperation(), event.getSql(), event.getModelClass(), event.getRows(),
+        event.getElapsedNanos(), event.getError());
+  }
+
+  public void record(Operation operation, String sql, Class<?> modelClass, long rows,
+      long elapsedNanos, Throwable error) {
+    String fingerprint = null != sql ? Fingerprint.of(sql)
+        : operation + " " + (null != modelClass ? modelClass.getName() : "");
+    Entry entry = this.entry(fingerprint);
+    entry.calls.increment();
+    entry.totalNanos.add(elapsedNanos);
+    entry.rows.add(rows);
+    if (null != error) {
+      entry.errors.increment();
+    }
+    long max = entry.maxNanos.get();
+    while (elapsedNanos > max && !entry.maxNanos.compareAndSet(max, elapsedNanos)) {
+      max = entry.maxNanos.get();
+    }
+  }
+
+  /**
+   * @param limit number of fingerprints
+   * @return the fingerprints that took the most time in total, most expensive first
+   */
+  public List<StatementSummary> top(int limit) {
+    List<StatementSummary> summaries = new ArrayList<>(size.get() + 1);
+    for (int i = 0; i < slots.length(); i++) {
+      Entry entry = slots.get(i);
+      if (null != entry) {
+        summaries.add(entry.summary());
+      }
+    }
+    if (other.calls.sum() > 0) {
+      summaries.add(other.summary());
+    }
+    summaries.sort(Comparator.comparingLong(StatementSummary::getTotalNanos).reversed());
+    return summaries.size() > limit ? new ArrayList<>(summaries.subList(0, limit)) : summaries;
+  }
+
+  public int size() {
+    return size.get();
+  }
+
+  public void reset() {
+    for (int i = 0; i < slots.length(); i++) {
+      slots.set(i, null);
+    }
+    size.set(0);
+    other.reset();
+  }
+
+  private Entry entry(String fingerprint) {
+    int hash = fingerprint.hashCode();
+    hash ^= hash >>> 16;
+    int mask = slots.length() - 1;
+    for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+      Entry entry = slots.get(i);
+      if (null == entry) {
+        if (size.get() >= maxFingerprints) {
+          return other;
+        }
+        Entry created = new Entry(fingerprint, hash);
+        if (slots.compareAndSet(i, null, created)) {
+          size.incrementAndGet();
+          return created;
+        }
+        entry = slots.get(i);
+      }
+      if (entry.hash == hash && entry.fingerprint.equals(fingerprint)) {
+        return entry;
+      }
+    }
+    return other;
+  }
+
+  private static class Entry {
+
+    private final String fingerprint;
+    private final int hash;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    Entry(String fingerprint, int hash) {
+      this.fingerprint = fingerprint;
+      this.hash = hash;
+    }
+
+    StatementSummary summary() {
+      return new StatementSummary(fingerprint, calls.sum(), totalNanos.sum(), maxNanos.get(),
+          rows.sum(), errors.sum());
+    }
+
+    void reset() {
+      calls.reset();
+      totalNanos.reset();
+      maxNanos.set(0);
+      rows.reset();
+      errors.reset();
+    }
+  }
+
+}
@@ -0,0 +1,27 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Totals of one statement {@link Fingerprint}, a snapshot taken by
+ * {@link StatementStatistics#top(int)}.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class StatementSummary {
+
+  private final String fingerprint;
+  private final long calls;
+  private final long totalNanos;
+  private final long maxNanos;
+  private final long rows;
+  private final long errors;
+
+  public long getMeanNanos() {
+    return calls > 0 ? totalNanos / calls : 0;
+  }
+
+}
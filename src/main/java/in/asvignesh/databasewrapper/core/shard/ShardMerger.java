@@ -0,0 +1,143 @@
+package in.asvignesh.databasewrapper.core.shard;
+
+import static in.asvignesh.databasewrapper.core.DatabaseCache.computeModelColumnMappings;
+import static in.asvignesh.databasewrapper.core.DatabaseCache.getGetterName;
+
+import in.asvignesh.databasewrapper.dialect.Dialect;
+import in.asvignesh.databasewrapper.utils.DatabaseUtils;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Combines the per-shard results of a scatter query.
+ */
+@UtilityClass
+public class ShardMerger {
+
+  /**
+   * K-way merge of lists that are each already sorted by the comparator.
+   *
+   * @param parts sorted result per shard
+   * @param comparator row order, null keeps shard order
+   * @return merged rows
+   */
+  public static <T> List<T> merge(List<List<T>> parts, Comparator<? super T> comparator) {
+    int total = parts.stream().mapToInt(List::size).sum();
+    List<T> merged = new ArrayList<>(total);
+    if (null == comparator) {
+      parts.forEach(merged::addAll);
+      return merged;
+    }
+    PriorityQueue<Cursor<T>> heap = new PriorityQueue<>(Math.max(parts.size(), 1),
+        (a, b) -> comparator.compare(a.head, b.head));
+    for (List<T> part : parts) {
+      Cursor<T> cursor = new Cursor<>(part.iterator());
+      if (cursor.advance()) {
+        heap.add(cursor);
+      }
+    }
+    while (!heap.isEmpty()) {
+      Cursor<T> cursor = heap.poll();
+      merged.add(cursor.head);
+      if (cursor.advance()) {
+        heap.add(cursor);
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * Build a comparator for model rows from an ORDER BY clause like " age DESC, name".
+   *
+   * @param modelClass model class type
+   * @param orderBy order by clause
+   * @param textOrder order of string values, see {@link Dialect#textOrder()}
+   * @return comparator, null when there is nothing to order by
+   */
+  public static <T> Comparator<T> modelComparator(Class<T> modelClass, String orderBy,
+      Comparator<String> textOrder) {
+    Map<String, String> columnMappings = computeModelColumnMappings(modelClass);
+    return comparator(orderBy, textOrder, column -> {
+      String fieldName = columnMappings.getOrDefault(column, DatabaseUtils.toCamelName(column));
+      String getterName = getGetterName(fieldName);
+      return row -> DatabaseUtils.invokeMethod(row, getterName, DatabaseUtils.EMPTY_ARG);
+    });
+  }
+
+  /**
+   * Build a comparator for map rows from an ORDER BY clause.
+   *
+   * @param orderBy order by clause
+   * @param textOrder order of string values, see {@link Dialect#textOrder()}
+   * @return comparator, null when there is nothing to order by
+   */
+  public static Comparator<Map<String, Object>> mapComparator(String orderBy,
+      Comparator<String> textOrder) {
+    return comparator(orderBy, textOrder, column -> row -> {
+      Object value = row.get(column);
+      return null != value ? value : row.get(column.toLowerCase());
+    });
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> Comparator<T> comparator(String orderBy, Comparator<String> textOrder,
+      Function<String, Function<T, Object>> accessor) {
+    if (DatabaseUtils.isEmpty(orderBy) || orderBy.trim().isEmpty()) {
+      return null;
+    }
+    Comparator<T> comparator = null;
+    for (String item : orderBy.split(",")) {
+      String[] parts = item.trim().split("\\s+");
+      String column = parts[0];
+      int dot = column.lastIndexOf('.');
+      column = dot >= 0 ? column.substring(dot + 1) : column;
+      boolean desc = parts.length > 1 && "DESC".equalsIgnoreCase(parts[1]);
+
+      Function<T, Object> value = accessor.apply(column);
+      Comparator<T> next = (a, b) -> {
+        Object left = value.apply(a);
+        Object right = value.apply(b);
+        if (left == right) {
+          return 0;
+        }
+        if (null == left) {
+          return -1;
+        }
+        if (null == right) {
+          return 1;
+        }
+        return left instanceof String && right instanceof String
+            ? textOrder.compare((String) left, (String) right)
+            : ((Comparable<Object>) left).compareTo(right);
+      };
+      next = desc ? next.reversed() : next;
+      comparator = null == comparator ? next : comparator.thenComparing(next);
+    }
+    return comparator;
+  }
+
+  private static class Cursor<T> {
+
+    private final Iterator<T> iterator;
+    private T head;
+
+    Cursor(Iterator<T> iterator) {
+      this.iterator = iterator;
+    }
+
+    boolean advance() {
+      if (!iterator.hasNext()) {
+        return false;
+      }
+      head = iterator.next();
+      return true;
+    }
+  }
+
+}
@@ -0,0 +1,24 @@
+package in.asvignesh.databasewrapper.core.shard;
+
+/**
+ * Maps a shard key value to the index of the shard that owns it.
+ */
+@FunctionalInterface
+public interface ShardStrategy {
+
+  /**
+   * Modulo routing, numeric keys by value and everything else by hash code.
+   */
+  ShardStrategy MODULO = (shardKey, shardCount) -> {
+    long hash = shardKey instanceof Number ? ((Number) shardKey).longValue() : shardKey.hashCode();
+    return (int) Math.floorMod(hash, (long) shardCount);
+  };
+
+  /**
+   * @param shardKey shard key value, never null
+   * @param shardCount number of configured shards
+   * @return shard index in [0, shardCount)
+   */
+  int shardOf(Object shardKey, int shardCount);
+
+}
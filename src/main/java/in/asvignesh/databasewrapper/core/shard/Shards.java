@@ -0,0 +1,107 @@
+package in.asvignesh.databasewrapper.core.shard;
+
+import static in.asvignesh.databasewrapper.utils.Functions.ifNullThrow;
+import static in.asvignesh.databasewrapper.utils.Functions.ifThrow;
+
+import in.asvignesh.databasewrapper.exception.DatabaseWrapperException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.sql2o.Sql2o;
+
+/**
+ * A fixed set of databases holding horizontal partitions of the sharded models.
+ */
+public class Shards {
+
+  private static final AtomicInteger POOL_SEQUENCE = new AtomicInteger();
+
+  private final List<Sql2o> databases;
+  private final ShardStrategy strategy;
+  private final ExecutorService executor;
+
+  public Shards(ShardStrategy strategy, List<Sql2o> databases) {
+    this(strategy, databases, newExecutor(databases.size()));
+  }
+
+  public Shards(ShardStrategy strategy, List<Sql2o> databases, ExecutorService executor) {
+    ifThrow(null == databases || databases.isEmpty(),
+        new DatabaseWrapperException("shards not be empty."));
+    this.databases = Collections.unmodifiableList(new ArrayList<>(databases));
+    this.strategy = strategy;
+    this.executor = executor;
+  }
+
+  public static Shards of(Sql2o... databases) {
+    return new Shards(ShardStrategy.MODULO, Arrays.asList(databases));
+  }
+
+  public int size() {
+    return databases.size();
+  }
+
+  public List<Sql2o> databases() {
+    return databases;
+  }
+
+  /**
+   * Find the database owning a shard key.
+   *
+   * @param shardKey shard key value
+   * @return shard database
+   */
+  public Sql2o route(Object shardKey) {
+    ifNullThrow(shardKey, new DatabaseWrapperException("shard key value not be null."));
+    return databases.get(strategy.shardOf(shardKey, databases.size()));
+  }
+
+  /**
+   * Run a function against every shard and gather the results in shard order.
+   *
+   * @param function work to run per shard
+   * @param parallel run the shards concurrently, otherwise one after another on the caller
+   * @return one result per shard
+   */
+  public <R> List<R> scatter(Function<Sql2o, R> function, boolean parallel) {
+    List<R> results = new ArrayList<>(databases.size());
+    if (!parallel || databases.size() == 1) {
+      databases.forEach(database -> results.add(function.apply(database)));
+      return results;
+    }
+    List<Future<R>> futures = new ArrayList<>(databases.size());
+    databases.forEach(database -> futures.add(executor.submit(() -> function.apply(database))));
+    try {
+      for (Future<R> future : futures) {
+        results.add(future.get());
+      }
+      return results;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DatabaseWrapperException("Interrupted while waiting for shards", e);
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+          : new DatabaseWrapperException("Shard execution error", e.getCause());
+    } finally {
+      futures.forEach(future -> future.cancel(true));
+    }
+  }
+
+  private static ExecutorService newExecutor(int size) {
+    int pool = POOL_SEQUENCE.incrementAndGet();
+    AtomicInteger sequence = new AtomicInteger();
+    return Executors.newFixedThreadPool(Math.max(size, 1), runnable -> {
+      Thread thread = new Thread(runnable,
+          "databasewrapper-shard-" + pool + "-" + sequence.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+}
@@ -0,0 +1,247 @@
+package in.asvignesh.databasewrapper.core.tenant;
+
+import static in.asvignesh.databasewrapper.utils.Functions.ifNotNullThen;
+import static in.asvignesh.databasewrapper.utils.Functions.ifNullThrow;
+import static in.asvignesh.databasewrapper.utils.Functions.ifThrow;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import in.asvignesh.databasewrapper.exception.DatabaseWrapperException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.sql2o.connectionsources.ConnectionSource;
+import org.sql2o.connectionsources.DataSourceConnectionSource;
+
+/**
+ * Per-tenant databases for one process. At most {@code maxTenants} databases are open at a time;
+ * the least recently used one is evicted and its pool closed once no caller is still using it.
+ */
+public class TenantRegistry {
+
+  private final int maxTenants;
+  private final Function<String, DatabaseWrapper> factory;
+  private final Map<String, Tenant> tenants = new LinkedHashMap<>(16, 0.75f, true);
+  /**
+   * Databases being created by the factory, outside of the lock; other callers for the same
+   * tenant wait for them.
+   */
+  private final Map<String, CompletableFuture<Tenant>> creating = new HashMap<>(4);
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * @param maxTenants maximum number of open tenant databases
+   * @param factory creates the database of a tenant, usually with its own pool and dialect
+   */
+  public TenantRegistry(int maxTenants, Function<String, DatabaseWrapper> factory) {
+    ifThrow(maxTenants < 1, new DatabaseWrapperException("maxTenants must be positive."));
+    ifNullThrow(factory, new DatabaseWrapperException("tenant factory not be null."));
+    this.maxTenants = maxTenants;
+    this.factory = factory;
+  }
+
+  /**
+   * Run code with the database of a tenant as the current one.
+   *
+   * @param tenantId tenant id
+   * @param runnable the code snippet to execute.
+   */
+  public void run(String tenantId, Runnable runnable) {
+    this.call(tenantId, () -> {
+      runnable.run();
+      return null;
+    });
+  }
+
+  /**
+   * Run code with the database of a tenant as the current one and return its result.
+   *
+   * @param tenantId tenant id
+   * @param supplier the code snippet to execute.
+   * @return result of the supplier
+   */
+  public <R> R call(String tenantId, Supplier<R> supplier) {
+    Tenant tenant = this.lease(tenantId);
+    try {
+      return tenant.db.call(supplier);
+    } finally {
+      this.release(tenant);
+    }
+  }
+
+  /**
+   * The database of a tenant, created on first use. It may be closed by a later eviction, prefer
+   * {@link #run(String, Runnable)} which keeps it open while in use.
+   *
+   * @param tenantId tenant id
+   * @return DatabaseWrapper
+   */
+  public DatabaseWrapper get(String tenantId) {
+    Tenant tenant = this.lease(tenantId);
+    this.release(tenant);
+    return tenant.db;
+  }
+
+  /**
+   * Close and forget the database of a tenant.
+   *
+   * @param tenantId tenant id
+   */
+  public void evict(String tenantId) {
+    Tenant tenant;
+    lock.lock();
+    try {
+      tenant = tenants.remove(tenantId);
+    } finally {
+      lock.unlock();
+    }
+    ifNotNullThen(tenant, () -> this.retire(tenant));
+  }
+
+  /**
+   * Close the databases of all tenants.
+   */
+  public void close() {
+    List<Tenant> evicted;
+    lock.lock();
+    try {
+      evicted = new ArrayList<>(tenants.values());
+      tenants.clear();
+    } finally {
+      lock.unlock();
+    }
+    evicted.forEach(this::retire);
+  }
+
+  public int size() {
+    lock.lock();
+    try {
+      return tenants.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Tenant lease(String tenantId) {
+    ifNullThrow(tenantId, new DatabaseWrapperException("tenant id not be null."));
+    while (true) {
+      CompletableFuture<Tenant> pending;
+      boolean creator = false;
+      lock.lock();
+      try {
+        Tenant tenant = tenants.get(tenantId);
+        if (null != tenant) {
+          tenant.leases.incrementAndGet();
+          return tenant;
+        }
+        pending = creating.get(tenantId);
+        if (null == pending) {
+          pending = new CompletableFuture<>();
+          creating.put(tenantId, pending);
+          creator = true;
+        }
+      } finally {
+        lock.unlock();
+      }
+      if (creator) {
+        return this.create(tenantId, pending);
+      }
+      try {
+        // the tenant may be evicted again before it is leased here, then it is created anew
+        pending.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+      }
+    }
+  }
+
+  /**
+   * Create the database of a tenant without holding the lock, so a slow pool does not block the
+   * other tenants, then register it leased once.
+   */
+  private Tenant create(String tenantId, CompletableFuture<Tenant> pending) {
+    Tenant tenant;
+    try {
+      tenant = new Tenant(factory.apply(tenantId));
+    } catch (RuntimeException | Error e) {
+      lock.lock();
+      try {
+        creating.remove(tenantId);
+      } finally {
+        lock.unlock();
+      }
+      pending.completeExceptionally(e);
+      throw e;
+    }
+    List<Tenant> evicted = new ArrayList<>(1);
+    lock.lock();
+    try {
+      creating.remove(tenantId);
+      tenants.put(tenantId, tenant);
+      tenant.leases.incrementAndGet();
+      Iterator<Tenant> eldest = tenants.values().iterator();
+      while (tenants.size() > maxTenants && eldest.hasNext()) {
+        evicted.add(eldest.next());
+        eldest.remove();
+      }
+    } finally {
+      lock.unlock();
+    }
+    pending.complete(tenant);
+    evicted.forEach(this::retire);
+    return tenant;
+  }
+
+  private void release(Tenant tenant) {
+    if (tenant.leases.decrementAndGet() == 0 && tenant.retired) {
+      tenant.close();
+    }
+  }
+
+  private void retire(Tenant tenant) {
+    tenant.retired = true;
+    if (tenant.leases.get() == 0) {
+      tenant.close();
+    }
+  }
+
+  private static class Tenant {
+
+    private final DatabaseWrapper db;
+    private final AtomicInteger leases = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile boolean retired;
+
+    Tenant(DatabaseWrapper db) {
+      ifNullThrow(db, new DatabaseWrapperException("tenant database not be null."));
+      this.db = db;
+    }
+
+    void close() {
+      if (!closed.compareAndSet(false, true)) {
+        return;
+      }
+      db.stopPersistingCaches();
+      ConnectionSource source = db.getSql2o().getConnectionSource();
+      Object pool = source instanceof DataSourceConnectionSource
+          ? ((DataSourceConnectionSource) source).getDataSource() : source;
+      if (pool instanceof AutoCloseable) {
+        try {
+          ((AutoCloseable) pool).close();
+        } catch (Exception e) {
+//          log.warn("Close tenant datasource error", e);
+        }
+      }
+    }
+  }
+
+}
@@ -8,7 +8,10 @@ import in.asvignesh.databasewrapper.core.SQLParams;
 import in.asvignesh.databasewrapper.exception.DatabaseWrapperException;
 import in.asvignesh.databasewrapper.utils.DatabaseUtils;
 import java.lang.reflect.Field;
+import java.text.Collator;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 
 public interface Dialect {
 
@@ -173,4 +176,16 @@ public interface Dialect {
 
   String paginate(SQLParams sqlParams);
 
+  /**
+   * Order of strings under the default collation of the database, for rows of several statements
+   * merged in memory. By default case, accents and trailing spaces are ignored, like the default
+   * collations of MySQL.
+   */
+  default Comparator<String> textOrder() {
+    Collator collator = Collator.getInstance(Locale.ROOT);
+    collator.setStrength(Collator.PRIMARY);
+    return (a, b) -> collator.compare(DatabaseUtils.trimTrailingSpaces(a),
+        DatabaseUtils.trimTrailingSpaces(b));
+  }
+
 }
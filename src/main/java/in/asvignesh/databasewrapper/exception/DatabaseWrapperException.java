@@ -23,10 +23,12 @@ public class DatabaseWrapperException extends RuntimeException {
 
   public DatabaseWrapperException(String message, Throwable cause) {
     super(message, cause);
+    this.message = message;
   }
 
   public DatabaseWrapperException(String message) {
     super(message);
+    this.message = message;
   }
 
   public DatabaseWrapperException(Throwable cause) {
@@ -52,6 +52,14 @@ public class DatabaseUtils {
     return null == value || value.isEmpty();
   }
 
+  public static String trimTrailingSpaces(String value) {
+    int end = value.length();
+    while (end > 0 && value.charAt(end - 1) == ' ') {
+      end--;
+    }
+    return end == value.length() ? value : value.substring(0, end);
+  }
+
   public static String toCamelName(String value) {
     String[] partOfNames = value.split("_");
 
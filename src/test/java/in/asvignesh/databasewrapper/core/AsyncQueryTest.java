@@ -0,0 +1,47 @@
+package in.asvignesh.databasewrapper.core;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.atomic;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.execute;
+import static org.junit.Assert.assertEquals;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncQueryTest {
+
+  private DatabaseWrapper other;
+
+  @Before
+  public void setUp() {
+    DatabaseWrapper.open("jdbc:h2:mem:async;DB_CLOSE_DELAY=-1", "sa", "");
+    execute("DROP TABLE IF EXISTS notes");
+    execute("CREATE TABLE notes (id BIGINT PRIMARY KEY, text VARCHAR(20))");
+    execute("INSERT INTO notes VALUES (1, 'a'), (2, 'b'), (3, 'c')");
+    other = DatabaseWrapper.create("jdbc:h2:mem:async_other;DB_CLOSE_DELAY=-1", "sa", "");
+    other.run(() -> {
+      execute("DROP TABLE IF EXISTS notes");
+      execute("CREATE TABLE notes (id BIGINT PRIMARY KEY, text VARCHAR(20))");
+      execute("INSERT INTO notes VALUES (1, 'a')");
+    });
+  }
+
+  @Test
+  public void reusedQueryRunsInTheDatabaseCurrentAtEachCall() {
+    Query<Note> query = new Query<>(Note.class);
+    assertEquals(3, (long) query.countAsync().join());
+    assertEquals(1, (long) other.call(query::countAsync).join());
+    assertEquals(3, (long) query.countAsync().join());
+  }
+
+  @Test
+  public void reusedQueryDoesNotKeepAnEndedTransaction() {
+    Query<Note> query = new Query<>(Note.class);
+    atomic(() -> {
+      execute("INSERT INTO notes VALUES (4, 'd')");
+      assertEquals(4, (long) query.countAsync().join());
+    });
+    assertEquals(4, (long) query.countAsync().join());
+  }
+
+}
@@ -0,0 +1,82 @@
+package in.asvignesh.databasewrapper.core;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.execute;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import in.asvignesh.databasewrapper.core.metrics.QueryListener;
+import in.asvignesh.databasewrapper.core.metrics.StatementEvent;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchLoaderTest {
+
+  private final List<StatementEvent> statements = new CopyOnWriteArrayList<>();
+
+  @Before
+  public void setUp() {
+    DatabaseWrapper db = DatabaseWrapper.open("jdbc:h2:mem:loader;DB_CLOSE_DELAY=-1", "sa", "");
+    execute("DROP TABLE IF EXISTS notes");
+    execute("CREATE TABLE notes (id BIGINT PRIMARY KEY, text VARCHAR(20))");
+    execute("INSERT INTO notes VALUES (1, 'a'), (2, 'b'), (3, 'c'), (4, 'd'), (5, 'e')");
+    db.enableSQLStatistic(true);
+    db.metrics().addListener(new QueryListener() {
+      @Override
+      public void onStatement(StatementEvent event) {
+        statements.add(event);
+      }
+    });
+  }
+
+  private static Note join(CompletableFuture<Note> future) throws Exception {
+    return future.get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void idsCollectedInTheWindowAreLoadedWithOneQuery() throws Exception {
+    BatchLoader<Note> notes = BatchLoader.of(Note.class).window(Duration.ofMillis(50));
+    CompletableFuture<Note> first = notes.load(1L);
+    CompletableFuture<Note> third = notes.load(3L);
+    CompletableFuture<Note> again = notes.load(1L);
+
+    assertSame(first, again);
+    assertEquals("a", join(first).getText());
+    assertEquals("c", join(third).getText());
+    assertEquals(1, statements.size());
+    assertEquals(2, statements.get(0).getParams().length);
+  }
+
+  @Test
+  public void missingRowCompletesWithNull() throws Exception {
+    BatchLoader<Note> notes = BatchLoader.of(Note.class).window(Duration.ofMillis(50));
+    CompletableFuture<Note> missing = notes.load(9L);
+    CompletableFuture<Note> found = notes.load(2L);
+
+    assertNull(join(missing));
+    assertEquals("b", join(found).getText());
+    assertEquals(1, statements.size());
+  }
+
+  @Test
+  public void batchesAreBoundedByTheMaxSize() throws Exception {
+    BatchLoader<Note> notes = BatchLoader.of(Note.class).maxBatchSize(2)
+        .window(Duration.ofMinutes(1));
+    List<CompletableFuture<Note>> loaded = notes.loadMany(1L, 2L, 3L, 4L, 5L);
+    notes.dispatch();
+
+    for (int i = 0; i < loaded.size(); i++) {
+      assertEquals(i + 1, (long) join(loaded.get(i)).getId());
+    }
+    assertEquals(3, statements.size());
+    statements.forEach(statement -> assertTrue(statement.getParams().length <= 2));
+  }
+
+}
@@ -0,0 +1,18 @@
+package in.asvignesh.databasewrapper.core;
+
+import in.asvignesh.databasewrapper.DataModel;
+import in.asvignesh.databasewrapper.annotation.Cacheable;
+import in.asvignesh.databasewrapper.annotation.Table;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Table(name = "cached_notes")
+@Cacheable(maxSize = 100, ttlSeconds = 0)
+public class CachedNote extends DataModel {
+
+  private Long id;
+  private String text;
+
+}
@@ -0,0 +1,97 @@
+package in.asvignesh.databasewrapper.core;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.atomic;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.execute;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EntityCacheTest {
+
+  private DatabaseWrapper db;
+
+  @Before
+  public void setUp() {
+    db = DatabaseWrapper.open("jdbc:h2:mem:entities;DB_CLOSE_DELAY=-1", "sa", "");
+    execute("DROP TABLE IF EXISTS cached_notes");
+    execute("CREATE TABLE cached_notes (id BIGINT PRIMARY KEY, text VARCHAR(20))");
+    execute("INSERT INTO cached_notes VALUES (1, 'a'), (2, 'b')");
+  }
+
+  private static String text(long id) {
+    return new Query<>(CachedNote.class).byId(id).getText();
+  }
+
+  @Test
+  public void repeatedLookupIsServedFromTheCache() {
+    assertEquals("a", text(1));
+    CachedNote first = new Query<>(CachedNote.class).byId(1L);
+    CachedNote second = new Query<>(CachedNote.class).byId(1L);
+
+    assertEquals(2, db.entityCache(CachedNote.class).stats().hits());
+    assertNotSame(first, second);
+  }
+
+  @Test
+  public void modelWritesEvictTheirRows() {
+    assertEquals("a", text(1));
+    assertEquals("b", text(2));
+
+    new Query<CachedNote>(CachedNote.class).set(CachedNote::getText, "c").updateById(1L);
+    assertEquals(1, db.entityCache(CachedNote.class).size());
+    assertEquals("c", text(1));
+
+    new Query<CachedNote>(CachedNote.class).set(CachedNote::getText, "d")
+        .where(CachedNote::getId, 2L).update();
+    assertEquals("d", text(2));
+
+    new Query<CachedNote>(CachedNote.class).deleteById(1L);
+    assertNull(new Query<>(CachedNote.class).byId(1L));
+  }
+
+  @Test
+  public void rawUpdateEvictsTheCachedRows() {
+    assertEquals("a", text(1));
+    assertEquals(1, db.entityCache(CachedNote.class).size());
+
+    execute("UPDATE cached_notes SET text = 'x' WHERE id = 1");
+    assertEquals("x", text(1));
+  }
+
+  @Test
+  public void statementOnUnknownTablesEvictsEveryCache() {
+    assertEquals("a", text(1));
+
+    execute("/* bulk */ UPDATE cached_notes SET text = 'y'");
+    assertEquals("y", text(1));
+  }
+
+  @Test
+  public void rawUpdateInATransactionEvictsOnCommit() {
+    assertEquals("a", text(1));
+    atomic(() -> {
+      execute("UPDATE cached_notes SET text = 'z' WHERE id = 1");
+      // the transaction reads its own write, not the cached row
+      assertEquals("z", text(1));
+      assertEquals("b", text(2));
+    });
+    assertEquals("z", text(1));
+    assertEquals("b", text(2));
+  }
+
+  @Test
+  public void rowsReadBeforeTheCommitOfARawUpdateAreEvicted() {
+    atomic(() -> {
+      execute("UPDATE cached_notes SET text = 'w' WHERE id = 1");
+      // cached from another thread while the update is not committed
+      CompletableFuture.runAsync(() -> assertEquals("a", text(1))).join();
+    });
+    assertEquals("w", text(1));
+  }
+
+}
@@ -0,0 +1,20 @@
+package in.asvignesh.databasewrapper.core;
+
+import in.asvignesh.databasewrapper.DataModel;
+import in.asvignesh.databasewrapper.annotation.BloomGuard;
+import in.asvignesh.databasewrapper.annotation.Column;
+import in.asvignesh.databasewrapper.annotation.Table;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Table(name = "guarded_notes")
+@BloomGuard(expectedKeys = 1000, fpp = 0.0001, rebuildSeconds = 0)
+public class GuardedNote extends DataModel {
+
+  private Long id;
+  @Column(name = "text", updateOnDuplicate = true)
+  private String text;
+
+}
@@ -0,0 +1,60 @@
+package in.asvignesh.databasewrapper.core;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.atomic;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.execute;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IdentityMapTest {
+
+  @Before
+  public void setUp() {
+    DatabaseWrapper.open("jdbc:h2:mem:identities;DB_CLOSE_DELAY=-1", "sa", "");
+    execute("DROP TABLE IF EXISTS notes");
+    execute("CREATE TABLE notes (id BIGINT PRIMARY KEY, text VARCHAR(20))");
+    execute("INSERT INTO notes VALUES (1, 'a'), (2, 'b')");
+  }
+
+  private static Note note(long id) {
+    return new Query<>(Note.class).byId(id);
+  }
+
+  @Test
+  public void rowLoadedTwiceInATransactionIsOneInstance() {
+    atomic(() -> {
+      Note first = note(1);
+      assertSame(first, note(1));
+      assertSame(first, new Query<>(Note.class).byIds(1L, 2L).get(0));
+    });
+    assertNotSame(note(1), note(1));
+  }
+
+  @Test
+  public void rawUpdateInATransactionReloadsTheRows() {
+    atomic(() -> {
+      Note loaded = note(1);
+      execute("UPDATE notes SET text = 'x' WHERE id = 1");
+      Note reloaded = note(1);
+
+      assertNotSame(loaded, reloaded);
+      assertEquals("x", reloaded.getText());
+    });
+  }
+
+  @Test
+  public void statementOnUnknownTablesReloadsEveryRow() {
+    atomic(() -> {
+      Note loaded = note(2);
+      execute("/* bulk */ UPDATE notes SET text = 'y'");
+
+      assertNotSame(loaded, note(2));
+      assertEquals("y", note(2).getText());
+    });
+  }
+
+}
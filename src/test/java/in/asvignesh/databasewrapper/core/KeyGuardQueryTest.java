@@ -0,0 +1,55 @@
+package in.asvignesh.databasewrapper.core;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.execute;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import in.asvignesh.databasewrapper.core.cache.KeyGuard;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KeyGuardQueryTest {
+
+  private KeyGuard guard;
+
+  @Before
+  public void setUp() {
+    DatabaseWrapper.open("jdbc:h2:mem:guarded;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+    execute("DROP TABLE IF EXISTS guarded_notes");
+    execute("CREATE TABLE guarded_notes (id BIGINT AUTO_INCREMENT PRIMARY KEY, text VARCHAR(20))");
+    execute("INSERT INTO guarded_notes (text) VALUES ('a'), ('b')");
+    guard = new Query<>(GuardedNote.class).keyGuard();
+    guard.rebuild();
+    assertTrue(guard.isReady());
+  }
+
+  @Test
+  public void generatedKeyOfAnUpsertIsGuarded() {
+    GuardedNote note = new GuardedNote();
+    note.setText("c");
+    Object id = note.saveOrUpdateOnDuplicate().asLong();
+
+    assertTrue(guard.isReady());
+    GuardedNote found = new Query<>(GuardedNote.class).byId(id);
+    assertNotNull(found);
+    assertEquals("c", found.getText());
+  }
+
+  @Test
+  public void keyInsertedInATransactionSurvivesABuildBeforeTheCommit() {
+    Transaction transaction = Transaction.begin();
+    GuardedNote note = new GuardedNote();
+    note.setText("d");
+    Object id = transaction.call(() -> note.save().asLong());
+
+    // the scan runs on its own connection and does not see the uncommitted row
+    guard.rebuild();
+    transaction.commit();
+
+    assertTrue(guard.isReady());
+    assertNotNull(new Query<>(GuardedNote.class).byId(id));
+  }
+
+}
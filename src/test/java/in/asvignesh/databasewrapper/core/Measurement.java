@@ -0,0 +1,24 @@
+package in.asvignesh.databasewrapper.core;
+
+import in.asvignesh.databasewrapper.DataModel;
+import in.asvignesh.databasewrapper.annotation.Table;
+import java.math.BigDecimal;
+import java.util.Date;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Table(name = "measurements")
+public class Measurement extends DataModel {
+
+  private Long id;
+  private String name;
+  private Integer count;
+  private Double score;
+  private Boolean active;
+  private BigDecimal price;
+  private Date takenAt;
+  private byte[] payload;
+
+}
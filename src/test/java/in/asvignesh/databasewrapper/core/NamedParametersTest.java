@@ -0,0 +1,43 @@
+package in.asvignesh.databasewrapper.core;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.select;
+import static org.junit.Assert.assertEquals;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import java.util.Map;
+import org.junit.Test;
+
+public class NamedParametersTest {
+
+  @Test
+  public void placeholdersAreNumberedInOrder() {
+    assertEquals("a = :p1 AND b IN (:p2, :p3)",
+        Query.toNamedParameters("a = ? AND b IN (?, ?)"));
+  }
+
+  @Test
+  public void literalsAndCommentsKeepTheirQuestionMarks() {
+    assertEquals("note = 'why?' AND id = :p1", Query.toNamedParameters("note = 'why?' AND id = ?"));
+    assertEquals("note = 'it''s ?' AND \"a?\" = :p1",
+        Query.toNamedParameters("note = 'it''s ?' AND \"a?\" = ?"));
+    assertEquals("-- why?\nid = :p1 /* ? */ AND x = :p2",
+        Query.toNamedParameters("-- why?\nid = ? /* ? */ AND x = ?"));
+    assertEquals("tags ?? 'a' AND id = :p1", Query.toNamedParameters("tags ?? 'a' AND id = ?"));
+  }
+
+  @Test
+  public void unterminatedLiteralIsKept() {
+    assertEquals("a = :p1 AND b = 'x?", Query.toNamedParameters("a = ? AND b = 'x?"));
+  }
+
+  @Test
+  public void questionMarkInLiteralDoesNotShiftParameters() {
+    DatabaseWrapper.create("jdbc:h2:mem:named;DB_CLOSE_DELAY=-1", "sa", "").run(() -> {
+      Map<String, Object> row = select()
+          .bySQL("SELECT 'why?' AS note, CAST(? AS INT) AS id", 7).maps().get(0);
+      assertEquals("why?", row.get("note"));
+      assertEquals(7, row.get("id"));
+    });
+  }
+
+}
@@ -0,0 +1,16 @@
+package in.asvignesh.databasewrapper.core;
+
+import in.asvignesh.databasewrapper.DataModel;
+import in.asvignesh.databasewrapper.annotation.Table;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Table(name = "notes")
+public class Note extends DataModel {
+
+  private Long id;
+  private String text;
+
+}
@@ -0,0 +1,97 @@
+package in.asvignesh.databasewrapper.core;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.execute;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import in.asvignesh.databasewrapper.core.metrics.QueryListener;
+import in.asvignesh.databasewrapper.core.metrics.StatementEvent;
+import in.asvignesh.databasewrapper.exception.DatabaseWrapperException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.sql2o.Sql2oException;
+
+public class QueryListenerTest {
+
+  private final DatabaseWrapperException failure = new DatabaseWrapperException("listener");
+  private final AtomicInteger notified = new AtomicInteger();
+  private DatabaseWrapper db;
+
+  @Before
+  public void setUp() {
+    db = DatabaseWrapper.open("jdbc:h2:mem:listeners;DB_CLOSE_DELAY=-1", "sa", "");
+    execute("DROP TABLE IF EXISTS notes");
+    execute("CREATE TABLE notes (id BIGINT PRIMARY KEY, text VARCHAR(20))");
+    db.enableSQLStatistic(true);
+  }
+
+  private void failingOnStatements() {
+    db.metrics().addListener(new QueryListener() {
+      @Override
+      public void onStatement(StatementEvent event) {
+        throw failure;
+      }
+    });
+    db.metrics().addListener(new QueryListener() {
+      @Override
+      public void onStatement(StatementEvent event) {
+        notified.incrementAndGet();
+      }
+    });
+  }
+
+  @Test
+  public void failedStatementKeepsItsException() {
+    this.failingOnStatements();
+    try {
+      execute("INSERT INTO missing VALUES (1)");
+      fail();
+    } catch (Sql2oException e) {
+      assertSame(failure, e.getSuppressed()[0]);
+    }
+    assertEquals(1, notified.get());
+  }
+
+  @Test
+  public void listenerFailureOfASucceededStatementReachesTheCaller() {
+    this.failingOnStatements();
+    try {
+      execute("INSERT INTO notes VALUES (1, 'a')");
+      fail();
+    } catch (DatabaseWrapperException e) {
+      assertSame(failure, e);
+    }
+    assertEquals(1, notified.get());
+  }
+
+  @Test
+  public void listenerFailureOnConnectionGivesTheConnectionBack() throws Exception {
+    QueryListener listener = new QueryListener() {
+      @Override
+      public void onConnection(long elapsedNanos) {
+        throw failure;
+      }
+    };
+    db.metrics().addListener(listener);
+    Transaction transaction = Transaction.begin();
+    try {
+      transaction.run(() -> execute("INSERT INTO notes VALUES (1, 'a')"));
+      fail();
+    } catch (DatabaseWrapperException e) {
+      assertSame(failure, e);
+    }
+    db.metrics().removeListener(listener);
+
+    // another thread can take its turn on the connection of the transaction
+    CompletableFuture.runAsync(transaction.wrap(() -> execute("INSERT INTO notes VALUES (2, 'b')")))
+        .get(5, TimeUnit.SECONDS);
+    transaction.commit();
+    assertEquals(1, (long) new Query<>(Note.class).count());
+  }
+
+}
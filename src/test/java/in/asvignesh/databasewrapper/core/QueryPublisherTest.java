@@ -0,0 +1,152 @@
+package in.asvignesh.databasewrapper.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import in.asvignesh.databasewrapper.core.cache.Country;
+import in.asvignesh.databasewrapper.core.metrics.ConnectionTracker;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.sql2o.ResultSetIterable;
+
+public class QueryPublisherTest {
+
+  @Test
+  public void emitsRequestedRowsAndCompletes() {
+    Rows rows = new Rows(1, 2, 3);
+    Recorder recorder = new Recorder(Long.MAX_VALUE, -1);
+    new QueryPublisher<>(Runnable::run, 2, () -> rows, null).subscribe(recorder);
+
+    assertEquals(Arrays.asList(1, 2, 3), recorder.received);
+    assertTrue(recorder.completed);
+    assertTrue(rows.closed);
+  }
+
+  @Test
+  public void subscriberThrowingFromOnNextIsCancelledWithoutSignal() {
+    Rows rows = new Rows(1, 2, 3);
+    Recorder recorder = new Recorder(Long.MAX_VALUE, 2);
+    new QueryPublisher<>(Runnable::run, 10, () -> rows, null).subscribe(recorder);
+
+    assertEquals(Arrays.asList(1, 2), recorder.received);
+    assertNull(recorder.error);
+    assertFalse(recorder.completed);
+    assertTrue(rows.closed);
+  }
+
+  @Test
+  public void sharedConnectionIsReadUnderTheLockAndEmittedOutsideIt() {
+    ReentrantLock lock = new ReentrantLock();
+    Rows rows = new Rows(1, 2, 3);
+    List<Boolean> heldOnRead = new ArrayList<>();
+    Recorder recorder = new Recorder(Long.MAX_VALUE, -1) {
+      @Override
+      public void onNext(Integer row) {
+        assertFalse(lock.isHeldByCurrentThread());
+        super.onNext(row);
+      }
+    };
+    new QueryPublisher<>(Runnable::run, 2, () -> {
+      heldOnRead.add(lock.isHeldByCurrentThread());
+      return rows;
+    }, row -> heldOnRead.add(lock.isHeldByCurrentThread()), lock).subscribe(recorder);
+
+    assertEquals(Arrays.asList(1, 2, 3), recorder.received);
+    assertTrue(recorder.completed);
+    assertEquals(Arrays.asList(true, true, true, true), heldOnRead);
+    assertFalse(lock.isLocked());
+  }
+
+  @Test
+  public void poolConnectionIsCheckedOutAndBackIn() {
+    DatabaseWrapper database = DatabaseWrapper
+        .open("jdbc:h2:mem:publisher;DB_CLOSE_DELAY=-1", "sa", "")
+        .asyncExecutor(Runnable::run)
+        .trackConnections(new ConnectionTracker());
+    Recorder recorder = new Recorder(Long.MAX_VALUE, -1);
+    database.query(Country.class)
+        .publisher(Integer.class, "SELECT x FROM SYSTEM_RANGE(1, 3)", new Object[0], 2)
+        .subscribe(recorder);
+
+    assertEquals(Arrays.asList(1, 2, 3), recorder.received);
+    assertTrue(recorder.completed);
+    assertEquals(1, database.connectionTracker().checkouts());
+    assertTrue(database.connectionTracker().open().isEmpty());
+  }
+
+  private static class Rows implements ResultSetIterable<Integer> {
+
+    private final List<Integer> values;
+    private boolean closed;
+
+    Rows(Integer... values) {
+      this.values = Arrays.asList(values);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+      return values.iterator();
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    @Override
+    public boolean isAutoCloseConnection() {
+      return true;
+    }
+
+    @Override
+    public void setAutoCloseConnection(boolean autoCloseConnection) {
+    }
+  }
+
+  private static class Recorder implements Subscriber<Integer> {
+
+    private final long request;
+    private final int throwOn;
+    private final List<Integer> received = new ArrayList<>();
+    private Throwable error;
+    private boolean completed;
+
+    Recorder(long request, int throwOn) {
+      this.request = request;
+      this.throwOn = throwOn;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      subscription.request(request);
+    }
+
+    @Override
+    public void onNext(Integer row) {
+      received.add(row);
+      if (row == throwOn) {
+        throw new IllegalStateException("subscriber failure");
+      }
+    }
+
+    @Override
+    public void onError(Throwable error) {
+      this.error = error;
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+    }
+  }
+
+}
@@ -0,0 +1,20 @@
+package in.asvignesh.databasewrapper.core;
+
+import in.asvignesh.databasewrapper.DataModel;
+import in.asvignesh.databasewrapper.annotation.Table;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Table(name = "readings")
+public class Reading extends DataModel {
+
+  private long id;
+  private int count;
+  private double score;
+  private boolean active;
+  private String label;
+  private Long total;
+
+}
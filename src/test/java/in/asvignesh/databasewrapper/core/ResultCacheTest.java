@@ -0,0 +1,73 @@
+package in.asvignesh.databasewrapper.core;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.atomic;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.execute;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import java.time.Duration;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResultCacheTest {
+
+  private DatabaseWrapper db;
+
+  @Before
+  public void setUp() {
+    db = DatabaseWrapper.open("jdbc:h2:mem:results;DB_CLOSE_DELAY=-1", "sa", "");
+    execute("DROP TABLE IF EXISTS notes");
+    execute("CREATE TABLE notes (id BIGINT PRIMARY KEY, text VARCHAR(20))");
+    execute("INSERT INTO notes VALUES (1, 'a'), (2, 'b')");
+    execute("DROP TABLE IF EXISTS cached_notes");
+    execute("CREATE TABLE cached_notes (id BIGINT PRIMARY KEY, text VARCHAR(20))");
+  }
+
+  private static List<Note> notes() {
+    return new Query<>(Note.class).gt(Note::getId, 0L).cached(Duration.ofMinutes(1)).all();
+  }
+
+  @Test
+  public void repeatedQueryIsAnsweredFromTheCache() {
+    List<Note> first = notes();
+    List<Note> second = notes();
+
+    assertEquals(2, second.size());
+    assertEquals(1, db.resultCache().stats().hits());
+    assertNotSame(first.get(0), second.get(0));
+  }
+
+  @Test
+  public void writeToTheTableEvictsItsResults() {
+    assertEquals(2, notes().size());
+    execute("INSERT INTO notes VALUES (3, 'c')");
+    assertEquals(3, notes().size());
+
+    new Query<Note>(Note.class).deleteById(3L);
+    assertEquals(2, notes().size());
+    assertEquals(0, db.resultCache().stats().hits());
+  }
+
+  @Test
+  public void writeToAnotherTableKeepsTheResults() {
+    assertEquals(2, notes().size());
+    execute("INSERT INTO cached_notes VALUES (1, 'x')");
+
+    assertEquals(2, notes().size());
+    assertEquals(1, db.resultCache().stats().hits());
+  }
+
+  @Test
+  public void writeInATransactionEvictsOnCommit() {
+    assertEquals(2, notes().size());
+    atomic(() -> {
+      execute("INSERT INTO notes VALUES (3, 'c')");
+      // the transaction reads the database, not the cache
+      assertEquals(3, notes().size());
+    });
+    assertEquals(3, notes().size());
+  }
+
+}
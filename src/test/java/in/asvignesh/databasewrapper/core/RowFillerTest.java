@@ -0,0 +1,76 @@
+package in.asvignesh.databasewrapper.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.sql.Types;
+import org.h2.tools.SimpleResultSet;
+import org.junit.Test;
+import org.sql2o.quirks.NoQuirks;
+
+public class RowFillerTest {
+
+  private static final int ROWS = 20_000;
+
+  private static SimpleResultSet readings() {
+    SimpleResultSet rows = new SimpleResultSet();
+    rows.setAutoClose(false);
+    rows.addColumn("ID", Types.BIGINT, 19, 0);
+    rows.addColumn("COUNT", Types.INTEGER, 10, 0);
+    rows.addColumn("SCORE", Types.DOUBLE, 17, 0);
+    rows.addColumn("ACTIVE", Types.BOOLEAN, 1, 0);
+    rows.addColumn("LABEL", Types.VARCHAR, 10, 0);
+    rows.addColumn("TOTAL", Types.BIGINT, 19, 0);
+    for (long id = 1; id <= ROWS; id++) {
+      rows.addRow(1_000_000 + id, (int) id, id / 4.0, id % 2 == 0, "r" + id % 10, null);
+    }
+    return rows;
+  }
+
+  @Test
+  public void everyRowFillsTheSameInstance() throws SQLException {
+    SimpleResultSet rows = readings();
+    RowFiller<Reading> filler = new RowFiller<>(Reading.class, new NoQuirks());
+    assertTrue(rows.next());
+    Reading first = filler.fill(rows);
+    assertTrue(rows.next());
+    Reading second = filler.fill(rows);
+
+    assertSame(first, second);
+    assertEquals(1_000_002, second.getId());
+    assertEquals(2, second.getCount());
+    assertEquals(0.5, second.getScore(), 0);
+    assertTrue(second.isActive());
+    assertEquals("r2", second.getLabel());
+    assertNull(second.getTotal());
+  }
+
+  @Test
+  public void primitiveColumnsAreFilledWithoutAllocating() throws SQLException {
+    SimpleResultSet rows = readings();
+    RowFiller<Reading> filler = new RowFiller<>(Reading.class, new NoQuirks());
+    for (int warmup = 0; warmup < 5; warmup++) {
+      rows.beforeFirst();
+      while (rows.next()) {
+        filler.fill(rows);
+      }
+    }
+    rows.beforeFirst();
+    long before = allocatedBytes();
+    while (rows.next()) {
+      filler.fill(rows);
+    }
+    long bytes = allocatedBytes() - before;
+    assertTrue(bytes + " bytes for " + ROWS + " rows", bytes < ROWS);
+  }
+
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+}
@@ -0,0 +1,90 @@
+package in.asvignesh.databasewrapper.core;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.execute;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import in.asvignesh.databasewrapper.core.cache.SingleFlight;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+  private static volatile CountDownLatch gate = new CountDownLatch(0);
+
+  private final ExecutorService callers = Executors.newFixedThreadPool(3);
+  private SingleFlight flights;
+
+  /**
+   * Called from the SQL of the query, holds it until the test lets it go.
+   */
+  public static boolean held() throws InterruptedException {
+    return gate.await(10, TimeUnit.SECONDS);
+  }
+
+  @Before
+  public void setUp() {
+    DatabaseWrapper db = DatabaseWrapper.open("jdbc:h2:mem:flights;DB_CLOSE_DELAY=-1", "sa", "");
+    execute("DROP TABLE IF EXISTS notes");
+    execute("CREATE TABLE notes (id BIGINT PRIMARY KEY, text VARCHAR(20))");
+    execute("INSERT INTO notes VALUES (1, 'a'), (2, 'b')");
+    execute("CREATE ALIAS IF NOT EXISTS HELD FOR \"" + SingleFlightTest.class.getName()
+        + ".held\"");
+    flights = db.singleFlight();
+  }
+
+  @After
+  public void tearDown() {
+    gate.countDown();
+    callers.shutdownNow();
+  }
+
+  private CompletableFuture<List<Note>> notes(boolean coalesce) {
+    return CompletableFuture.supplyAsync(() -> {
+      Query<Note> query = new Query<>(Note.class).where("HELD()");
+      return (coalesce ? query.coalesce() : query).all();
+    }, callers);
+  }
+
+  @Test
+  public void concurrentIdenticalQueriesRunOnce() throws Exception {
+    gate = new CountDownLatch(1);
+    List<CompletableFuture<List<Note>>> results = new ArrayList<>();
+    results.add(this.notes(true));
+    while (flights.inFlight() == 0) {
+      Thread.sleep(5);
+    }
+    results.add(this.notes(true));
+    results.add(this.notes(true));
+    while (flights.coalesced() < 2) {
+      Thread.sleep(5);
+    }
+    gate.countDown();
+
+    for (CompletableFuture<List<Note>> result : results) {
+      assertEquals(2, result.get(10, TimeUnit.SECONDS).size());
+    }
+    assertEquals(1, flights.executions());
+    assertNotSame(results.get(0).get().get(0), results.get(1).get().get(0));
+    assertNotSame(results.get(1).get().get(0), results.get(2).get().get(0));
+  }
+
+  @Test
+  public void queriesNotMarkedRunOnTheirOwn() throws Exception {
+    this.notes(false).get(10, TimeUnit.SECONDS);
+    this.notes(false).get(10, TimeUnit.SECONDS);
+
+    assertEquals(0, flights.executions());
+    assertEquals(0, flights.inFlight());
+  }
+
+}
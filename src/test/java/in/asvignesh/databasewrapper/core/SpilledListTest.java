@@ -0,0 +1,110 @@
+package in.asvignesh.databasewrapper.core;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.execute;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpilledListTest {
+
+  private static final int ROWS = 500;
+
+  private DatabaseWrapper db;
+  private Path directory;
+
+  @Before
+  public void setUp() throws IOException {
+    db = DatabaseWrapper.open("jdbc:h2:mem:spill;DB_CLOSE_DELAY=-1", "sa", "");
+    execute("DROP TABLE IF EXISTS measurements");
+    execute("CREATE TABLE measurements (id BIGINT PRIMARY KEY, name VARCHAR(20), count INT, "
+        + "score DOUBLE, active BOOLEAN, price DECIMAL(10, 2), taken_at TIMESTAMP, "
+        + "payload VARBINARY(16))");
+    for (int id = 1; id <= ROWS; id++) {
+      // every seventh row leaves the nullable columns empty
+      boolean empty = id % 7 == 0;
+      execute("INSERT INTO measurements VALUES (?, ?, ?, ?, ?, ?, ?, ?)", id,
+          empty ? null : "m" + id, empty ? null : id * 3, empty ? null : id / 8.0,
+          empty ? null : id % 2 == 0, empty ? null : new java.math.BigDecimal(id + ".25"),
+          empty ? null : new java.sql.Timestamp(1_600_000_000_000L + id * 1000L),
+          empty ? null : new byte[]{(byte) id, 1, 2});
+    }
+    directory = Files.createTempDirectory("spill");
+    db.spillDirectory(directory);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    db.spillAfter(0, 0);
+    try (Stream<Path> files = Files.list(directory)) {
+      files.forEach(path -> path.toFile().delete());
+    }
+    Files.delete(directory);
+  }
+
+  private static List<Measurement> measurements() {
+    return new Query<>(Measurement.class).order("id").all();
+  }
+
+  @Test
+  public void spilledRowsReadBackAsFetched() {
+    List<Measurement> fetched = measurements();
+    db.spillAfter(100, 0);
+    List<Measurement> spilled = measurements();
+
+    assertTrue(spilled instanceof SpilledList);
+    assertEquals(ROWS - 100, ((SpilledList<Measurement>) spilled).spilledRows());
+    assertEquals(fetched, new ArrayList<>(spilled));
+  }
+
+  @Test
+  public void byteBudgetSpillsTheRest() {
+    db.spillAfter(0, 4096);
+    List<Measurement> spilled = measurements();
+
+    assertTrue(spilled instanceof SpilledList);
+    int kept = ROWS - ((SpilledList<Measurement>) spilled).spilledRows();
+    assertTrue(kept > 0 && kept < ROWS);
+    assertEquals(ROWS, (long) spilled.get(ROWS - 1).getId());
+  }
+
+  @Test
+  public void spilledRowIsDecodedOnEveryRead() {
+    db.spillAfter(10, 0);
+    List<Measurement> spilled = measurements();
+    Measurement row = spilled.get(21);
+    row.setName("changed");
+
+    assertNotSame(row, spilled.get(21));
+    assertEquals("m22", spilled.get(21).getName());
+  }
+
+  @Test
+  public void tempFileIsRemovedOnceMapped() throws IOException {
+    db.spillAfter(10, 0);
+    List<Measurement> spilled = measurements();
+
+    assertEquals(ROWS, spilled.size());
+    try (Stream<Path> files = Files.list(directory)) {
+      assertFalse(files.findAny().isPresent());
+    }
+  }
+
+  @Test
+  public void smallResultsStayOnTheHeap() {
+    db.spillAfter(ROWS, 0);
+    assertFalse(measurements() instanceof SpilledList);
+  }
+
+}
@@ -0,0 +1,104 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.execute;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CacheFilesTest {
+
+  private DatabaseWrapper database;
+  private Path first;
+  private Path second;
+
+  @Before
+  public void setUp() throws Exception {
+    database = DatabaseWrapper.open("jdbc:h2:mem:cachefiles;DB_CLOSE_DELAY=-1", "sa", "");
+    execute("DROP TABLE IF EXISTS countries");
+    execute("CREATE TABLE countries (id BIGINT PRIMARY KEY, code VARCHAR(5), region INT)");
+    execute("INSERT INTO countries VALUES (1, 'US', 1)");
+    execute("DROP TABLE IF EXISTS capitals");
+    execute("CREATE TABLE capitals (id BIGINT PRIMARY KEY, name VARCHAR(20))");
+    execute("INSERT INTO capitals VALUES (1, 'Washington')");
+    execute("DROP TABLE IF EXISTS currencies");
+    execute("CREATE TABLE currencies (id BIGINT PRIMARY KEY, name VARCHAR(20))");
+    execute("INSERT INTO currencies VALUES (1, 'Dollar')");
+    database.query(Country.class).replica().load();
+    first = Files.createTempFile("caches", ".bin");
+    second = Files.createTempFile("caches", ".bin");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    database.stopPersistingCaches();
+    Files.deleteIfExists(first);
+    Files.deleteIfExists(second);
+  }
+
+  @Test
+  public void repeatedPersistReplacesTheSchedule() throws Exception {
+    database.persistCaches(first, Duration.ofMillis(20));
+    database.persistCaches(second, Duration.ofMillis(20));
+    Files.delete(first);
+    Files.delete(second);
+    Thread.sleep(200);
+    assertFalse(Files.exists(first));
+    assertTrue(Files.exists(second));
+  }
+
+  @Test
+  public void stoppingSavesOnceAndCancelsTheSchedule() throws Exception {
+    database.persistCaches(first, Duration.ofMillis(20));
+    Files.delete(first);
+    database.stopPersistingCaches();
+    assertTrue(Files.exists(first));
+    Files.delete(first);
+    Thread.sleep(200);
+    assertFalse(Files.exists(first));
+  }
+
+  @Test
+  public void entriesThatNeverExpireAreNotRestored() {
+    database.query(Capital.class).byId(1L);
+    database.query(Currency.class).byId(1L);
+    database.saveCaches(first);
+
+    DatabaseWrapper restarted = this.restarted();
+    restarted.persistCaches(first, Duration.ofMinutes(1));
+    assertEquals(0, restarted.entityCache(Capital.class).size());
+    assertEquals(1, restarted.entityCache(Currency.class).size());
+    restarted.stopPersistingCaches();
+  }
+
+  @Test
+  public void fileOlderThanTheIntervalIsNotLoaded() throws Exception {
+    database.query(Currency.class).byId(1L);
+    database.saveCaches(first);
+    Files.copy(first, second, StandardCopyOption.REPLACE_EXISTING);
+    Thread.sleep(100);
+
+    DatabaseWrapper restarted = this.restarted();
+    restarted.persistCaches(first, Duration.ofMillis(50));
+    restarted.stopPersistingCaches();
+    assertEquals(0, restarted.entityCache(Currency.class).size());
+
+    restarted = this.restarted();
+    restarted.persistCaches(second, Duration.ofMillis(50), Duration.ofMinutes(1));
+    restarted.stopPersistingCaches();
+    assertEquals(1, restarted.entityCache(Currency.class).size());
+  }
+
+  private DatabaseWrapper restarted() {
+    return DatabaseWrapper.create("jdbc:h2:mem:cachefiles;DB_CLOSE_DELAY=-1", "sa", "");
+  }
+
+}
@@ -0,0 +1,18 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import in.asvignesh.databasewrapper.DataModel;
+import in.asvignesh.databasewrapper.annotation.Cacheable;
+import in.asvignesh.databasewrapper.annotation.Table;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Table(name = "capitals")
+@Cacheable(ttlSeconds = 0)
+public class Capital extends DataModel {
+
+  private Long id;
+  private String name;
+
+}
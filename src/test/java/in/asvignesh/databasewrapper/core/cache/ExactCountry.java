@@ -0,0 +1,19 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import in.asvignesh.databasewrapper.DataModel;
+import in.asvignesh.databasewrapper.annotation.Replicated;
+import in.asvignesh.databasewrapper.annotation.Table;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Table(name = "countries")
+@Replicated(indexes = "code", refreshSeconds = 0, exactStrings = true)
+public class ExactCountry extends DataModel {
+
+  private Long id;
+  private String code;
+  private Integer region;
+
+}
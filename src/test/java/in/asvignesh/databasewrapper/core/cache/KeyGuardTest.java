@@ -0,0 +1,75 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import in.asvignesh.databasewrapper.annotation.BloomGuard;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+public class KeyGuardTest {
+
+  @BloomGuard(expectedKeys = 1000, fpp = 0.0001)
+  private static class Guarded {
+
+  }
+
+  private final List<Object> table = new ArrayList<>(Arrays.asList(1L, 2L, 3L));
+  private KeyGuard guard = new KeyGuard("id", Guarded.class.getAnnotation(BloomGuard.class),
+      consumer -> table.forEach(consumer), Runnable::run);
+
+  @Test
+  public void keysAddedBeforeTheFirstBuildAreReplayed() {
+    guard.add(10L);
+    guard.rebuild();
+
+    assertTrue(guard.isReady());
+    assertTrue(guard.mightContain(2L));
+    assertTrue(guard.mightContain(10L));
+    assertFalse(guard.mightContain(11L));
+  }
+
+  @Test
+  public void keysAddedDuringABuildReachTheNewFilter() {
+    guard = new KeyGuard("id", Guarded.class.getAnnotation(BloomGuard.class), consumer -> {
+      table.forEach(consumer);
+      guard.add(20L);
+    }, Runnable::run);
+    guard.rebuild();
+
+    assertTrue(guard.mightContain(20L));
+  }
+
+  @Test
+  public void keysOfARunningTransactionReachEveryBuildUntilItEnds() {
+    guard.rebuild();
+    AtomicBoolean open = new AtomicBoolean(true);
+    guard.add(30L, open::get);
+    assertTrue(guard.mightContain(30L));
+
+    // the scan does not see the uncommitted row
+    guard.rebuild();
+    assertTrue(guard.mightContain(30L));
+
+    // rolled back, the next build only sees the table
+    open.set(false);
+    guard.rebuild();
+    assertFalse(guard.mightContain(30L));
+  }
+
+  @Test
+  public void committedKeysAreLeftToTheTable() {
+    guard.rebuild();
+    guard.add(40L);
+    table.add(40L);
+    table.remove(0);
+    guard.rebuild();
+
+    assertTrue(guard.mightContain(40L));
+    assertFalse(guard.mightContain(1L));
+  }
+
+}
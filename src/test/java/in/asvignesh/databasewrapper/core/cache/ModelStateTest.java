@@ -0,0 +1,59 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import in.asvignesh.databasewrapper.DataModel;
+import java.util.Date;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.junit.Test;
+
+public class ModelStateTest {
+
+  @Data
+  @EqualsAndHashCode(callSuper = false)
+  public static class Document extends DataModel {
+
+    private Long id;
+    private Date signedAt;
+    private byte[] content;
+
+  }
+
+  @Test
+  public void mutableValuesAreNotSharedWithTheCapturedModel() {
+    Document document = new Document();
+    document.setId(1L);
+    document.setSignedAt(new Date(1000));
+    document.setContent(new byte[]{1, 2});
+    Object[] state = ModelState.capture(document);
+
+    document.getSignedAt().setTime(2000);
+    document.getContent()[0] = 9;
+    Document restored = ModelState.restore(Document.class, state);
+
+    assertEquals(1L, (long) restored.getId());
+    assertEquals(new Date(1000), restored.getSignedAt());
+    assertArrayEquals(new byte[]{1, 2}, restored.getContent());
+  }
+
+  @Test
+  public void everyRestoreGetsItsOwnValues() {
+    Document document = new Document();
+    document.setSignedAt(new Date(1000));
+    document.setContent(new byte[]{1, 2});
+    Object[] state = ModelState.capture(document);
+
+    Document first = ModelState.restore(Document.class, state);
+    first.getSignedAt().setTime(3000);
+    first.getContent()[1] = 7;
+    Document second = ModelState.restore(Document.class, state);
+
+    assertNotSame(first.getSignedAt(), second.getSignedAt());
+    assertEquals(new Date(1000), second.getSignedAt());
+    assertArrayEquals(new byte[]{1, 2}, second.getContent());
+  }
+
+}
@@ -0,0 +1,68 @@
+package in.asvignesh.databasewrapper.core.cache;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.atomic;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.execute;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.select;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import in.asvignesh.databasewrapper.enums.OrderBy;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReplicaTest {
+
+  private DatabaseWrapper database;
+
+  @Before
+  public void setUp() {
+    database = DatabaseWrapper.open("jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1", "sa", "");
+    execute("DROP TABLE IF EXISTS countries");
+    execute("CREATE TABLE countries (id BIGINT PRIMARY KEY, code VARCHAR(5), region INT)");
+    execute("INSERT INTO countries VALUES (1, 'US', 1), (2, 'FR', 2), (3, 'DE', 2)");
+  }
+
+  @Test
+  public void repeatedInValuesSelectEachRowOnce() {
+    assertEquals(2, select().from(Country.class).in("id", 1L, 1L, 3L).all().size());
+    assertEquals(1, select().from(Country.class).in("region", 1, 1).all().size());
+    assertTrue(database.query(Country.class).replica().hits() > 0);
+  }
+
+  @Test
+  public void stringsGoToTheDatabaseUnlessExact() {
+    Replica<Country> replica = database.query(Country.class).replica();
+    assertEquals("FR", select().from(Country.class).where("code", "FR").one().getCode());
+    assertEquals(2, select().from(Country.class).in("code", "US", "US", "DE").all().size());
+    assertEquals("US", select().from(Country.class).order("code", OrderBy.ASC).all()
+        .get(2).getCode());
+    assertEquals(0, replica.hits());
+    assertEquals(3, replica.declined());
+
+    Replica<ExactCountry> exact = database.query(ExactCountry.class).replica();
+    assertEquals(2, select().from(ExactCountry.class).in("code", "US", "US", "DE").all().size());
+    assertEquals("DE", select().from(ExactCountry.class).order("code", OrderBy.ASC).all()
+        .get(0).getCode());
+    assertEquals(2, exact.hits());
+  }
+
+  @Test
+  public void firstLoadDoesNotReadThroughTheTransaction() {
+    atomic(() -> {
+      execute("INSERT INTO countries VALUES (4, 'IT', 2)");
+      Replica<Country> replica = database.query(Country.class).replica();
+      replica.load();
+      assertEquals(3, replica.size());
+      // the replica was created after the write, the transaction still reads its own row
+      assertNotNull(select().from(Country.class).byId(4L));
+      throw new IllegalStateException("roll back");
+    });
+    assertNull(select().from(Country.class).byId(4L));
+    assertTrue(database.query(Country.class).replica().hits() > 0);
+    assertEquals(2, select().from(Country.class).where("region", 2).count());
+  }
+
+}
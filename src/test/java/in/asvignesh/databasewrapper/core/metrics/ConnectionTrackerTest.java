@@ -0,0 +1,82 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.atomic;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.execute;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import in.asvignesh.databasewrapper.core.Note;
+import in.asvignesh.databasewrapper.core.Query;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConnectionTrackerTest {
+
+  private final List<ConnectionCheckout> reported = new CopyOnWriteArrayList<>();
+  private final ConnectionTracker tracker = new ConnectionTracker().onOverdue(reported::add);
+  private DatabaseWrapper db;
+
+  @Before
+  public void setUp() {
+    db = DatabaseWrapper.open("jdbc:h2:mem:tracker;DB_CLOSE_DELAY=-1", "sa", "");
+    execute("DROP TABLE IF EXISTS notes");
+    execute("CREATE TABLE notes (id BIGINT PRIMARY KEY, text VARCHAR(20))");
+    execute("INSERT INTO notes VALUES (1, 'a')");
+    db.trackConnections(tracker);
+  }
+
+  @Test
+  public void checkoutHeldPastTheThresholdIsReportedOnReturn() {
+    tracker.threshold(Duration.ZERO);
+    new Query<>(Note.class).byId(1L);
+
+    assertEquals(1, tracker.checkouts());
+    assertEquals(1, tracker.overdue());
+    ConnectionCheckout checkout = reported.get(0);
+    assertTrue(checkout.isReturned());
+    assertEquals(1, checkout.getStatements());
+    assertTrue(tracker.open().isEmpty());
+  }
+
+  @Test
+  public void checkoutsWithinTheThresholdOnlyFeedTheHistograms() {
+    tracker.threshold(Duration.ofMinutes(1));
+    new Query<>(Note.class).byId(1L);
+    new Query<>(Note.class).count();
+
+    assertEquals(2, tracker.checkouts());
+    assertEquals(0, tracker.overdue());
+    assertEquals(2, tracker.holdTimes().values().stream()
+        .mapToLong(LatencyHistogram::count).sum());
+  }
+
+  @Test
+  public void connectionStillOpenIsReportedOnceBySweep() {
+    tracker.threshold(Duration.ZERO);
+    Object leaked = new Object();
+    tracker.checkout(leaked);
+
+    List<ConnectionCheckout> found = tracker.sweep();
+    assertEquals(1, found.size());
+    assertFalse(found.get(0).isReturned());
+    assertTrue(tracker.sweep().isEmpty());
+
+    tracker.checkin(leaked);
+    assertEquals(1, tracker.overdue());
+    assertEquals(1, reported.size());
+  }
+
+  @Test
+  public void transactionConnectionsAreNotTracked() {
+    tracker.threshold(Duration.ZERO);
+    atomic(() -> new Query<>(Note.class).byId(1L));
+
+    assertEquals(0, tracker.checkouts());
+  }
+
+}
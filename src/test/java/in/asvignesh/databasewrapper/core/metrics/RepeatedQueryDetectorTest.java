@@ -0,0 +1,97 @@
+package in.asvignesh.databasewrapper.core.metrics;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.atomic;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.execute;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import in.asvignesh.databasewrapper.core.Note;
+import in.asvignesh.databasewrapper.core.Query;
+import in.asvignesh.databasewrapper.exception.DatabaseWrapperException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RepeatedQueryDetectorTest {
+
+  private final List<RepeatedQuery> reported = new CopyOnWriteArrayList<>();
+  private final RepeatedQueryDetector detector = new RepeatedQueryDetector().threshold(3)
+      .onRepeat(reported::add);
+
+  @Before
+  public void setUp() {
+    DatabaseWrapper db = DatabaseWrapper.open("jdbc:h2:mem:repeated;DB_CLOSE_DELAY=-1", "sa", "");
+    execute("DROP TABLE IF EXISTS notes");
+    execute("CREATE TABLE notes (id BIGINT PRIMARY KEY, text VARCHAR(20))");
+    execute("INSERT INTO notes VALUES (1, 'a'), (2, 'b'), (3, 'c'), (4, 'd'), (5, 'e')");
+    db.enableSQLStatistic(true).addQueryListener(detector);
+  }
+
+  private static void lookups(int count) {
+    for (long id = 1; id <= count; id++) {
+      new Query<>(Note.class).byId(id);
+    }
+  }
+
+  @Test
+  public void shapeRunPastTheThresholdIsReportedOnce() {
+    try (RepeatedQueryDetector.Scope scope = detector.open("request")) {
+      lookups(5);
+    }
+
+    assertEquals(1, reported.size());
+    assertEquals(1, detector.detected());
+    RepeatedQuery repeated = reported.get(0);
+    assertEquals("request", repeated.getScope());
+    assertEquals(Note.class, repeated.getModelClass());
+    assertEquals(4, repeated.getExecutions());
+  }
+
+  @Test
+  public void shapeRunUpToTheThresholdIsNotReported() {
+    try (RepeatedQueryDetector.Scope scope = detector.open("request")) {
+      lookups(3);
+      new Query<>(Note.class).where(Note::getText, "a").all();
+    }
+    assertTrue(reported.isEmpty());
+  }
+
+  @Test
+  public void eachScopeCountsOnItsOwn() {
+    try (RepeatedQueryDetector.Scope scope = detector.open("first")) {
+      lookups(2);
+    }
+    try (RepeatedQueryDetector.Scope scope = detector.open("second")) {
+      lookups(2);
+    }
+    lookups(5);
+    assertTrue(reported.isEmpty());
+  }
+
+  @Test
+  public void transactionsAreScopesWhenAsked() {
+    detector.scopeTransactions(true);
+    atomic(() -> lookups(4));
+
+    assertEquals(1, reported.size());
+    assertEquals("transaction", reported.get(0).getScope());
+  }
+
+  @Test
+  public void failFastThrowsFromTheStatementOverTheThreshold() {
+    detector.failFast(true);
+    try (RepeatedQueryDetector.Scope scope = detector.open("request")) {
+      lookups(3);
+      try {
+        new Query<>(Note.class).byId(4L);
+        fail();
+      } catch (DatabaseWrapperException e) {
+        assertTrue(e.getMessage().contains("more than 3 times in request"));
+      }
+    }
+  }
+
+}
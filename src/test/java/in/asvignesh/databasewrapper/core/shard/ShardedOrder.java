@@ -0,0 +1,18 @@
+package in.asvignesh.databasewrapper.core.shard;
+
+import in.asvignesh.databasewrapper.DataModel;
+import in.asvignesh.databasewrapper.annotation.Table;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Table(name = "orders", shardKey = "user_id")
+public class ShardedOrder extends DataModel {
+
+  private Long id;
+  private Long userId;
+  private Integer amount;
+  private String note;
+
+}
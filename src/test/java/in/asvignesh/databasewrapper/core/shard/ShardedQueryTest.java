@@ -0,0 +1,171 @@
+package in.asvignesh.databasewrapper.core.shard;
+
+import static in.asvignesh.databasewrapper.DatabaseWrapper.select;
+import static in.asvignesh.databasewrapper.DatabaseWrapper.update;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import in.asvignesh.databasewrapper.core.metrics.Operation;
+import in.asvignesh.databasewrapper.core.metrics.Phase;
+import in.asvignesh.databasewrapper.core.metrics.QueryProfile;
+import in.asvignesh.databasewrapper.enums.OrderBy;
+import in.asvignesh.databasewrapper.page.Page;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.LongStream;
+import org.junit.Before;
+import org.junit.Test;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+
+/**
+ * Three in-memory H2 databases standing in for the shards of the orders table.
+ */
+public class ShardedQueryTest {
+
+  private static final int SHARDS = 3;
+  private static final long ORDERS = 20;
+
+  private final Sql2o[] shards = new Sql2o[SHARDS];
+
+  @Before
+  public void setUp() {
+    for (int i = 0; i < SHARDS; i++) {
+      shards[i] = new Sql2o("jdbc:h2:mem:shard" + i + ";DB_CLOSE_DELAY=-1", "sa", "");
+      try (Connection connection = shards[i].open()) {
+        connection.createQuery("DROP TABLE IF EXISTS orders").executeUpdate();
+        // case and accent insensitive, like the default collations of MySQL
+        connection.createQuery("SET COLLATION ENGLISH STRENGTH PRIMARY").executeUpdate();
+        connection.createQuery("CREATE TABLE orders (id BIGINT PRIMARY KEY, user_id BIGINT, "
+            + "amount INT, note VARCHAR(10))").executeUpdate();
+      }
+    }
+    DatabaseWrapper.open(shards[0]).shards(shards);
+    for (long id = 1; id <= ORDERS; id++) {
+      ShardedOrder order = new ShardedOrder();
+      order.setId(id);
+      order.setUserId(id % 7);
+      order.setAmount((int) (id * 7 % 11));
+      String note = String.valueOf((char) ('a' + id * 5 % 13));
+      order.setNote(id % 2 == 0 ? note : note.toUpperCase());
+      order.save();
+    }
+  }
+
+  @Test
+  public void saveRoutesByShardKey() {
+    for (int i = 0; i < SHARDS; i++) {
+      int shard = i;
+      long expected = LongStream.rangeClosed(1, ORDERS).filter(id -> id % 7 % SHARDS == shard)
+          .count();
+      try (Connection connection = shards[i].open()) {
+        assertEquals(expected, (long) connection.createQuery("SELECT COUNT(*) FROM orders")
+            .executeScalar(Long.class));
+      }
+    }
+  }
+
+  @Test
+  public void shardKeyRoutesToOneShard() {
+    List<ShardedOrder> orders = select().from(ShardedOrder.class).shard(4L).all();
+    assertTrue(orders.stream().allMatch(order -> order.getUserId() % SHARDS == 1));
+    assertEquals(LongStream.rangeClosed(1, ORDERS).filter(id -> id % 7 % SHARDS == 1).count(),
+        orders.size());
+  }
+
+  @Test
+  public void scatteredReadsGatherEveryShard() {
+    assertEquals(ORDERS, select().from(ShardedOrder.class).all().size());
+    assertEquals(ORDERS, select().from(ShardedOrder.class).maps().size());
+  }
+
+  @Test
+  public void orderedReadsAreMergedAcrossShards() {
+    List<ShardedOrder> orders = select().from(ShardedOrder.class)
+        .order(ShardedOrder::getAmount, OrderBy.DESC).all();
+    assertEquals(ORDERS, orders.size());
+    assertEquals(orders.stream()
+            .sorted(Comparator.comparing(ShardedOrder::getAmount).reversed()).collect(toList()),
+        orders);
+  }
+
+  @Test
+  public void stringsAreMergedInTheOrderOfTheCollation() {
+    List<String> notes = select().from(ShardedOrder.class)
+        .order(ShardedOrder::getNote, OrderBy.ASC).all().stream()
+        .map(ShardedOrder::getNote).collect(toList());
+    assertEquals(ORDERS, notes.size());
+    assertEquals(notes.stream().sorted(String.CASE_INSENSITIVE_ORDER).collect(toList()), notes);
+  }
+
+  @Test
+  public void scatterIsOnePhaseOfTheProfile() {
+    QueryProfile[] profile = new QueryProfile[1];
+    assertEquals(ORDERS, select().from(ShardedOrder.class)
+        .profile(done -> profile[0] = done).all().size());
+    assertTrue(profile[0].nanos(Phase.EXECUTE) > 0);
+    assertEquals(0, profile[0].nanos(Phase.CONNECTION));
+  }
+
+  @Test
+  public void pageIsTakenFromTheMergedOrder() {
+    Page<ShardedOrder> page = select().from(ShardedOrder.class)
+        .order(ShardedOrder::getId, OrderBy.ASC).page(2, 6);
+    assertEquals(ORDERS, page.getTotalRows());
+    assertEquals(LongStream.rangeClosed(7, 12).boxed().collect(toList()),
+        page.getRows().stream().map(ShardedOrder::getId).collect(toList()));
+  }
+
+  @Test
+  public void countsAreSummed() {
+    assertEquals(ORDERS, select().from(ShardedOrder.class).count());
+    assertEquals(LongStream.rangeClosed(1, ORDERS).filter(id -> id * 7 % 11 > 5).count(),
+        select().from(ShardedOrder.class).where("amount > ?", 5).count());
+  }
+
+  @Test
+  public void limitReturnsFewerRowsThanTheLimit() {
+    assertEquals(ORDERS, select().from(ShardedOrder.class).limit(100).size());
+    assertEquals(3, select().from(ShardedOrder.class)
+        .order(ShardedOrder::getId, OrderBy.ASC).limit(3).size());
+  }
+
+  @Test
+  public void scatterRunsOnTheDatabaseOfTheCaller() {
+    DatabaseWrapper database = DatabaseWrapper.create(shards[0]).shards(shards)
+        .enableSQLStatistic(true);
+    assertEquals(ORDERS, (long) database.call(() -> select().from(ShardedOrder.class).count()));
+    assertEquals(SHARDS, database.metrics().latency(Operation.COUNT).count());
+    assertEquals(0, DatabaseWrapper.of().metrics().latency(Operation.COUNT).count());
+  }
+
+  @Test
+  public void reusedQueryScattersInTheCurrentDatabase() {
+    Sql2o other = new Sql2o("jdbc:h2:mem:othershard;DB_CLOSE_DELAY=-1", "sa", "");
+    try (Connection connection = other.open()) {
+      connection.createQuery("DROP TABLE IF EXISTS orders").executeUpdate();
+      connection.createQuery("CREATE TABLE orders (id BIGINT PRIMARY KEY, user_id BIGINT, "
+          + "amount INT, note VARCHAR(10))").executeUpdate();
+      connection.createQuery("INSERT INTO orders VALUES (1, 1, 5, 'a')").executeUpdate();
+    }
+    DatabaseWrapper tenant = DatabaseWrapper.create(other).shards(other);
+    ShardedOrder model = new ShardedOrder();
+
+    assertEquals(3, model.set("amount", 0).where("user_id", 1L).update());
+    assertEquals(1, (int) tenant.call(() -> model.set("amount", 0).where("user_id", 1L)
+        .update()));
+    assertEquals(3, model.set("amount", 0).where("user_id", 1L).update());
+  }
+
+  @Test
+  public void scatteredUpdatesSumAffectedRows() {
+    int expected = (int) LongStream.rangeClosed(1, ORDERS).filter(id -> id % 7 == 1).count();
+    assertEquals(expected, update().from(ShardedOrder.class).set("amount", 0)
+        .where("user_id", 1L).execute());
+    assertTrue(select().from(ShardedOrder.class).where("user_id", 1L).all().stream()
+        .allMatch(order -> order.getAmount() == 0));
+  }
+
+}
@@ -0,0 +1,91 @@
+package in.asvignesh.databasewrapper.core.tenant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import in.asvignesh.databasewrapper.DatabaseWrapper;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Test;
+
+public class TenantRegistryTest {
+
+  private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+  private DatabaseWrapper create(String tenantId) {
+    Pool pool = new Pool();
+    pool.setURL("jdbc:h2:mem:tenant_" + tenantId + ";DB_CLOSE_DELAY=-1");
+    pool.setUser("sa");
+    pools.put(tenantId, pool);
+    return DatabaseWrapper.create(pool);
+  }
+
+  @Test
+  public void leastRecentlyUsedTenantIsEvictedAndClosed() {
+    TenantRegistry registry = new TenantRegistry(2, this::create);
+    DatabaseWrapper a = registry.get("a");
+    registry.get("b");
+    assertSame(a, registry.get("a"));
+    registry.get("c");
+
+    assertEquals(2, registry.size());
+    assertTrue(pools.get("b").closed);
+    assertFalse(pools.get("a").closed);
+    assertFalse(pools.get("c").closed);
+  }
+
+  @Test
+  public void evictedTenantIsClosedAfterItsLastRelease() {
+    TenantRegistry registry = new TenantRegistry(1, this::create);
+    registry.run("a", () -> {
+      registry.get("b");
+      assertFalse(pools.get("a").closed);
+    });
+    assertTrue(pools.get("a").closed);
+    registry.close();
+    assertTrue(pools.get("b").closed);
+    assertEquals(0, registry.size());
+  }
+
+  @Test(timeout = 10_000)
+  public void slowFactoryDoesNotBlockOtherTenants() throws Exception {
+    CountDownLatch creating = new CountDownLatch(1);
+    CountDownLatch proceed = new CountDownLatch(1);
+    TenantRegistry registry = new TenantRegistry(4, tenantId -> {
+      if ("slow".equals(tenantId)) {
+        creating.countDown();
+        try {
+          proceed.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return this.create(tenantId);
+    });
+    Thread slow = new Thread(() -> registry.get("slow"));
+    slow.start();
+    assertTrue(creating.await(5, TimeUnit.SECONDS));
+
+    registry.get("fast");
+    assertEquals(1, registry.size());
+    proceed.countDown();
+    slow.join(5000);
+    assertEquals(2, registry.size());
+  }
+
+  private static class Pool extends JdbcDataSource implements AutoCloseable {
+
+    private volatile boolean closed;
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+}